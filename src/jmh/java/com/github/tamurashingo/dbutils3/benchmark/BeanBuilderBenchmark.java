@@ -0,0 +1,79 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.benchmark;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.github.tamurashingo.dbutils3.BeanBuilder;
+import com.github.tamurashingo.dbutils3.BeanBuilderFactory;
+
+/**
+ * benchmark of {@link BeanBuilder} over a scrollable result set.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class BeanBuilderBenchmark {
+
+    private Connection conn;
+    private PreparedStatement stmt;
+    private ResultSet rs;
+    private BeanBuilder builder;
+
+    @Setup
+    public void setUp() throws Exception {
+        conn = BenchmarkDatabase.connect();
+        stmt = conn.prepareStatement("select * from item where id <= 100", ResultSet.TYPE_SCROLL_INSENSITIVE, ResultSet.CONCUR_READ_ONLY);
+        rs = stmt.executeQuery();
+        builder = BeanBuilderFactory.getManager().getBeanBuilder(ItemBean.class);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        rs.close();
+        stmt.close();
+        conn.close();
+    }
+
+    @Benchmark
+    public ItemBean build() throws Exception {
+        rs.absolute(1);
+        return builder.build(rs);
+    }
+}
@@ -0,0 +1,76 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.benchmark;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * embedded H2 database shared by the benchmarks.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+final class BenchmarkDatabase {
+
+    /** the number of rows in the table */
+    static final int ROWS = 1000;
+
+    private static final String URL = "jdbc:h2:mem:benchmark;DB_CLOSE_DELAY=-1";
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * connect to the database, and create the table at the first time.
+     *
+     * @return connection
+     * @throws SQLException database error has occurred
+     */
+    static synchronized Connection connect() throws SQLException {
+        Connection conn = DriverManager.getConnection(URL);
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table if not exists item (id int primary key, name varchar(64), price bigint, description varchar(256))");
+            ResultSet rs = st.executeQuery("select count(*) from item");
+            rs.next();
+            if (rs.getInt(1) < ROWS) {
+                try (PreparedStatement ps = conn.prepareStatement("merge into item key (id) values (?, ?, ?, ?)")) {
+                    for (int id = 1; id <= ROWS; id++) {
+                        ps.setInt(1, id);
+                        ps.setString(2, "item-" + id);
+                        ps.setLong(3, id * 100L);
+                        ps.setString(4, "description of the item " + id);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+            }
+        }
+        return conn;
+    }
+}
@@ -0,0 +1,131 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.github.tamurashingo.dbutils3.DBConnectionUtil;
+import com.github.tamurashingo.dbutils3.parser.ParamSlots;
+
+/**
+ * benchmark of {@link DBConnectionUtil} against the embedded H2 database.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DBConnectionUtilBenchmark {
+
+    @State(Scope.Thread)
+    public static class Query {
+        DBConnectionUtil conn;
+        ParamSlots slots;
+        int id;
+
+        @Setup
+        public void setUp() throws Exception {
+            conn = new DBConnectionUtil(BenchmarkDatabase.connect());
+            conn.prepareWithParam("select * from item where id = :id");
+            slots = conn.newParamSlots();
+        }
+
+        @TearDown
+        public void tearDown() {
+            conn.close();
+        }
+
+        int nextId() {
+            id = id % BenchmarkDatabase.ROWS + 1;
+            return id;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Range {
+        DBConnectionUtil conn;
+
+        @Setup
+        public void setUp() throws Exception {
+            conn = new DBConnectionUtil(BenchmarkDatabase.connect());
+            conn.prepare("select * from item where id between ? and ?");
+        }
+
+        @TearDown
+        public void tearDown() {
+            conn.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Update {
+        DBConnectionUtil conn;
+        int id;
+
+        @Setup
+        public void setUp() throws Exception {
+            conn = new DBConnectionUtil(BenchmarkDatabase.connect());
+            conn.prepare("update item set price = price + 1 where id = ?");
+        }
+
+        @TearDown
+        public void tearDown() {
+            conn.close();
+        }
+    }
+
+    @Benchmark
+    public List<ItemBean> queryBean(Query state) throws Exception {
+        state.slots.set(0, state.nextId());
+        return state.conn.executeQueryWithParam(ItemBean.class, state.slots);
+    }
+
+    @Benchmark
+    public List<Map<String, String>> queryMap(Query state) throws Exception {
+        state.slots.set(0, state.nextId());
+        return state.conn.executeQueryWithParam(state.slots);
+    }
+
+    @Benchmark
+    public List<ItemBean> queryRange(Range state) throws Exception {
+        return state.conn.executeQuery(ItemBean.class, 1, 100);
+    }
+
+    @Benchmark
+    public int update(Update state) throws Exception {
+        state.id = state.id % BenchmarkDatabase.ROWS + 1;
+        return state.conn.executeUpdate(state.id);
+    }
+}
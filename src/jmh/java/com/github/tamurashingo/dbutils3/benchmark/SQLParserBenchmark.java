@@ -0,0 +1,82 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import com.github.tamurashingo.dbutils3.Param;
+import com.github.tamurashingo.dbutils3.parser.ParamSlots;
+import com.github.tamurashingo.dbutils3.parser.SQLParser;
+
+/**
+ * benchmark of {@link SQLParser}.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class SQLParserBenchmark {
+
+    private static final String SQL =
+              " select * from item "
+            + " where start_ymd <= :today and :today <= end_ymd "
+            + " and name like :name and id = :id ";
+
+    private SQLParser parser;
+    private Param param;
+    private ParamSlots slots;
+
+    @Setup
+    public void setUp() {
+        parser = new SQLParser();
+        parser.analyzeSQL(SQL);
+        param = new Param().put("today", "20150830").put("name", "item%").put("id", 1);
+        slots = parser.newParamSlots();
+    }
+
+    @Benchmark
+    public String analyzeSQL() {
+        return new SQLParser().analyzeSQL(SQL);
+    }
+
+    @Benchmark
+    public Object[] createParams() {
+        return parser.createParams(param);
+    }
+
+    @Benchmark
+    public ParamSlots setParamSlots() {
+        return slots.set(param);
+    }
+}
@@ -0,0 +1,259 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.temporal.Temporal;
+import java.util.Date;
+
+/**
+ * estimate the fetch size which keeps one fetch within the buffer budget.
+ *
+ * <p>
+ * the first estimation uses the column types and sizes of {@link ResultSetMetaData}.
+ * after rows are read, the observed bytes per row replace the estimation gradually.
+ * the observed bytes are estimated from the values in the same way as the column types
+ * (e.g. 4 bytes for an integer, UTF-8 length for a string).
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+class AdaptiveFetchSize {
+
+    /** overhead of each column (header, null flag, ...) */
+    private static final int COLUMN_OVERHEAD = 8;
+
+    /** assumed size of a variable length column which is larger than this */
+    private static final int MAX_VARIABLE_WIDTH = 1024;
+
+    /** weight of the latest observation */
+    private static final double SMOOTHING = 0.5;
+
+    private final long budget;
+    private final int min;
+    private final int max;
+
+    /** estimated bytes per row. 0 means not estimated yet. */
+    private double rowBytes = 0;
+
+    /**
+     * constructor.
+     *
+     * @param budget bytes which one fetch targets
+     * @param min lower limit of fetch size
+     * @param max upper limit of fetch size
+     */
+    AdaptiveFetchSize(long budget, int min, int max) {
+        this.budget = budget;
+        this.min = min;
+        this.max = max;
+    }
+
+    /**
+     * estimate bytes per row from the metadata unless it is already estimated.
+     *
+     * @param rsmd metadata of the result
+     * @throws SQLException database error has occurred
+     */
+    void estimate(ResultSetMetaData rsmd) throws SQLException {
+        if (rowBytes > 0) {
+            return;
+        }
+        long bytes = 0;
+        int columnCount = rsmd.getColumnCount();
+        for (int ix = 1; ix <= columnCount; ix++) {
+            bytes += COLUMN_OVERHEAD + columnWidth(rsmd.getColumnType(ix), rsmd.getPrecision(ix));
+        }
+        rowBytes = Math.max(bytes, 1);
+    }
+
+    /**
+     * update the estimation with the bytes actually read.
+     *
+     * @param bytes bytes of the values read (see {@link #bytes(int, String)} and {@link #bytes(Object[])})
+     * @param rows the number of rows read
+     * @param columnCount the number of columns of the result
+     */
+    void observe(long bytes, long rows, int columnCount) {
+        if (rows <= 0) {
+            return;
+        }
+        double observed = Math.max((double)bytes / rows + (double)COLUMN_OVERHEAD * columnCount, 1);
+        rowBytes = rowBytes > 0 ? rowBytes * (1 - SMOOTHING) + observed * SMOOTHING : observed;
+    }
+
+    /**
+     * @return fetch size for the budget, or 0 when not estimated yet
+     */
+    int fetchSize() {
+        if (rowBytes <= 0) {
+            return 0;
+        }
+        long size = (long)(budget / rowBytes);
+        return (int)Math.max(min, Math.min(max, size));
+    }
+
+    /**
+     * @return estimated bytes per row
+     */
+    double getRowBytes() {
+        return rowBytes;
+    }
+
+    /**
+     * @param sqlType column type
+     * @param value value read by {@link java.sql.ResultSet#getString(int)}
+     * @return estimated bytes of the value
+     */
+    static long bytes(int sqlType, String value) {
+        if (value == null) {
+            return 0;
+        }
+        switch (sqlType) {
+        case Types.CHAR:
+        case Types.VARCHAR:
+        case Types.LONGVARCHAR:
+        case Types.NCHAR:
+        case Types.NVARCHAR:
+        case Types.LONGNVARCHAR:
+        case Types.CLOB:
+        case Types.NCLOB:
+            return utf8Length(value);
+        case Types.BINARY:
+        case Types.VARBINARY:
+        case Types.LONGVARBINARY:
+        case Types.BLOB:
+            // hexadecimal
+            return value.length() / 2;
+        default:
+            return columnWidth(sqlType, value.length());
+        }
+    }
+
+    /**
+     * @param values values of a row read by {@link MappingPlan#read(java.sql.ResultSet)}
+     * @return estimated bytes of the values
+     */
+    static long bytes(Object[] values) {
+        long bytes = 0;
+        for (Object value: values) {
+            bytes += bytes(value);
+        }
+        return bytes;
+    }
+
+    private static long bytes(Object value) {
+        if (value == null) {
+            return 0;
+        }
+        if (value instanceof String) {
+            return utf8Length((String)value);
+        }
+        if (value instanceof byte[]) {
+            return ((byte[])value).length;
+        }
+        if (value instanceof Integer || value instanceof Float) {
+            return 4;
+        }
+        if (value instanceof Long || value instanceof Double) {
+            return 8;
+        }
+        if (value instanceof Short) {
+            return 2;
+        }
+        if (value instanceof Boolean || value instanceof Byte) {
+            return 1;
+        }
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal)value).unscaledValue().bitLength() / 8 + 2;
+        }
+        if (value instanceof BigInteger) {
+            return ((BigInteger)value).bitLength() / 8 + 1;
+        }
+        if (value instanceof Date || value instanceof Temporal) {
+            return 12;
+        }
+        return MAX_VARIABLE_WIDTH;
+    }
+
+    /**
+     * @param value string
+     * @return the number of bytes encoded in UTF-8
+     */
+    private static long utf8Length(String value) {
+        long bytes = value.length();
+        for (int ix = 0; ix < value.length(); ix++) {
+            char c = value.charAt(ix);
+            if (c >= 0x800) {
+                // 3 bytes, or 4 bytes for a surrogate pair (2 chars)
+                bytes += Character.isSurrogate(c) ? 1 : 2;
+            }
+            else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    private static int columnWidth(int sqlType, int precision) {
+        switch (sqlType) {
+        case Types.BIT:
+        case Types.BOOLEAN:
+        case Types.TINYINT:
+            return 1;
+        case Types.SMALLINT:
+            return 2;
+        case Types.INTEGER:
+        case Types.REAL:
+            return 4;
+        case Types.BIGINT:
+        case Types.DOUBLE:
+        case Types.FLOAT:
+            return 8;
+        case Types.DATE:
+        case Types.TIME:
+        case Types.TIMESTAMP:
+        case Types.TIME_WITH_TIMEZONE:
+        case Types.TIMESTAMP_WITH_TIMEZONE:
+            return 12;
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            return precision > 0 ? Math.min(precision / 2 + 2, 32) : 16;
+        case Types.BLOB:
+        case Types.CLOB:
+        case Types.NCLOB:
+        case Types.LONGVARBINARY:
+        case Types.LONGVARCHAR:
+        case Types.LONGNVARCHAR:
+            return MAX_VARIABLE_WIDTH * 4;
+        default:
+            return precision > 0 ? Math.min(precision, MAX_VARIABLE_WIDTH) : MAX_VARIABLE_WIDTH;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.util.Collection;
+
+/**
+ * parameter value which is bound as one SQL ARRAY.
+ *
+ * <p>
+ * a {@link Collection} value of {@link Param} is expanded to the placeholder list.
+ * for a large list, wrap it with this class and compare with the array instead.
+ * the sql has one parameter regardless of the number of elements.
+ * </p>
+ * <pre><code>
+ * conn.prepareWithParam("select * from user where id = ANY(:ids)");            // PostgreSQL, H2
+ * conn.prepareWithParam("select * from user where ARRAY_CONTAINS(:ids, id)");  // H2
+ * List&lt;UserBean&gt; users = conn.executeQueryWithParam(UserBean.class,
+ *         new Param().put("ids", ArrayParam.of(new long[]{1, 2, 3})));
+ * </code></pre>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public final class ArrayParam {
+
+    /** SQL type name of the elements */
+    private final String typeName;
+
+    /** long[], int[], Object[] or Collection */
+    private final Object values;
+
+    /** the number of elements */
+    private final int size;
+
+    private ArrayParam(String typeName, Object values, int size) {
+        this.typeName = typeName;
+        this.values = values;
+        this.size = size;
+    }
+
+    /**
+     * create a {@code BIGINT} array.
+     *
+     * @param values elements
+     * @return array parameter
+     */
+    public static ArrayParam of(long[] values) {
+        return new ArrayParam("BIGINT", values, values.length);
+    }
+
+    /**
+     * create an {@code INTEGER} array.
+     *
+     * @param values elements
+     * @return array parameter
+     */
+    public static ArrayParam of(int[] values) {
+        return new ArrayParam("INTEGER", values, values.length);
+    }
+
+    /**
+     * create an array.
+     *
+     * @param typeName SQL type name of the elements (passed to {@link java.sql.Connection#createArrayOf(String, Object[])})
+     * @param values elements
+     * @return array parameter
+     */
+    public static ArrayParam of(String typeName, Object[] values) {
+        return new ArrayParam(typeName, values, values.length);
+    }
+
+    /**
+     * create an array.
+     *
+     * @param typeName SQL type name of the elements (passed to {@link java.sql.Connection#createArrayOf(String, Object[])})
+     * @param values elements
+     * @return array parameter
+     */
+    public static ArrayParam of(String typeName, Collection<?> values) {
+        return new ArrayParam(typeName, values, values.size());
+    }
+
+    /**
+     * @return SQL type name of the elements
+     */
+    public String getTypeName() {
+        return typeName;
+    }
+
+    /**
+     * @return the number of elements
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * get the elements for {@link java.sql.Connection#createArrayOf(String, Object[])}.
+     * primitive arrays are boxed here, at bind time.
+     *
+     * @return elements
+     */
+    Object[] toArray() {
+        if (values instanceof Object[]) {
+            return (Object[])values;
+        }
+        else if (values instanceof Collection) {
+            return ((Collection<?>)values).toArray();
+        }
+
+        Object[] array = new Object[size];
+        if (values instanceof long[]) {
+            long[] longs = (long[])values;
+            for (int ix = 0; ix < size; ix++) {
+                array[ix] = longs[ix];
+            }
+        }
+        else {
+            int[] ints = (int[])values;
+            for (int ix = 0; ix < size; ix++) {
+                array[ix] = ints[ix];
+            }
+        }
+        return array;
+    }
+}
@@ -25,7 +25,12 @@ package com.github.tamurashingo.dbutils3;
 
 import java.lang.reflect.InvocationTargetException;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Map.Entry;
 
 import com.github.tamurashingo.dbutils3.Mapper.AbstractSetter;
@@ -38,9 +43,25 @@ import com.github.tamurashingo.dbutils3.Mapper.AbstractSetter;
  */
 public class BeanBuilder {
     
+    /** max number of cached mapping plans */
+    private static final int MAX_PLANS = 64;
+
     private Class<?> cls;
     private Mapper mapper;
 
+    /** mapping plans for each column list of the result, the least recently used one is removed when it is full */
+    private final Map<String, MappingPlan> plans = Collections.synchronizedMap(new LinkedHashMap<String, MappingPlan>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MappingPlan> eldest) {
+            return size() > MAX_PLANS;
+        }
+    });
+
+    /** plan used last, checked first without allocation */
+    private volatile MappingPlan lastPlan;
+
     /**
      * constructor.
      * 
@@ -66,27 +87,81 @@ public class BeanBuilder {
         try {
             @SuppressWarnings("unchecked")
             T bean = (T)cls.newInstance();
-            
-            for (Entry<String, AbstractSetter> entry: mapper.entrySet()) {
-                /*-
-                 * key : Database column name
-                 * value : AbstractSetter
-                 */
-                try {
-                    AbstractSetter setter = entry.getValue();
-                    if (setter != null) {
-                        setter.invoke(bean, rs, entry.getKey());
-                    }
-                }
-                catch (IllegalArgumentException | InvocationTargetException | SQLException ex) {
-                    // set nothing(null) when exception occurred.
-                }
-            }
-            
+            populate(bean, rs);
             return bean;
         }
         catch (InstantiationException | IllegalAccessException ex) {
             throw new BeanBuilderException(ex);
         }
     }
+
+    /**
+     * @return database column names mapped to the bean
+     * @since 0.3.0
+     */
+    public List<String> getColumnNames() {
+        return mapper.getColumnNames();
+    }
+
+    /**
+     * resolve the setters to the column indexes of the {@link ResultSet}.
+     * the plan is cached for each column list, so the same query reuses it.
+     * up to 64 column lists are kept, and the least recently used one is removed first.
+     *
+     * @param rs search result
+     * @return mapping plan for the result
+     */
+    MappingPlan createPlan(ResultSet rs) {
+        try {
+            ResultSetMetaData rsmd = rs.getMetaData();
+            MappingPlan plan = lastPlan;
+            if (plan != null && plan.matches(rsmd)) {
+                return plan;
+            }
+
+            String[] labels = MappingPlan.labels(rsmd);
+            String signature = MappingPlan.signature(labels);
+            plan = plans.get(signature);
+            if (plan == null) {
+                plan = new MappingPlan(cls, mapper, rs, labels);
+                plans.put(signature, plan);
+            }
+            lastPlan = plan;
+            return plan;
+        }
+        catch (SQLException ex) {
+            // metadata is not available, resolve the columns every time
+            return new MappingPlan(cls, mapper, rs);
+        }
+    }
+
+    /**
+     * set value from {@link ResultSet} to the existing bean.
+     * fields of which column is not in the {@link ResultSet} are not changed.
+     *
+     * @param bean bean to set
+     * @param rs search result
+     * @throws BeanBuilderException failed to access the bean.
+     * @since 0.3.0
+     */
+    public void populate(Object bean, ResultSet rs) throws BeanBuilderException {
+        for (Entry<String, AbstractSetter> entry: mapper.entrySet()) {
+            /*-
+             * key : Database column name
+             * value : AbstractSetter
+             */
+            try {
+                AbstractSetter setter = entry.getValue();
+                if (setter != null) {
+                    setter.invoke(bean, rs, entry.getKey());
+                }
+            }
+            catch (IllegalArgumentException | InvocationTargetException | SQLException ex) {
+                // set nothing(null) when exception occurred.
+            }
+            catch (IllegalAccessException ex) {
+                throw new BeanBuilderException(ex);
+            }
+        }
+    }
 }
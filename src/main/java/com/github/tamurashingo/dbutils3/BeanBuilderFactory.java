@@ -23,8 +23,9 @@
  */
 package com.github.tamurashingo.dbutils3;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
 
 /**
  * This class has bean class information and its {@link BeanBuilder}.
@@ -90,15 +91,22 @@ public class BeanBuilderFactory {
      *
      */
     private static class ManagerImpl implements Manager {
-        /** cache */
-        private Map<Class<?>, BeanBuilder> mapper = new HashMap<>();
+        /** creates the builder of the class not cached yet */
+        private static final Function<Class<?>, BeanBuilder> CREATE = new Function<Class<?>, BeanBuilder>() {
+            @Override
+            public BeanBuilder apply(Class<?> cls) {
+                return new BeanBuilder(cls);
+            }
+        };
+
+        /** cache, shared by the threads */
+        private final ConcurrentMap<Class<?>, BeanBuilder> mapper = new ConcurrentHashMap<>();
 
         @Override
         public <T> BeanBuilder getBeanBuilder(Class<T> cls) {
             BeanBuilder builder = mapper.get(cls);
             if (builder == null) {
-                builder = new BeanBuilder(cls);
-                mapper.put(cls, builder);
+                builder = mapper.computeIfAbsent(cls, CREATE);
             }
             return builder;
         }
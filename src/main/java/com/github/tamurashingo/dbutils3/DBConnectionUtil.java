@@ -23,17 +23,22 @@
  */
 package com.github.tamurashingo.dbutils3;
 
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
 import java.sql.Connection;
-import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSetMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.github.tamurashingo.dbutils3.parser.ParamSlots;
+import com.github.tamurashingo.dbutils3.parser.SQLFingerprint;
 import com.github.tamurashingo.dbutils3.parser.SQLParser;
 
 /**
@@ -104,12 +109,92 @@ public class DBConnectionUtil implements AutoCloseable {
      * prepared statement
      */
     protected PreparedStatement stmt;
+
+    /**
+     * prepared statement and its parameter binders
+     */
+    private StatementHandle handle;
+
+    /**
+     * options of the prepared statement
+     */
+    private StatementOptions options = new StatementOptions();
+
+    /**
+     * fetch size estimator, or null when adaptive fetch size is disabled
+     */
+    private AdaptiveFetchSize adaptiveFetchSize;
+
+    /**
+     * true when the query timeout of the statements is changed by {@link Deadline}
+     */
+    private boolean deadlineApplied = false;
+
+    /**
+     * statement executed last, to be cancelled by {@link #cancel()}
+     */
+    private volatile PreparedStatement running;
+
+    /**
+     * exporter writing the result, to be cancelled by {@link #cancel()}
+     */
+    private volatile ResultSetExporter runningExporter;
+
+    /**
+     * transfer writing the LOB, to be cancelled by {@link #cancel()}
+     */
+    private volatile LobTransfer runningTransfer;
+
+    /**
+     * set by {@link #cancel()} and checked for each row
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * the number of rows in one multi-row insert statement
+     */
+    private int insertRewriteWidth = 1;
+
+    /**
+     * multi-row insert statement of {@link #insertRewriteWidth} rows
+     */
+    private StatementHandle multiRowHandle;
+
+    /**
+     * max number of placeholders which one collection value is expanded to
+     */
+    private int inListLimit = SQLParser.DEFAULT_IN_LIST_LIMIT;
+
+    /**
+     * statements of which collection values are expanded (key: expanded sql)
+     */
+    private Map<String, StatementHandle> expandedHandles = new HashMap<>();
     
     /**
      * sql parser
      */
     protected SQLParser parser;
 
+    /**
+     * precompiled sql
+     */
+    private String preparedSQL;
+
+    /**
+     * fingerprint of {@link #preparedSQL} (computed on demand)
+     */
+    private String fingerprint;
+
+    /**
+     * interceptors around prepare, bind, execute and map
+     */
+    private final InterceptorChain interceptors = new InterceptorChain();
+
+    /**
+     * context passed to the interceptors (created when the first interceptor is added)
+     */
+    private StatementContext context;
+
     /**
      * constructor.
      * specify the database connection.
@@ -127,8 +212,57 @@ public class DBConnectionUtil implements AutoCloseable {
      * @throws SQLException database error has occurred
      */
     public void prepare(String sql) throws SQLException {
+        prepare(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * precompile the sql.
+     *
+     * @param sql sql statement to precompile
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} to use {@link #executeInsert(List)}
+     *        or {@link Statement#NO_GENERATED_KEYS}
+     * @throws SQLException database error has occurred
+     * @since 0.3.0
+     */
+    public void prepare(String sql, int autoGeneratedKeys) throws SQLException {
+        StatementOptions options = new StatementOptions();
+        options.setAutoGeneratedKeys(autoGeneratedKeys);
+        prepare(sql, options);
+    }
+
+    /**
+     * precompile the sql with fetch size, max rows and result set type.
+     *
+     * @param sql sql statement to precompile
+     * @param options statement options
+     * @throws SQLException database error has occurred
+     * @since 0.3.0
+     */
+    public void prepare(String sql, StatementOptions options) throws SQLException {
         closeStmt();
-        stmt = conn.prepareStatement(sql);
+        this.options = options;
+        deadlineApplied = false;
+        if (options.getAdaptiveFetchBudget() > 0) {
+            adaptiveFetchSize = new AdaptiveFetchSize(options.getAdaptiveFetchBudget(), options.getMinFetchSize(), options.getMaxFetchSize());
+        }
+        else {
+            adaptiveFetchSize = null;
+        }
+        preparedSQL = sql;
+        fingerprint = null;
+        Object event = FlightRecorderSupport.begin(FlightRecorderSupport.PREPARE);
+        if (interceptors.isEmpty()) {
+            stmt = prepareStatement(sql);
+        }
+        else {
+            context.reset();
+            context.setOperation(StatementContext.Operation.PREPARE, null);
+            long start = interceptors.beforePrepare(context);
+            stmt = prepareStatement(sql);
+            interceptors.afterPrepare(context, start);
+        }
+        FlightRecorderSupport.end(event, this, "prepare", null, 0);
+        handle = new StatementHandle(stmt);
     }
     
     /**
@@ -138,8 +272,48 @@ public class DBConnectionUtil implements AutoCloseable {
      * @throws SQLException database error has occurred
      */
     public void prepareWithParam(String sql) throws SQLException {
+        prepareWithParam(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    /**
+     * analyze and precompile the sql.
+     *
+     * @param sql contains parameter with colon prefix
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} to use {@link #executeInsertWithParam(List)}
+     *        or {@link Statement#NO_GENERATED_KEYS}
+     * @throws SQLException database error has occurred
+     * @since 0.3.0
+     */
+    public void prepareWithParam(String sql, int autoGeneratedKeys) throws SQLException {
+        StatementOptions options = new StatementOptions();
+        options.setAutoGeneratedKeys(autoGeneratedKeys);
+        prepareWithParam(sql, options);
+    }
+
+    /**
+     * analyze and precompile the sql with fetch size, max rows and result set type.
+     * <p>
+     * {@code :columns(fully.qualified.BeanClass)} is replaced with the column names of the bean
+     * (see {@link Projection}).
+     * </p>
+     *
+     * @param sql contains parameter with colon prefix
+     * @param options statement options
+     * @throws SQLException database error has occurred
+     * @since 0.3.0
+     */
+    public void prepareWithParam(String sql, StatementOptions options) throws SQLException {
+        if (Projection.hasDirective(sql)) {
+            try {
+                sql = Projection.expand(sql);
+            }
+            catch (IllegalArgumentException ex) {
+                throw new SQLException(ex.getMessage(), ex);
+            }
+        }
         parser = new SQLParser();
-        prepare(parser.analyzeSQL(sql));
+        parser.setInListLimit(inListLimit);
+        prepare(parser.analyzeSQL(sql), options);
     }
 
     /**
@@ -150,20 +324,74 @@ public class DBConnectionUtil implements AutoCloseable {
      * @throws SQLException database error has occurred
      */
     public List<Map<String, String>> executeQuery(Object... params) throws SQLException {
+        resetCancel();
         setValue(params);
-        
+        return query(stmt);
+    }
+
+    /**
+     * execute query sql and return {@link List} of {@link Map}.
+     *
+     * @param slots parameter holder created by {@link #newParamSlots()}
+     * @return search result
+     * @throws SQLException sql is not analyzed or database error has occurred
+     * @since 0.3.0
+     */
+    public List<Map<String, String>> executeQueryWithParam(ParamSlots slots) throws SQLException {
+        resetCancel();
+        if (!isAnalyzed()) {
+            throw new SQLException("sql is not analyzed");
+        }
+
+        setValue(slots);
+        return query(stmt);
+    }
+
+    /**
+     * execute the prepared statement which parameters are already set.
+     *
+     * @param st prepared statement
+     * @return search result
+     * @throws SQLException database error has occurred
+     */
+    @SuppressWarnings("unchecked")
+    private List<Map<String, String>> query(PreparedStatement st) throws SQLException {
+        boolean intercepted = !interceptors.isEmpty();
+        if (intercepted) {
+            Object result = intercept(StatementContext.Operation.QUERY, null);
+            if (result != null) {
+                return (List<Map<String, String>>) result;
+            }
+        }
+
         List<Map<String, String>> list = new ArrayList<>();
-        try (ResultSet rs = stmt.executeQuery()){
+        try (ResultSet rs = doQuery(st)){
             ResultSetMetaData rsmd = rs.getMetaData();
             int columnCount = rsmd.getColumnCount();
+            tuneFetchSize(st, rs, rsmd);
+
+            int[] types = adaptiveFetchSize != null ? columnTypes(rsmd) : null;
 
+            long start = intercepted ? interceptors.beforeMap(context) : 0L;
+            Object event = FlightRecorderSupport.begin(FlightRecorderSupport.FETCH);
+            long bytes = 0;
             while (rs.next()) {
+                checkCancelled();
                 Map<String, String> map = new HashMap<>();
                 for (int ix = 1; ix <= columnCount; ix++) {
-                    map.put(rsmd.getColumnLabel(ix), rs.getString(ix));
+                    String value = rs.getString(ix);
+                    map.put(rsmd.getColumnLabel(ix), value);
+                    if (types != null) {
+                        bytes += AdaptiveFetchSize.bytes(types[ix - 1], value);
+                    }
                 }
                 list.add(map);
             }
+            FlightRecorderSupport.end(event, this, "fetch", null, list.size());
+            if (intercepted) {
+                mapped(list, start);
+            }
+            observe(rs, bytes, list.size());
         }
 
         return list;
@@ -171,6 +399,11 @@ public class DBConnectionUtil implements AutoCloseable {
     
     /**
      * execute query sql and return {@link List} of {@link Map}.
+     * <p>
+     * a {@link java.util.Collection} value is expanded to the placeholder list (e.g. {@code id in (:ids)}).
+     * when it has more elements than {@link #setInListLimit(int)}, the sql is executed for each chunk
+     * and the results are concatenated.
+     * </p>
      * 
      * @param params parameter for analyzed sql
      * @return search result
@@ -178,12 +411,21 @@ public class DBConnectionUtil implements AutoCloseable {
      * @since 0.2.0
      */
     public List<Map<String, String>> executeQueryWithParam(Param params) throws SQLException {
+        resetCancel();
         if (!isAnalyzed()) {
             throw new SQLException("sql is not analyzed");
         }
+
+        if (parser.hasCollectionParam(params)) {
+            List<Map<String, String>> list = new ArrayList<>();
+            for (Param chunk: splitParams(params)) {
+                list.addAll(query(expand(chunk)));
+            }
+            return list;
+        }
         
-        Object[] p = createParams(params);
-        return executeQuery(p);
+        setValue(createParams(params));
+        return query(stmt);
     }
 
     /**
@@ -196,16 +438,82 @@ public class DBConnectionUtil implements AutoCloseable {
      * @throws SQLException database error or bean writer error has occurred. 
      */
     public <T> List<T> executeQuery(Class<T> cls, Object... params) throws SQLException {
+        resetCancel();
         setValue(params);
+        return query(stmt, cls);
+    }
+
+    /**
+     * execute query sql and return Bean of {@link List}.
+     *
+     * @param cls bean class information which set search result
+     * @param slots parameter holder created by {@link #newParamSlots()}
+     * @param <T> bean type
+     * @return search result
+     * @throws SQLException sql is not analyzed or database error has occurred
+     * @since 0.3.0
+     */
+    public <T> List<T> executeQueryWithParam(Class<T> cls, ParamSlots slots) throws SQLException {
+        resetCancel();
+        if (!isAnalyzed()) {
+            throw new SQLException("sql is not analyzed");
+        }
+
+        setValue(slots);
+        return query(stmt, cls);
+    }
+
+    /**
+     * execute the prepared statement which parameters are already set.
+     *
+     * @param st prepared statement
+     * @param cls bean class information which set search result
+     * @param <T> bean type
+     * @return search result
+     * @throws SQLException database error or bean writer error has occurred.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> query(PreparedStatement st, Class<T> cls) throws SQLException {
+        boolean intercepted = !interceptors.isEmpty();
+        if (intercepted) {
+            Object result = intercept(StatementContext.Operation.QUERY, cls);
+            if (result != null) {
+                return (List<T>) result;
+            }
+        }
 
         BeanBuilderFactory.Manager factoryManager = BeanBuilderFactory.getManager();
         BeanBuilder builder = factoryManager.getBeanBuilder(cls);
 
-        List<T> list = new ArrayList<>();
-        try (ResultSet rs = stmt.executeQuery()) {
-            while (rs.next()) {
-                T bean = builder.build(rs);
-                list.add(bean);
+        List<T> list;
+        try (ResultSet rs = doQuery(st)) {
+            if (adaptiveFetchSize != null) {
+                tuneFetchSize(st, rs, rs.getMetaData());
+            }
+
+            MappingPlan plan = builder.createPlan(rs);
+            long start = intercepted ? interceptors.beforeMap(context) : 0L;
+            Object event = FlightRecorderSupport.begin(FlightRecorderSupport.FETCH);
+            if (options.getParallelMappingThreshold() > 0) {
+                List<Object[]> rows = readRows(rs, plan);
+                FlightRecorderSupport.end(event, this, "fetch", cls, rows.size());
+
+                event = FlightRecorderSupport.begin(FlightRecorderSupport.MAPPING);
+                long mappingStart = event != null ? System.nanoTime() : 0L;
+                list = ParallelMapping.map(plan, rows, options.getParallelMappingThreshold(), options.getMappingPool());
+                FlightRecorderSupport.endMapping(event, cls, list.size(), event != null ? System.nanoTime() - mappingStart : 0L);
+            }
+            else {
+                if (options.getReadAheadRows() > 0) {
+                    list = readAhead(rs, plan, cls);
+                }
+                else {
+                    list = readSequential(rs, plan, cls);
+                }
+                FlightRecorderSupport.end(event, this, "fetch", cls, list.size());
+            }
+            if (intercepted) {
+                mapped(list, start);
             }
         }
         catch (BeanBuilderException ex) {
@@ -217,6 +525,9 @@ public class DBConnectionUtil implements AutoCloseable {
     
     /**
      * execute query sql and return Bean of {@link List}.
+     * <p>
+     * a {@link java.util.Collection} value is expanded as {@link #executeQueryWithParam(Param)}.
+     * </p>
      * 
      * @param cls bean class information which set search result
      * @param params parameter for analyzed sql
@@ -226,12 +537,21 @@ public class DBConnectionUtil implements AutoCloseable {
      * @since 0.2.0
      */
     public <T> List<T> executeQueryWithParam(Class<T> cls, Param params) throws SQLException {
+        resetCancel();
         if (!isAnalyzed()) {
             throw new SQLException("sql is not analyzed");
         }
+
+        if (parser.hasCollectionParam(params)) {
+            List<T> list = new ArrayList<>();
+            for (Param chunk: splitParams(params)) {
+                list.addAll(query(expand(chunk), cls));
+            }
+            return list;
+        }
         
-        Object[] p = createParams(params);
-        return executeQuery(cls, p);
+        setValue(createParams(params));
+        return query(stmt, cls);
     }
 
 
@@ -243,124 +563,1286 @@ public class DBConnectionUtil implements AutoCloseable {
      * @throws SQLException database error has occurred
      */
     public int executeUpdate(Object... params) throws SQLException {
+        resetCancel();
         setValue(params);
-        return stmt.executeUpdate();
+        return doUpdate(stmt);
     }
     
     /**
      * execute update sql.
+     * <p>
+     * a {@link java.util.Collection} value is expanded as {@link #executeQueryWithParam(Param)}.
+     * </p>
      * 
      * @param params parameter for analyzed sql
      * @return the number of update
      * @throws SQLException sql is not analyzed or database error has occurred
      */
     public int executeUpdateWithParam(Param params) throws SQLException {
+        resetCancel();
         if (!isAnalyzed()) {
             throw new SQLException("sql is not analyzed");
         }
+
+        if (parser.hasCollectionParam(params)) {
+            int count = 0;
+            for (Param chunk: splitParams(params)) {
+                count += doUpdate(expand(chunk));
+            }
+            return count;
+        }
         
-        Object[] p = createParams(params);
-        return executeUpdate(p);
+        setValue(createParams(params));
+        return doUpdate(stmt);
     }
 
     /**
-     * do commit.
+     * execute update sql.
      *
-     * @throws SQLException database error has occurred
+     * @param slots parameter holder created by {@link #newParamSlots()}
+     * @return the number of update
+     * @throws SQLException sql is not analyzed or database error has occurred
+     * @since 0.3.0
      */
-    public void commit() throws SQLException {
-        conn.commit();
+    public int executeUpdateWithParam(ParamSlots slots) throws SQLException {
+        resetCancel();
+        if (!isAnalyzed()) {
+            throw new SQLException("sql is not analyzed");
+        }
+
+        setValue(slots);
+        return doUpdate(stmt);
     }
 
     /**
-     * do rollback.
+     * execute update sql for each parameter in one batch.
      *
+     * @param params parameters for precompiled sql
+     * @return the number of update (rows reported as {@link java.sql.Statement#SUCCESS_NO_INFO} are not counted)
      * @throws SQLException database error has occurred
+     * @since 0.3.0
      */
-    public void rollback() throws SQLException {
-        conn.rollback();
+    public int executeBatch(List<Object[]> params) throws SQLException {
+        resetCancel();
+        return batch(params, null);
     }
 
     /**
-     * disconnect database connection.
+     * execute update sql for each parameter in one batch.
+     * <p>
+     * when {@link #setInsertRewriteWidth(int)} is greater than 1 and the analyzed sql is
+     * {@code INSERT ... VALUES (:a, :b, ...)}, rows are sent as multi-row insert statements
+     * {@code INSERT ... VALUES (?, ?, ...), (?, ?, ...), ...} which have the specified number of rows.
+     * </p>
+     *
+     * @param params parameters for analyzed sql
+     * @return the number of update (rows reported as {@link java.sql.Statement#SUCCESS_NO_INFO} are not counted)
+     * @throws SQLException sql is not analyzed or database error has occurred
+     * @since 0.3.0
      */
-    @Override
-    public void close() {
-        closeStmt();
-        if (conn != null) {
-            try {
-                conn.close();
-            }
-            catch (SQLException ex) {
-                // nothing to do
-            }
-            conn = null;
+    public int executeBatchWithParam(List<Param> params) throws SQLException {
+        resetCancel();
+        if (!isAnalyzed()) {
+            throw new SQLException("sql is not analyzed");
         }
+
+        return batchWithParam(params, null);
     }
 
     /**
-     * get {@link Connection}.
+     * execute insert sql for each parameter in one batch and return generated keys.
+     * <p>
+     * the sql must be prepared by {@link #prepare(String, int)} with {@link Statement#RETURN_GENERATED_KEYS}.
+     * </p>
      *
-     * @return database connection
+     * @param params parameters for precompiled sql
+     * @return generated keys of all rows in order of params, or null when the key is not numeric
+     * @throws SQLException database error has occurred
+     * @since 0.3.0
      */
-    public Connection getConnection() {
-        return this.conn;
+    public long[] executeInsert(List<Object[]> params) throws SQLException {
+        resetCancel();
+        GeneratedKeys keys = new GeneratedKeys(params.size(), null);
+        batch(params, keys);
+        return keys.toArray();
     }
 
     /**
-     * set parameters for precompiled sql.
+     * execute insert sql for each parameter in one batch and return generated keys.
+     * <p>
+     * the sql must be prepared by {@link #prepareWithParam(String, int)} with {@link Statement#RETURN_GENERATED_KEYS}.
+     * multi-row insert is used as {@link #executeBatchWithParam(List)}.
+     * </p>
      *
-     * @param params parameter for precompiled sql
-     * @throws SQLException database error has occurred
+     * @param params parameters for analyzed sql
+     * @return generated keys of all rows in order of params, or null when the key is not numeric
+     * @throws SQLException sql is not analyzed or database error has occurred
+     * @since 0.3.0
      */
-    private void setValue(Object... params) throws SQLException {
-        int ix = 0;
-        for (Object param: params) {
-            ++ix;
-            if (param == null) {
-                ParameterMetaData pmd = stmt.getParameterMetaData();
-                int type = pmd.getParameterType(ix);
-                stmt.setNull(ix, type);
-            }
-            else {
-                stmt.setObject(ix,  param);
-            }
+    public long[] executeInsertWithParam(List<Param> params) throws SQLException {
+        resetCancel();
+        return executeInsertWithParam(params, null);
+    }
+
+    /**
+     * execute insert sql for each parameter in one batch, and set generated keys to the beans.
+     * <p>
+     * the generated key columns are set to the bean fields which have the same column name
+     * (see {@link BeanBuilder#populate(Object, java.sql.ResultSet)}).
+     * </p>
+     *
+     * @param params parameters for analyzed sql
+     * @param beans beans corresponding to each parameter
+     * @param <T> bean type
+     * @return generated keys of all rows in order of params, or null when the key is not numeric
+     * @throws SQLException sql is not analyzed or database error has occurred
+     * @since 0.3.0
+     */
+    public <T> long[] executeInsertWithParam(List<Param> params, List<T> beans) throws SQLException {
+        resetCancel();
+        if (!isAnalyzed()) {
+            throw new SQLException("sql is not analyzed");
         }
+        if (beans != null && beans.size() != params.size()) {
+            throw new SQLException("the number of beans does not match the number of params");
+        }
+
+        GeneratedKeys keys = new GeneratedKeys(params.size(), beans);
+        batchWithParam(params, keys);
+        return keys.toArray();
     }
 
     /**
-     * disconnect prepared statement.
+     * set the number of rows in one multi-row insert statement used by {@link #executeBatchWithParam(List)}.
+     *
+     * @param rows the number of rows. 1 disables rewriting.
+     * @throws IllegalArgumentException rows is less than 1
+     * @since 0.3.0
      */
-    private void closeStmt() {
-        if (stmt != null) {
-            try {
-                stmt.close();
-            }
-            catch (SQLException ex) {
-                // nothing to do
-            }
-            stmt = null;
+    public void setInsertRewriteWidth(int rows) {
+        if (rows < 1) {
+            throw new IllegalArgumentException("rows must be positive:" + rows);
+        }
+        if (rows != insertRewriteWidth) {
+            closeMultiRowStmt();
         }
+        this.insertRewriteWidth = rows;
     }
-    
+
     /**
-     * @return true when {@link #prepareWithParam(String)} was called.
+     * @return the number of rows in one multi-row insert statement
+     * @since 0.3.0
      */
-    private boolean isAnalyzed() {
-        if (parser == null) {
-            return false;
+    public int getInsertRewriteWidth() {
+        return insertRewriteWidth;
+    }
+
+    /**
+     * set max number of placeholders which one {@link java.util.Collection} value is expanded to.
+     * a larger collection is split and the sql is executed for each chunk.
+     *
+     * @param limit max number of placeholders
+     * @throws IllegalArgumentException limit is less than 1
+     * @since 0.3.0
+     */
+    public void setInListLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive:" + limit);
         }
-        else {
-            return parser.isAnalyzed();
+        this.inListLimit = limit;
+        if (parser != null) {
+            parser.setInListLimit(limit);
         }
     }
-    
+
+    /**
+     * @return max number of placeholders which one collection value is expanded to
+     * @since 0.3.0
+     */
+    public int getInListLimit() {
+        return inListLimit;
+    }
+
     /**
+     * create reusable parameter holder for the analyzed sql.
      * 
-     * @param params
-     * @return
+     * @return parameter holder
+     * @throws SQLException sql is not analyzed
+     * @since 0.3.0
      */
-    private Object[] createParams(Param params) {
-        return parser.createParams(params);
+    public ParamSlots newParamSlots() throws SQLException {
+        if (!isAnalyzed()) {
+            throw new SQLException("sql is not analyzed");
+        }
+
+        return parser.newParamSlots();
+    }
+
+    /**
+     * execute query sql and write the result to the channel without building {@link List}.
+     *
+     * @param exporter output format
+     * @param out output (use {@link java.nio.channels.Channels#newChannel(java.io.OutputStream)} for a stream)
+     * @param params parameter for precompiled sql
+     * @return the number of rows
+     * @throws SQLException database error has occurred
+     * @throws IOException failed to write
+     * @since 0.3.0
+     */
+    public long export(ResultSetExporter exporter, WritableByteChannel out, Object... params) throws SQLException, IOException {
+        resetCancel();
+        setValue(params);
+        return export(stmt, exporter, out);
+    }
+
+    /**
+     * execute query sql and write the result to the channel without building {@link List}.
+     *
+     * @param exporter output format
+     * @param out output (use {@link java.nio.channels.Channels#newChannel(java.io.OutputStream)} for a stream)
+     * @param params parameter for analyzed sql
+     * @return the number of rows
+     * @throws SQLException sql is not analyzed, database error has occurred
+     *         or a collection value is larger than {@link #setInListLimit(int)}
+     * @throws IOException failed to write
+     * @since 0.3.0
+     */
+    public long exportWithParam(ResultSetExporter exporter, WritableByteChannel out, Param params) throws SQLException, IOException {
+        resetCancel();
+        if (!isAnalyzed()) {
+            throw new SQLException("sql is not analyzed");
+        }
+
+        if (parser.hasCollectionParam(params)) {
+            List<Param> chunks = splitParams(params);
+            if (chunks.size() > 1) {
+                throw new SQLException("collection is larger than in-list limit");
+            }
+            return export(expand(chunks.get(0)), exporter, out);
+        }
+
+        setValue(createParams(params));
+        return export(stmt, exporter, out);
+    }
+
+    /**
+     * execute query sql and stream the LOB column to the channel.
+     *
+     * @param transfer LOB column and chunk size
+     * @param out output ({@link java.nio.channels.FileChannel} is written without the intermediate buffer)
+     * @param params parameter for precompiled sql
+     * @return the number of bytes written
+     * @throws SQLException database error has occurred
+     * @throws IOException failed to write
+     * @since 0.3.0
+     */
+    public long transfer(LobTransfer transfer, WritableByteChannel out, Object... params) throws SQLException, IOException {
+        resetCancel();
+        setValue(params);
+        return transfer(stmt, transfer, out);
+    }
+
+    /**
+     * execute query sql and stream the LOB column to the channel.
+     *
+     * @param transfer LOB column and chunk size
+     * @param out output ({@link java.nio.channels.FileChannel} is written without the intermediate buffer)
+     * @param params parameter for analyzed sql
+     * @return the number of bytes written
+     * @throws SQLException sql is not analyzed or database error has occurred
+     * @throws IOException failed to write
+     * @since 0.3.0
+     */
+    public long transferWithParam(LobTransfer transfer, WritableByteChannel out, Param params) throws SQLException, IOException {
+        resetCancel();
+        if (!isAnalyzed()) {
+            throw new SQLException("sql is not analyzed");
+        }
+
+        setValue(createParams(params));
+        return transfer(stmt, transfer, out);
+    }
+
+    /**
+     * add the interceptor to the end of the chain.
+     * {@code before*} hooks are called in order of addition and {@code after*} hooks in reverse order.
+     *
+     * @param interceptor interceptor
+     * @since 0.3.0
+     */
+    public void addInterceptor(StatementInterceptor interceptor) {
+        if (interceptor == null) {
+            throw new IllegalArgumentException("interceptor is null");
+        }
+        if (context == null) {
+            context = new StatementContext(this);
+        }
+        interceptors.add(interceptor);
+    }
+
+    /**
+     * remove the interceptor.
+     *
+     * @param interceptor interceptor added by {@link #addInterceptor(StatementInterceptor)}
+     * @return true when the interceptor is removed
+     * @since 0.3.0
+     */
+    public boolean removeInterceptor(StatementInterceptor interceptor) {
+        return interceptors.remove(interceptor);
+    }
+
+    /**
+     * @return interceptors in order of addition (read only)
+     * @since 0.3.0
+     */
+    public List<StatementInterceptor> getInterceptors() {
+        return interceptors.toList();
+    }
+
+    /**
+     * create the pipeline to execute several statements with the fewest round trips.
+     * it uses the connection independently of the prepared statement.
+     *
+     * @return new pipeline
+     * @since 0.3.0
+     */
+    public Pipeline pipeline() {
+        Pipeline pipeline = new Pipeline(conn);
+        pipeline.setInListLimit(inListLimit);
+        return pipeline;
+    }
+
+    /**
+     * cancel the running execution from another thread.
+     * <p>
+     * the statement is cancelled by {@link Statement#cancel()}, and reading rows,
+     * writing the result by {@link #export(ResultSetExporter, WritableByteChannel, Object...)}
+     * or writing the LOB by {@link #transfer(LobTransfer, WritableByteChannel, Object...)}
+     * stops before the next row or chunk with {@link SQLException} (SQLState HY008).
+     * the cancel is effective until the execution ends, also before the statement is executed,
+     * and is cleared when the next execution starts.
+     * </p>
+     *
+     * @throws SQLException database error has occurred
+     * @since 0.3.0
+     */
+    public void cancel() throws SQLException {
+        cancelled = true;
+        ResultSetExporter exporter = runningExporter;
+        if (exporter != null) {
+            exporter.cancel();
+        }
+        LobTransfer transfer = runningTransfer;
+        if (transfer != null) {
+            transfer.cancel();
+        }
+        PreparedStatement st = running;
+        if (st != null && !st.isClosed()) {
+            st.cancel();
+        }
+    }
+
+    /**
+     * do commit.
+     *
+     * @throws SQLException database error has occurred
+     */
+    public void commit() throws SQLException {
+        conn.commit();
+    }
+
+    /**
+     * do rollback.
+     *
+     * @throws SQLException database error has occurred
+     */
+    public void rollback() throws SQLException {
+        conn.rollback();
+    }
+
+    /**
+     * disconnect database connection.
+     */
+    @Override
+    public void close() {
+        closeStmt();
+        if (conn != null) {
+            try {
+                conn.close();
+            }
+            catch (SQLException ex) {
+                // nothing to do
+            }
+            conn = null;
+        }
+    }
+
+    /**
+     * get {@link Connection}.
+     *
+     * @return database connection
+     */
+    public Connection getConnection() {
+        return this.conn;
+    }
+
+    /**
+     * set parameters for precompiled sql.
+     *
+     * @param params parameter for precompiled sql
+     * @throws SQLException database error has occurred
+     */
+    private void setValue(Object... params) throws SQLException {
+        if (!interceptors.isEmpty()) {
+            context.reset();
+            context.setParameters(params);
+            long start = interceptors.beforeBind(context);
+            bind(params);
+            interceptors.afterBind(context, start);
+        }
+        else {
+            bind(params);
+        }
+    }
+
+    /**
+     * set parameters for precompiled sql without interceptors.
+     *
+     * @param params parameter for precompiled sql
+     * @throws SQLException database error has occurred
+     */
+    private void bind(Object[] params) throws SQLException {
+        int ix = 0;
+        for (Object param: params) {
+            setValue(++ix, param);
+        }
+    }
+
+    /**
+     * set parameters for analyzed sql.
+     *
+     * @param slots parameter holder
+     * @throws SQLException database error has occurred
+     */
+    private void setValue(ParamSlots slots) throws SQLException {
+        boolean intercepted = !interceptors.isEmpty();
+        long start = 0L;
+        if (intercepted) {
+            context.reset();
+            context.setParameters(slots);
+            start = interceptors.beforeBind(context);
+        }
+        int size = slots.size();
+        for (int ix = 1; ix <= size; ix++) {
+            setValue(ix, slots.getParameter(ix));
+        }
+        if (intercepted) {
+            interceptors.afterBind(context, start);
+        }
+    }
+
+    /**
+     * set a parameter for precompiled sql.
+     *
+     * @param ix parameter index (1-origin)
+     * @param param parameter value
+     * @throws SQLException database error has occurred
+     */
+    private void setValue(int ix, Object param) throws SQLException {
+        if (handle == null || handle.getStatement() != stmt) {
+            handle = new StatementHandle(stmt);
+        }
+        handle.bind(ix, param);
+    }
+
+    /**
+     * execute batch.
+     *
+     * @param params parameters for precompiled sql
+     * @param keys collector of generated keys, or null
+     * @return the number of update
+     * @throws SQLException database error has occurred
+     */
+    private int batch(List<Object[]> params, GeneratedKeys keys) throws SQLException {
+        checkGeneratedKeys(keys);
+        for (Object[] p: params) {
+            setValue(p);
+            stmt.addBatch();
+        }
+        int count = sum(doBatch(stmt));
+        collect(keys, stmt);
+        return count;
+    }
+
+    /**
+     * execute batch for analyzed sql.
+     *
+     * @param params parameters for analyzed sql
+     * @param keys collector of generated keys, or null
+     * @return the number of update
+     * @throws SQLException database error has occurred
+     */
+    private int batchWithParam(List<Param> params, GeneratedKeys keys) throws SQLException {
+        checkGeneratedKeys(keys);
+        if (insertRewriteWidth > 1 && params.size() > 1 && parser.isRewritableInsert()) {
+            return executeMultiRowInsert(params, keys);
+        }
+
+        for (Param p: params) {
+            setValue(createParams(p));
+            stmt.addBatch();
+        }
+        int count = sum(doBatch(stmt));
+        collect(keys, stmt);
+        return count;
+    }
+
+    /**
+     * @param keys collector of generated keys, or null
+     * @throws SQLException statement is not prepared to return generated keys
+     */
+    private void checkGeneratedKeys(GeneratedKeys keys) throws SQLException {
+        if (keys != null && options.getAutoGeneratedKeys() != Statement.RETURN_GENERATED_KEYS) {
+            throw new SQLException("sql is not prepared with RETURN_GENERATED_KEYS");
+        }
+    }
+
+    /**
+     * @param keys collector of generated keys, or null
+     * @param st executed statement
+     * @throws SQLException database error has occurred
+     */
+    private void collect(GeneratedKeys keys, Statement st) throws SQLException {
+        if (keys != null) {
+            try (ResultSet rs = st.getGeneratedKeys()) {
+                keys.collect(rs);
+            }
+        }
+    }
+
+    /**
+     * prepare statement with {@link #options}.
+     *
+     * @param sql sql statement to precompile
+     * @return prepared statement
+     * @throws SQLException database error has occurred
+     */
+    private PreparedStatement prepareStatement(String sql) throws SQLException {
+        PreparedStatement st;
+        if (options.getAutoGeneratedKeys() == Statement.RETURN_GENERATED_KEYS) {
+            st = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        }
+        else if (options.getResultSetType() != ResultSet.TYPE_FORWARD_ONLY
+                || options.getResultSetConcurrency() != ResultSet.CONCUR_READ_ONLY) {
+            st = conn.prepareStatement(sql, options.getResultSetType(), options.getResultSetConcurrency());
+        }
+        else {
+            st = conn.prepareStatement(sql);
+        }
+
+        if (options.getFetchSize() > 0) {
+            st.setFetchSize(options.getFetchSize());
+        }
+        if (options.getMaxRows() > 0) {
+            st.setMaxRows(options.getMaxRows());
+        }
+        if (options.getQueryTimeout() > 0) {
+            st.setQueryTimeout(options.getQueryTimeout());
+        }
+        return st;
+    }
+
+    /**
+     * apply the adaptive fetch size to the result set and the statement.
+     * the statement keeps it for the next execution because
+     * some drivers fetch the first rows when the query is executed.
+     *
+     * @param st prepared statement
+     * @param rs result set
+     * @param rsmd metadata of the result set
+     * @throws SQLException database error has occurred
+     */
+    private void tuneFetchSize(PreparedStatement st, ResultSet rs, ResultSetMetaData rsmd) throws SQLException {
+        if (adaptiveFetchSize == null) {
+            return;
+        }
+        adaptiveFetchSize.estimate(rsmd);
+        int fetchSize = adaptiveFetchSize.fetchSize();
+        if (fetchSize > 0) {
+            rs.setFetchSize(fetchSize);
+            st.setFetchSize(fetchSize);
+        }
+    }
+
+    /**
+     * execute multi-row insert statements.
+     *
+     * @param params parameters for analyzed sql
+     * @param keys collector of generated keys, or null
+     * @return the number of update
+     * @throws SQLException database error has occurred
+     */
+    private int executeMultiRowInsert(List<Param> params, GeneratedKeys keys) throws SQLException {
+        int width = insertRewriteWidth;
+        int full = params.size() / width;
+        int count = 0;
+
+        if (full > 0) {
+            if (multiRowHandle == null) {
+                multiRowHandle = new StatementHandle(prepareStatement(parser.createMultiRowSQL(width)));
+            }
+            for (int ix = 0; ix < full; ix++) {
+                setValue(multiRowHandle, parser.createMultiRowParams(params.subList(ix * width, (ix + 1) * width)));
+                multiRowHandle.getStatement().addBatch();
+            }
+            count += sum(doBatch(multiRowHandle.getStatement()));
+            collect(keys, multiRowHandle.getStatement());
+        }
+
+        List<Param> rest = params.subList(full * width, params.size());
+        if (rest.size() == 1) {
+            setValue(createParams(rest.get(0)));
+            count += doUpdate(stmt);
+            collect(keys, stmt);
+        }
+        else if (rest.size() > 1) {
+            try (PreparedStatement st = prepareStatement(parser.createMultiRowSQL(rest.size()))) {
+                StatementHandle h = new StatementHandle(st);
+                try {
+                    setValue(h, parser.createMultiRowParams(rest));
+                    count += doUpdate(st);
+                }
+                finally {
+                    h.release();
+                }
+                collect(keys, st);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * execute the prepared statement and write the result.
+     *
+     * @param st prepared statement
+     * @param exporter output format
+     * @param out output
+     * @return the number of rows
+     * @throws SQLException database error has occurred
+     * @throws IOException failed to write
+     */
+    private long export(PreparedStatement st, ResultSetExporter exporter, WritableByteChannel out) throws SQLException, IOException {
+        boolean intercepted = !interceptors.isEmpty();
+        if (intercepted) {
+            // the result of the interceptor is ignored because rows are written to the channel
+            intercept(StatementContext.Operation.EXPORT, null);
+        }
+
+        runningExporter = exporter;
+        try (ResultSet rs = doQuery(st)) {
+            if (adaptiveFetchSize != null) {
+                tuneFetchSize(st, rs, rs.getMetaData());
+            }
+            checkCancelled();
+            long start = intercepted ? interceptors.beforeMap(context) : 0L;
+            Object event = FlightRecorderSupport.begin(FlightRecorderSupport.FETCH);
+            long rows = exporter.export(rs, out);
+            FlightRecorderSupport.end(event, this, "export", null, rows);
+            observe(rs, exporter.getValueBytes(), rows);
+            if (intercepted) {
+                context.setRowCount(rows);
+                interceptors.afterMap(context, rows, start);
+            }
+            return rows;
+        }
+        finally {
+            runningExporter = null;
+        }
+    }
+
+    /**
+     * update the fetch size estimation with the rows read.
+     *
+     * @param rs search result
+     * @param bytes estimated bytes of the values read
+     * @param rows the number of rows read
+     * @throws SQLException database error has occurred
+     */
+    private void observe(ResultSet rs, long bytes, long rows) throws SQLException {
+        if (adaptiveFetchSize != null) {
+            adaptiveFetchSize.observe(bytes, rows, rs.getMetaData().getColumnCount());
+        }
+    }
+
+    /**
+     * @param rsmd metadata of the result
+     * @return column types
+     * @throws SQLException database error has occurred
+     */
+    private static int[] columnTypes(ResultSetMetaData rsmd) throws SQLException {
+        int[] types = new int[rsmd.getColumnCount()];
+        for (int ix = 0; ix < types.length; ix++) {
+            types[ix] = rsmd.getColumnType(ix + 1);
+        }
+        return types;
+    }
+
+    /**
+     * execute the prepared statement and stream the LOB column.
+     *
+     * @param st prepared statement
+     * @param transfer LOB column and chunk size
+     * @param out output
+     * @return the number of bytes written
+     * @throws SQLException database error has occurred
+     * @throws IOException failed to write
+     */
+    private long transfer(PreparedStatement st, LobTransfer transfer, WritableByteChannel out) throws SQLException, IOException {
+        boolean intercepted = !interceptors.isEmpty();
+        if (intercepted) {
+            // the result of the interceptor is ignored because the value is written to the channel
+            intercept(StatementContext.Operation.EXPORT, null);
+        }
+
+        runningTransfer = transfer;
+        try (ResultSet rs = doQuery(st)) {
+            checkCancelled();
+            long start = intercepted ? interceptors.beforeMap(context) : 0L;
+            Object event = FlightRecorderSupport.begin(FlightRecorderSupport.FETCH);
+            long bytes = transfer.transfer(rs, out);
+            FlightRecorderSupport.end(event, this, "transfer", null, -1);
+            if (intercepted) {
+                interceptors.afterMap(context, bytes, start);
+            }
+            return bytes;
+        }
+        finally {
+            runningTransfer = null;
+        }
+    }
+
+    /**
+     * read the rows and map them to beans one by one.
+     * the values are read into an array before mapping only when it is needed
+     * to time the mapping separately or to observe the row size.
+     *
+     * @param rs search result
+     * @param plan mapping plan for the result
+     * @param cls bean class
+     * @param <T> bean type
+     * @return search result
+     * @throws SQLException database error has occurred
+     * @throws BeanBuilderException failed to construct a bean
+     */
+    private <T> List<T> readSequential(ResultSet rs, MappingPlan plan, Class<T> cls) throws SQLException, BeanBuilderException {
+        List<T> list = new ArrayList<>();
+        Object event = FlightRecorderSupport.begin(FlightRecorderSupport.MAPPING);
+        boolean split = event != null || adaptiveFetchSize != null;
+        long bytes = 0;
+        long mappingNanos = 0;
+        while (rs.next()) {
+            checkCancelled();
+            if (!split) {
+                T bean = plan.build(rs);
+                list.add(bean);
+                continue;
+            }
+            Object[] row = plan.read(rs);
+            if (adaptiveFetchSize != null) {
+                bytes += AdaptiveFetchSize.bytes(row);
+            }
+            long start = event != null ? System.nanoTime() : 0L;
+            T bean = plan.build(row);
+            if (event != null) {
+                mappingNanos += System.nanoTime() - start;
+            }
+            list.add(bean);
+        }
+        FlightRecorderSupport.endMapping(event, cls, list.size(), mappingNanos);
+        observe(rs, bytes, list.size());
+        return list;
+    }
+
+    /**
+     * read the rows on another thread and map them to beans on this thread.
+     *
+     * @param rs search result
+     * @param plan mapping plan for the result
+     * @param cls bean class
+     * @param <T> bean type
+     * @return search result
+     * @throws SQLException database error has occurred
+     * @throws BeanBuilderException failed to construct a bean
+     */
+    private <T> List<T> readAhead(ResultSet rs, MappingPlan plan, Class<T> cls) throws SQLException, BeanBuilderException {
+        List<T> list = new ArrayList<>();
+        Object event = FlightRecorderSupport.begin(FlightRecorderSupport.MAPPING);
+        long bytes = 0;
+        long mappingNanos = 0;
+        try (ReadAhead reader = new ReadAhead(rs, plan, options.getReadAheadRows(), options.getReadAheadExecutor())) {
+            Object[] row;
+            while ((row = reader.next()) != null) {
+                checkCancelled();
+                if (adaptiveFetchSize != null) {
+                    bytes += AdaptiveFetchSize.bytes(row);
+                }
+                long start = event != null ? System.nanoTime() : 0L;
+                T bean = plan.build(row);
+                if (event != null) {
+                    mappingNanos += System.nanoTime() - start;
+                }
+                list.add(bean);
+            }
+        }
+        FlightRecorderSupport.endMapping(event, cls, list.size(), mappingNanos);
+        observe(rs, bytes, list.size());
+        return list;
+    }
+
+    /**
+     * read the values of all rows to map them to beans later.
+     *
+     * @param rs search result
+     * @param plan mapping plan for the result
+     * @return values of each row
+     * @throws SQLException database error has occurred
+     */
+    private List<Object[]> readRows(ResultSet rs, MappingPlan plan) throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        if (options.getReadAheadRows() > 0) {
+            try (ReadAhead reader = new ReadAhead(rs, plan, options.getReadAheadRows(), options.getReadAheadExecutor())) {
+                Object[] row;
+                while ((row = reader.next()) != null) {
+                    checkCancelled();
+                    rows.add(row);
+                }
+            }
+        }
+        else {
+            while (rs.next()) {
+                checkCancelled();
+                rows.add(plan.read(rs));
+            }
+        }
+        if (adaptiveFetchSize != null) {
+            long bytes = 0;
+            for (Object[] row: rows) {
+                bytes += AdaptiveFetchSize.bytes(row);
+            }
+            observe(rs, bytes, rows.size());
+        }
+        return rows;
+    }
+
+    /**
+     * execute query.
+     *
+     * @param st statement which parameters are already set
+     * @return search result
+     * @throws SQLException database error has occurred
+     */
+    private ResultSet doQuery(PreparedStatement st) throws SQLException {
+        try {
+            beforeExecute(st);
+            Object event = FlightRecorderSupport.begin(FlightRecorderSupport.EXECUTE);
+            ResultSet rs;
+            if (interceptors.isEmpty()) {
+                rs = st.executeQuery();
+            }
+            else {
+                long start = System.nanoTime();
+                try {
+                    rs = st.executeQuery();
+                }
+                catch (SQLException ex) {
+                    interceptors.onError(context, ex);
+                    throw ex;
+                }
+                interceptors.afterExecute(context, start);
+            }
+            FlightRecorderSupport.end(event, this, "query", null, -1);
+            return rs;
+        }
+        finally {
+            releaseArrays();
+        }
+    }
+
+    /**
+     * execute update.
+     *
+     * @param st statement which parameters are already set
+     * @return the number of update
+     * @throws SQLException database error has occurred
+     */
+    private int doUpdate(PreparedStatement st) throws SQLException {
+        try {
+            if (interceptors.isEmpty()) {
+                beforeExecute(st);
+                Object event = FlightRecorderSupport.begin(FlightRecorderSupport.EXECUTE);
+                int count = st.executeUpdate();
+                FlightRecorderSupport.end(event, this, "update", null, count);
+                return count;
+            }
+
+            Object result = intercept(StatementContext.Operation.UPDATE, null);
+            if (result != null) {
+                return (Integer) result;
+            }
+            beforeExecute(st);
+            Object event = FlightRecorderSupport.begin(FlightRecorderSupport.EXECUTE);
+            long start = System.nanoTime();
+            int count;
+            try {
+                count = st.executeUpdate();
+            }
+            catch (SQLException ex) {
+                interceptors.onError(context, ex);
+                throw ex;
+            }
+            context.setRowCount(count);
+            interceptors.afterExecute(context, start);
+            FlightRecorderSupport.end(event, this, "update", null, count);
+            return count;
+        }
+        finally {
+            releaseArrays();
+        }
+    }
+
+    /**
+     * execute batch.
+     *
+     * @param st statement which batches are already added
+     * @return the number of update of each batch
+     * @throws SQLException database error has occurred
+     */
+    private int[] doBatch(PreparedStatement st) throws SQLException {
+        try {
+            if (interceptors.isEmpty()) {
+                beforeExecute(st);
+                Object event = FlightRecorderSupport.begin(FlightRecorderSupport.EXECUTE);
+                int[] counts = st.executeBatch();
+                FlightRecorderSupport.end(event, this, "batch", null, sum(counts));
+                return counts;
+            }
+
+            Object result = intercept(StatementContext.Operation.BATCH, null);
+            if (result != null) {
+                st.clearBatch();
+                return (int[]) result;
+            }
+            beforeExecute(st);
+            Object event = FlightRecorderSupport.begin(FlightRecorderSupport.EXECUTE);
+            long start = System.nanoTime();
+            int[] counts;
+            try {
+                counts = st.executeBatch();
+            }
+            catch (SQLException ex) {
+                interceptors.onError(context, ex);
+                throw ex;
+            }
+            context.setRowCount(sum(counts));
+            interceptors.afterExecute(context, start);
+            FlightRecorderSupport.end(event, this, "batch", null, sum(counts));
+            return counts;
+        }
+        finally {
+            releaseArrays();
+        }
+    }
+
+    /**
+     * start the execution on the interceptors.
+     *
+     * @param operation kind of the execution
+     * @param beanClass bean class of the result, or null
+     * @return the result to short-circuit, or null to execute
+     */
+    private Object intercept(StatementContext.Operation operation, Class<?> beanClass) {
+        context.setOperation(operation, beanClass);
+        context.setRowCount(-1);
+        return interceptors.beforeExecute(context);
+    }
+
+    /**
+     * notify the interceptors of the mapped rows.
+     *
+     * @param list mapped rows
+     * @param start start of the map phase
+     */
+    private void mapped(List<?> list, long start) {
+        context.setRowCount(list.size());
+        interceptors.afterMap(context, list, start);
+    }
+
+    /**
+     * @return precompiled sql
+     */
+    String preparedSQL() {
+        return preparedSQL;
+    }
+
+    /**
+     * @return fingerprint of the precompiled sql
+     */
+    String fingerprint() {
+        if (fingerprint == null && preparedSQL != null) {
+            fingerprint = SQLFingerprint.of(preparedSQL);
+        }
+        return fingerprint;
+    }
+
+    /**
+     * apply the query timeout and the deadline to the statement,
+     * and make it the target of {@link #cancel()}.
+     *
+     * @param st statement to execute
+     * @throws java.sql.SQLTimeoutException the deadline has already passed
+     * @throws SQLException {@link #cancel()} is called or database error has occurred
+     */
+    private void beforeExecute(PreparedStatement st) throws SQLException {
+        running = st;
+        checkCancelled();
+
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            if (deadlineApplied) {
+                st.setQueryTimeout(options.getQueryTimeout());
+            }
+            return;
+        }
+
+        st.setQueryTimeout(deadline.queryTimeout(options.getQueryTimeout()));
+        deadlineApplied = true;
+    }
+
+    /**
+     * clear {@link #cancel()} at the start of the execution.
+     * the cancel called after this stops all the statements of the execution (e.g. each chunk of the in-list).
+     */
+    private void resetCancel() {
+        cancelled = false;
+    }
+
+    /**
+     * @throws SQLException {@link #cancel()} is called
+     */
+    private void checkCancelled() throws SQLException {
+        if (cancelled) {
+            throw new SQLException("execution is cancelled", "HY008");
+        }
+    }
+
+    /**
+     * split the parameters of which collection values are too large.
+     *
+     * @param params parameter for analyzed sql
+     * @return split parameters
+     * @throws SQLException more than one collection is too large
+     */
+    private List<Param> splitParams(Param params) throws SQLException {
+        try {
+            return parser.splitParams(params);
+        }
+        catch (IllegalArgumentException ex) {
+            throw new SQLException(ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * get the statement of which collection values are expanded and set parameters.
+     *
+     * @param params parameter for analyzed sql
+     * @return prepared statement
+     * @throws SQLException database error has occurred
+     */
+    private PreparedStatement expand(Param params) throws SQLException {
+        String sql = parser.expandSQL(params);
+        StatementHandle h = expandedHandles.get(sql);
+        if (h == null) {
+            h = new StatementHandle(prepareStatement(sql));
+            expandedHandles.put(sql, h);
+        }
+        setValue(h, parser.createParams(params));
+        return h.getStatement();
+    }
+
+    /**
+     * set parameters to the statement.
+     *
+     * @param h statement and its binders
+     * @param params parameter values
+     * @throws SQLException database error has occurred
+     */
+    private void setValue(StatementHandle h, Object[] params) throws SQLException {
+        boolean intercepted = !interceptors.isEmpty();
+        long start = 0L;
+        if (intercepted) {
+            context.reset();
+            context.setParameters(params);
+            start = interceptors.beforeBind(context);
+        }
+        for (int ix = 0; ix < params.length; ix++) {
+            h.bind(ix + 1, params[ix]);
+        }
+        if (intercepted) {
+            interceptors.afterBind(context, start);
+        }
+    }
+
+    /**
+     * @param counts update counts of batch
+     * @return total of update counts
+     */
+    private static int sum(int[] counts) {
+        int total = 0;
+        for (int count: counts) {
+            if (count > 0) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * free the arrays bound to the statements after the execution.
+     */
+    private void releaseArrays() {
+        if (handle != null) {
+            handle.release();
+        }
+        if (multiRowHandle != null) {
+            multiRowHandle.release();
+        }
+        for (StatementHandle h: expandedHandles.values()) {
+            h.release();
+        }
+    }
+
+    /**
+     * disconnect multi-row insert statement.
+     */
+    private void closeMultiRowStmt() {
+        if (multiRowHandle != null) {
+            try {
+                multiRowHandle.getStatement().close();
+            }
+            catch (SQLException ex) {
+                // nothing to do
+            }
+            multiRowHandle = null;
+        }
+    }
+
+    /**
+     * disconnect prepared statement.
+     */
+    private void closeStmt() {
+        releaseArrays();
+        closeMultiRowStmt();
+        for (StatementHandle h: expandedHandles.values()) {
+            try {
+                h.getStatement().close();
+            }
+            catch (SQLException ex) {
+                // nothing to do
+            }
+        }
+        expandedHandles.clear();
+        if (stmt != null) {
+            try {
+                stmt.close();
+            }
+            catch (SQLException ex) {
+                // nothing to do
+            }
+            stmt = null;
+        }
+        handle = null;
+        running = null;
+    }
+    
+    /**
+     * @return true when {@link #prepareWithParam(String)} was called.
+     */
+    private boolean isAnalyzed() {
+        if (parser == null) {
+            return false;
+        }
+        else {
+            return parser.isAnalyzed();
+        }
+    }
+    
+    /**
+     * 
+     * @param params
+     * @return
+     */
+    private Object[] createParams(Param params) {
+        return parser.createParams(params);
+    }
+
+    /**
+     * collect generated keys of a batch.
+     */
+    private static class GeneratedKeys {
+        private final long[] keys;
+        private final List<?> beans;
+        private int count = 0;
+        private boolean numeric = true;
+        private BeanBuilder builder;
+
+        GeneratedKeys(int size, List<?> beans) {
+            this.keys = new long[size];
+            this.beans = beans;
+        }
+
+        void collect(ResultSet rs) throws SQLException {
+            if (count == 0) {
+                numeric = isNumeric(rs.getMetaData().getColumnType(1));
+            }
+            while (count < keys.length && rs.next()) {
+                if (numeric) {
+                    keys[count] = rs.getLong(1);
+                }
+                if (beans != null) {
+                    Object bean = beans.get(count);
+                    if (builder == null) {
+                        builder = BeanBuilderFactory.getManager().getBeanBuilder(bean.getClass());
+                    }
+                    try {
+                        builder.populate(bean, rs);
+                    }
+                    catch (BeanBuilderException ex) {
+                        throw new SQLException(ex);
+                    }
+                }
+                count++;
+            }
+        }
+
+        long[] toArray() throws SQLException {
+            if (count != keys.length) {
+                throw new SQLException("driver returned " + count + " generated keys for " + keys.length + " rows");
+            }
+            return numeric ? keys : null;
+        }
+
+        private static boolean isNumeric(int sqlType) {
+            switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return true;
+            default:
+                return false;
+            }
+        }
     }
 }
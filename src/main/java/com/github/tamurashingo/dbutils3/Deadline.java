@@ -0,0 +1,161 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * deadline of a request.
+ *
+ * <p>
+ * while the deadline is bound to the current thread, {@link DBConnectionUtil}
+ * sets the remaining time to {@link java.sql.Statement#setQueryTimeout(int)}
+ * before each execution, and fails with {@link java.sql.SQLTimeoutException}
+ * when the deadline has already passed.
+ * </p>
+ * <pre><code>
+ * try (Deadline.Scope scope = Deadline.within(3, TimeUnit.SECONDS)) {
+ *     List&lt;UserBean&gt; users = conn.executeQueryWithParam(UserBean.class, params);
+ *     conn.executeUpdateWithParam(params);
+ * }
+ * </code></pre>
+ * <p>
+ * to propagate the deadline to another thread, pass {@link #current()} and {@link #bind()} it there.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public final class Deadline {
+
+    /** deadline bound to the current thread */
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    /** {@link System#nanoTime()} of the deadline */
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * create the deadline after the timeout from now.
+     *
+     * @param timeout timeout
+     * @param unit unit of timeout
+     * @return deadline
+     */
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(timeout));
+    }
+
+    /**
+     * bind the deadline after the timeout from now to the current thread.
+     *
+     * @param timeout timeout
+     * @param unit unit of timeout
+     * @return scope to unbind the deadline
+     */
+    public static Scope within(long timeout, TimeUnit unit) {
+        return after(timeout, unit).bind();
+    }
+
+    /**
+     * @return deadline bound to the current thread, or null
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * bind this deadline to the current thread until the scope is closed.
+     * when an earlier deadline is already bound, the earlier one is kept.
+     *
+     * @return scope to restore the previous deadline
+     */
+    public Scope bind() {
+        Deadline previous = CURRENT.get();
+        if (previous == null || deadlineNanos - previous.deadlineNanos < 0) {
+            CURRENT.set(this);
+        }
+        return new Scope(previous);
+    }
+
+    /**
+     * @param unit unit of the result
+     * @return remaining time (0 or negative when expired)
+     */
+    public long remaining(TimeUnit unit) {
+        return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return true when the deadline has passed
+     */
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * convert the remaining time into {@link java.sql.Statement#setQueryTimeout(int)}.
+     *
+     * @param configured query timeout of the statement in seconds (0 means no limit)
+     * @return the shorter of the configured timeout and the remaining time, in seconds
+     * @throws SQLTimeoutException the deadline has already passed
+     */
+    int queryTimeout(int configured) throws SQLTimeoutException {
+        long remaining = remaining(TimeUnit.MILLISECONDS);
+        if (remaining <= 0) {
+            throw new SQLTimeoutException("deadline exceeded", "HYT00");
+        }
+        int seconds = (int)Math.min(Integer.MAX_VALUE, (remaining + 999) / 1000);
+        return configured > 0 ? Math.min(configured, seconds) : seconds;
+    }
+
+    /**
+     * scope of the bound deadline.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final Deadline previous;
+
+        private Scope(Deadline previous) {
+            this.previous = previous;
+        }
+
+        /**
+         * restore the previous deadline.
+         */
+        @Override
+        public void close() {
+            if (previous == null) {
+                CURRENT.remove();
+            }
+            else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+}
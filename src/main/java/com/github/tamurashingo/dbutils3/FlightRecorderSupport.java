@@ -0,0 +1,110 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+/**
+ * emit the events of {@code com.github.tamurashingo.dbutils3.jfr} when JFR is available.
+ *
+ * <p>
+ * the events are in {@code src/main/jfr}, which is compiled only on JDK 11 or later (profile {@code jfr}),
+ * and are used through {@link Recorder} so that this package is compiled and loaded without {@code jdk.jfr}.
+ * on a JVM without {@code jdk.jfr}, or when the events are not built, nothing is done.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+final class FlightRecorderSupport {
+
+    /** event kinds (the same as {@code jfr.Events}) */
+    static final int PREPARE = 0;
+    static final int EXECUTE = 1;
+    static final int FETCH = 2;
+    static final int MAPPING = 3;
+
+    private static final Recorder RECORDER = load();
+
+    private FlightRecorderSupport() {
+    }
+
+    private static Recorder load() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return (Recorder)Class.forName("com.github.tamurashingo.dbutils3.JfrRecorder").getDeclaredConstructor().newInstance();
+        }
+        catch (ReflectiveOperationException | LinkageError | RuntimeException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * @param kind kind of the event ({@link #PREPARE}, {@link #EXECUTE}, {@link #FETCH} or {@link #MAPPING})
+     * @return event, or null when it is not recorded
+     */
+    static Object begin(int kind) {
+        return RECORDER != null ? RECORDER.begin(kind) : null;
+    }
+
+    /**
+     * end and commit the event when it exceeds the threshold.
+     *
+     * @param event event returned by {@link #begin(int)}, or null
+     * @param source connection of which sql fingerprint is recorded (computed only when the event is committed)
+     * @param operation name of the operation
+     * @param beanClass bean class, or null
+     * @param rows the number of rows
+     */
+    static void end(Object event, DBConnectionUtil source, String operation, Class<?> beanClass, long rows) {
+        if (event != null && RECORDER.end(event)) {
+            RECORDER.commit(event, source != null ? source.fingerprint() : null, operation, beanClass, rows);
+        }
+    }
+
+    /**
+     * end and commit the mapping event when it exceeds the threshold.
+     *
+     * @param event event returned by {@link #begin(int)}, or null
+     * @param beanClass bean class
+     * @param rows the number of rows
+     * @param mappingNanos time spent in the mapping
+     */
+    static void endMapping(Object event, Class<?> beanClass, long rows, long mappingNanos) {
+        if (event != null && RECORDER.end(event)) {
+            RECORDER.commitMapping(event, beanClass, rows, mappingNanos);
+        }
+    }
+
+    /**
+     * creates and commits the events (implemented by {@code JfrRecorder} in {@code src/main/jfr}).
+     */
+    interface Recorder {
+        Object begin(int kind);
+
+        boolean end(Object event);
+
+        void commit(Object event, String sql, String operation, Class<?> beanClass, long rows);
+
+        void commitMapping(Object event, Class<?> beanClass, long rows, long mappingNanos);
+    }
+}
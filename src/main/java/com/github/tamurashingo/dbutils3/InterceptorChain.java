@@ -0,0 +1,147 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ordered {@link StatementInterceptor}s.
+ * the callers check {@link #isEmpty()} first so that no timestamp is taken without interceptors.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+class InterceptorChain {
+
+    private static final StatementInterceptor[] NONE = new StatementInterceptor[0];
+
+    private StatementInterceptor[] interceptors = NONE;
+
+    boolean isEmpty() {
+        return interceptors.length == 0;
+    }
+
+    void add(StatementInterceptor interceptor) {
+        StatementInterceptor[] added = Arrays.copyOf(interceptors, interceptors.length + 1);
+        added[interceptors.length] = interceptor;
+        interceptors = added;
+    }
+
+    boolean remove(StatementInterceptor interceptor) {
+        for (int ix = 0; ix < interceptors.length; ix++) {
+            if (interceptors[ix] == interceptor) {
+                StatementInterceptor[] removed = new StatementInterceptor[interceptors.length - 1];
+                System.arraycopy(interceptors, 0, removed, 0, ix);
+                System.arraycopy(interceptors, ix + 1, removed, ix, interceptors.length - ix - 1);
+                interceptors = removed;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    List<StatementInterceptor> toList() {
+        return Collections.unmodifiableList(Arrays.asList(interceptors.clone()));
+    }
+
+    /**
+     * @return start timestamp
+     */
+    long beforePrepare(StatementContext ctx) {
+        for (StatementInterceptor interceptor: interceptors) {
+            interceptor.beforePrepare(ctx);
+        }
+        return System.nanoTime();
+    }
+
+    void afterPrepare(StatementContext ctx, long start) {
+        long end = System.nanoTime();
+        for (int ix = interceptors.length - 1; ix >= 0; ix--) {
+            interceptors[ix].afterPrepare(ctx, start, end);
+        }
+    }
+
+    /**
+     * @return start timestamp
+     */
+    long beforeBind(StatementContext ctx) {
+        for (StatementInterceptor interceptor: interceptors) {
+            interceptor.beforeBind(ctx);
+        }
+        return System.nanoTime();
+    }
+
+    void afterBind(StatementContext ctx, long start) {
+        long end = System.nanoTime();
+        for (int ix = interceptors.length - 1; ix >= 0; ix--) {
+            interceptors[ix].afterBind(ctx, start, end);
+        }
+    }
+
+    /**
+     * @return the result to short-circuit, or null
+     */
+    Object beforeExecute(StatementContext ctx) {
+        for (StatementInterceptor interceptor: interceptors) {
+            Object result = interceptor.beforeExecute(ctx);
+            if (result != null) {
+                return result;
+            }
+        }
+        return null;
+    }
+
+    void afterExecute(StatementContext ctx, long start) {
+        long end = System.nanoTime();
+        for (int ix = interceptors.length - 1; ix >= 0; ix--) {
+            interceptors[ix].afterExecute(ctx, start, end);
+        }
+    }
+
+    void onError(StatementContext ctx, SQLException ex) {
+        for (int ix = interceptors.length - 1; ix >= 0; ix--) {
+            interceptors[ix].onError(ctx, ex);
+        }
+    }
+
+    /**
+     * @return start timestamp
+     */
+    long beforeMap(StatementContext ctx) {
+        for (StatementInterceptor interceptor: interceptors) {
+            interceptor.beforeMap(ctx);
+        }
+        return System.nanoTime();
+    }
+
+    void afterMap(StatementContext ctx, Object result, long start) {
+        long end = System.nanoTime();
+        for (int ix = interceptors.length - 1; ix >= 0; ix--) {
+            interceptors[ix].afterMap(ctx, result, start, end);
+        }
+    }
+}
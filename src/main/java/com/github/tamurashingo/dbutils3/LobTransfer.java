@@ -0,0 +1,249 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * stream a BLOB or CLOB column to the channel in fixed-size chunks without loading the whole value.
+ *
+ * <p>
+ * binary columns are written as is, and character columns are encoded in UTF-8.
+ * when the column has several rows, the values are written one after another.
+ * </p>
+ * <pre><code>
+ * LobTransfer transfer = new LobTransfer("content");
+ * try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+ *     conn.prepare("select content from document where id = ?");
+ *     long bytes = conn.transfer(transfer, out, id);
+ * }
+ * </code></pre>
+ *
+ * <p>
+ * this class is not thread safe because the buffer is reused.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class LobTransfer {
+
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final String columnLabel;
+    private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+    private ByteBuffer buffer;
+    private CharBuffer chars;
+
+    /** set by {@link #cancel()} from another thread */
+    private volatile boolean cancelled;
+
+    /**
+     * constructor.
+     *
+     * @param columnLabel label of the LOB column
+     */
+    public LobTransfer(String columnLabel) {
+        this.columnLabel = columnLabel;
+    }
+
+    /**
+     * @param chunkSize bytes read and written at once (default 64KiB)
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize < 16) {
+            throw new IllegalArgumentException("chunkSize is too small:" + chunkSize);
+        }
+        this.chunkSize = chunkSize;
+        this.buffer = null;
+        this.chars = null;
+    }
+
+    /**
+     * stop the running transfer before the next chunk, or the next transfer when it is not running.
+     * the transfer fails with {@link SQLException} (SQLState HY008).
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * write the column of all rows of the {@link ResultSet}.
+     * the channel is not closed.
+     *
+     * @param rs search result
+     * @param out output
+     * @return the number of bytes written
+     * @throws SQLException database error has occurred
+     * @throws IOException failed to write
+     */
+    public long transfer(ResultSet rs, WritableByteChannel out) throws SQLException, IOException {
+        try {
+            int columnIndex = rs.findColumn(columnLabel);
+            boolean binary = isBinary(rs.getMetaData().getColumnType(columnIndex));
+
+            long bytes = 0;
+            while (rs.next()) {
+                checkCancelled();
+                if (binary) {
+                    try (InputStream in = rs.getBinaryStream(columnIndex)) {
+                        if (in != null) {
+                            bytes += copy(in, out);
+                        }
+                    }
+                }
+                else {
+                    try (Reader in = rs.getCharacterStream(columnIndex)) {
+                        if (in != null) {
+                            bytes += copy(in, out);
+                        }
+                    }
+                }
+            }
+            return bytes;
+        }
+        finally {
+            cancelled = false;
+        }
+    }
+
+    private long copy(InputStream in, WritableByteChannel out) throws SQLException, IOException {
+        ReadableByteChannel src = Channels.newChannel(in);
+        long bytes = 0;
+        if (out instanceof FileChannel) {
+            // let the file channel read the stream directly
+            FileChannel file = (FileChannel) out;
+            long position = file.position();
+            long n;
+            while ((n = file.transferFrom(src, position + bytes, chunkSize)) > 0) {
+                bytes += n;
+                checkCancelled();
+            }
+            file.position(position + bytes);
+            return bytes;
+        }
+
+        ByteBuffer buf = buffer();
+        buf.clear();
+        while (src.read(buf) >= 0) {
+            buf.flip();
+            bytes += write(buf, out);
+            buf.clear();
+            checkCancelled();
+        }
+        return bytes;
+    }
+
+    private long copy(Reader in, WritableByteChannel out) throws SQLException, IOException {
+        CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+        ByteBuffer buf = buffer();
+        CharBuffer cbuf = chars();
+        buf.clear();
+        cbuf.clear();
+        long bytes = 0;
+        boolean eof = false;
+        while (!eof) {
+            eof = in.read(cbuf) < 0;
+            cbuf.flip();
+            CoderResult result;
+            do {
+                result = encoder.encode(cbuf, buf, eof);
+                if (result.isOverflow()) {
+                    buf.flip();
+                    bytes += write(buf, out);
+                    buf.clear();
+                }
+                else if (result.isError()) {
+                    result.throwException();
+                }
+            } while (result.isOverflow());
+            cbuf.compact();
+            checkCancelled();
+        }
+        while (encoder.flush(buf).isOverflow()) {
+            buf.flip();
+            bytes += write(buf, out);
+            buf.clear();
+        }
+        buf.flip();
+        bytes += write(buf, out);
+        return bytes;
+    }
+
+    private static int write(ByteBuffer buf, WritableByteChannel out) throws IOException {
+        int n = buf.remaining();
+        while (buf.hasRemaining()) {
+            out.write(buf);
+        }
+        return n;
+    }
+
+    private ByteBuffer buffer() {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(chunkSize);
+        }
+        return buffer;
+    }
+
+    private CharBuffer chars() {
+        if (chars == null) {
+            // at most 3 bytes for a char of BMP, 4 bytes for a surrogate pair
+            chars = CharBuffer.allocate(Math.max(chunkSize / 3, 2));
+        }
+        return chars;
+    }
+
+    private void checkCancelled() throws SQLException {
+        if (cancelled) {
+            throw new SQLException("transfer is cancelled", "HY008");
+        }
+    }
+
+    private static boolean isBinary(int sqlType) {
+        switch (sqlType) {
+        case Types.BLOB:
+        case Types.BINARY:
+        case Types.VARBINARY:
+        case Types.LONGVARBINARY:
+            return true;
+        default:
+            return false;
+        }
+    }
+}
@@ -25,13 +25,27 @@ package com.github.tamurashingo.dbutils3;
 
 import java.beans.IntrospectionException;
 import java.beans.PropertyDescriptor;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.Date;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -110,8 +124,9 @@ public class Mapper {
      *   <dt>AbstractSetrer</dt>
      *   <dd>setter for bean field</dd>
      * </dl>
+     * in order of the field declaration.
      */
-    private Map<String, AbstractSetter> mapper = new HashMap<>();
+    private Map<String, AbstractSetter> mapper = new LinkedHashMap<>();
 
     /**
      * create setter for bean fields and its database column name.
@@ -160,6 +175,9 @@ public class Mapper {
                 else if (field.getType().equals(int.class)) {
                     invoker = new IntSetter(setter);
                 }
+                else if (field.getType().equals(long.class) && field.isAnnotationPresent(EpochMillis.class)) {
+                    invoker = new EpochMillisSetter(setter);
+                }
                 else if (field.getType().equals(long.class)) {
                     invoker = new LongSetter(setter);
                 }
@@ -169,6 +187,30 @@ public class Mapper {
                 else if (field.getType().equals(String.class)) {
                     invoker = new StringSetter(setter);
                 }
+                else if (field.getType().equals(LocalDate.class)) {
+                    invoker = new LocalDateSetter(setter);
+                }
+                else if (field.getType().equals(LocalDateTime.class)) {
+                    invoker = new LocalDateTimeSetter(setter);
+                }
+                else if (field.getType().equals(LocalTime.class)) {
+                    invoker = new LocalTimeSetter(setter);
+                }
+                else if (field.getType().equals(Instant.class)) {
+                    invoker = new InstantSetter(setter);
+                }
+                else if (field.getType().equals(byte[].class)) {
+                    invoker = new BytesSetter(setter);
+                }
+                else if (field.getType().equals(ByteBuffer.class)) {
+                    invoker = new ByteBufferSetter(setter);
+                }
+                else if (field.getType().equals(InputStream.class)) {
+                    invoker = new InputStreamSetter(setter);
+                }
+                else if (field.getType().equals(Reader.class)) {
+                    invoker = new ReaderSetter(setter);
+                }
                 mapper.put(columnValue, invoker);
             }
             catch (IntrospectionException ex) {
@@ -186,6 +228,22 @@ public class Mapper {
         return this.mapper.entrySet();
     }
 
+    /**
+     * return database column names which have the setter, in order of the field declaration.
+     *
+     * @return column names
+     * @since 0.3.0
+     */
+    public List<String> getColumnNames() {
+        List<String> names = new ArrayList<>();
+        for (Entry<String, AbstractSetter> entry: mapper.entrySet()) {
+            if (entry.getValue() != null) {
+                names.add(entry.getKey());
+            }
+        }
+        return names;
+    }
+
     /**
      * get the value from {@link ResultSet} and set to bean field.
      *
@@ -217,6 +275,58 @@ public class Mapper {
          */
         public abstract void invoke(Object beanInst, ResultSet rs, String columnName) throws IllegalAccessException,
         IllegalArgumentException, InvocationTargetException, SQLException; 
+
+        /**
+         * get the correct typed value from {@link ResultSet}.
+         *
+         * @param rs {@link ResultSet} from database
+         * @param columnIndex column index (1-origin)
+         * @return the value to set by {@link #set(Object, Object)}
+         * @throws SQLException exception has occurred.
+         * @since 0.3.0
+         */
+        public abstract Object get(ResultSet rs, int columnIndex) throws SQLException;
+
+        /**
+         * get the value from {@link ResultSet} leaving the conversion which does not need it to {@link #toValue(Object)},
+         * so that the conversion can run on another thread.
+         * by default the value is converted here.
+         *
+         * @param rs {@link ResultSet} from database
+         * @param columnIndex column index (1-origin)
+         * @return the value to convert by {@link #toValue(Object)}
+         * @throws SQLException exception has occurred.
+         * @since 0.3.0
+         */
+        public Object getRaw(ResultSet rs, int columnIndex) throws SQLException {
+            return get(rs, columnIndex);
+        }
+
+        /**
+         * convert the value got by {@link #getRaw(ResultSet, int)} to the value to set.
+         *
+         * @param raw value got by {@link #getRaw(ResultSet, int)}
+         * @return the value to set by {@link #set(Object, Object)}
+         * @since 0.3.0
+         */
+        public Object toValue(Object raw) {
+            return raw;
+        }
+
+        /**
+         * set the value got by {@link #get(ResultSet, int)} to bean.
+         *
+         * @param beanInst instance of bean
+         * @param value value to set
+         * @throws IllegalAccessException exception has occurred.
+         * @throws IllegalArgumentException exception has occurred.
+         * @throws InvocationTargetException exception has occurred.
+         * @since 0.3.0
+         */
+        public void set(Object beanInst, Object value) throws IllegalAccessException,
+        IllegalArgumentException, InvocationTargetException {
+            setter.invoke(beanInst, value);
+        }
     }
 
     /**
@@ -236,6 +346,11 @@ public class Mapper {
                 InvocationTargetException, SQLException {
             setter.invoke(beanInst, rs.getBoolean(columnName));
         }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getBoolean(columnIndex);
+        }
     }
 
     /**
@@ -255,6 +370,11 @@ public class Mapper {
                 InvocationTargetException, SQLException {
             setter.invoke(beanInst, rs.getByte(columnName));
         }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getByte(columnIndex);
+        }
     }
 
     /**
@@ -274,6 +394,11 @@ public class Mapper {
                 InvocationTargetException, SQLException {
             setter.invoke(beanInst, rs.getTimestamp(columnName));
         }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getTimestamp(columnIndex);
+        }
     }
 
     /**
@@ -293,6 +418,11 @@ public class Mapper {
                 InvocationTargetException, SQLException {
             setter.invoke(beanInst, rs.getDouble(columnName));
         }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getDouble(columnIndex);
+        }
     }
 
     /**
@@ -312,6 +442,11 @@ public class Mapper {
                 InvocationTargetException, SQLException {
             setter.invoke(beanInst, rs.getFloat(columnName));
         }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getFloat(columnIndex);
+        }
     }
 
     /**
@@ -331,6 +466,11 @@ public class Mapper {
                 InvocationTargetException, SQLException {
             setter.invoke(beanInst, rs.getInt(columnName));
         }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getInt(columnIndex);
+        }
     }
 
     /**
@@ -350,6 +490,11 @@ public class Mapper {
                 InvocationTargetException, SQLException {
             setter.invoke(beanInst, rs.getLong(columnName));
         }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getLong(columnIndex);
+        }
     }
 
     /**
@@ -369,6 +514,11 @@ public class Mapper {
                 InvocationTargetException, SQLException {
             setter.invoke(beanInst, rs.getShort(columnName));
         }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getShort(columnIndex);
+        }
     }
 
     /**
@@ -388,5 +538,340 @@ public class Mapper {
                 InvocationTargetException, SQLException {
             setter.invoke(beanInst, rs.getString(columnName));
         }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getString(columnIndex);
+        }
+    }
+
+    /**
+     * base class to get java.time typed value by {@code getObject(int, Class)} of JDBC 4.2.
+     * when the driver does not support it, the value is converted from {@link java.sql.Timestamp} and so on.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static abstract class JavaTimeSetter<T> extends AbstractSetter {
+        private final Class<T> type;
+        private final Class<?> rawType;
+        private volatile boolean supported = true;
+
+        protected JavaTimeSetter(Method setter, Class<T> type, Class<?> rawType) {
+            super(setter);
+            this.type = type;
+            this.rawType = rawType;
+        }
+
+        @Override
+        public void invoke(Object beanInst, ResultSet rs, String columnName)
+                throws IllegalAccessException, IllegalArgumentException,
+                InvocationTargetException, SQLException {
+            setter.invoke(beanInst, get(rs, rs.findColumn(columnName)));
+        }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            if (supported) {
+                try {
+                    return rs.getObject(columnIndex, type);
+                }
+                catch (SQLFeatureNotSupportedException | AbstractMethodError ex) {
+                    supported = false;
+                }
+            }
+            return convert(rs, columnIndex);
+        }
+
+        @Override
+        public Object getRaw(ResultSet rs, int columnIndex) throws SQLException {
+            Object value = rs.getObject(columnIndex);
+            if (value == null || type.isInstance(value) || rawType.isInstance(value)) {
+                return value;
+            }
+            return get(rs, columnIndex);
+        }
+
+        @Override
+        public Object toValue(Object raw) {
+            if (raw == null || type.isInstance(raw)) {
+                return raw;
+            }
+            return fromRaw(raw);
+        }
+
+        /**
+         * convert the JDBC value returned by {@link ResultSet#getObject(int)}.
+         *
+         * @param raw value of the JDBC type (not null)
+         * @return value
+         */
+        protected abstract T fromRaw(Object raw);
+
+        /**
+         * get the value without {@code getObject(int, Class)}.
+         *
+         * @param rs {@link ResultSet} from database
+         * @param columnIndex column index (1-origin)
+         * @return value
+         * @throws SQLException exception has occurred.
+         */
+        protected abstract T convert(ResultSet rs, int columnIndex) throws SQLException;
+    }
+
+    /**
+     * implementation class to get/set java.time.LocalDate typed value.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static class LocalDateSetter extends JavaTimeSetter<LocalDate> {
+        public LocalDateSetter(Method setter) {
+            super(setter, LocalDate.class, java.sql.Date.class);
+        }
+
+        @Override
+        protected LocalDate fromRaw(Object raw) {
+            return ((java.sql.Date) raw).toLocalDate();
+        }
+
+        @Override
+        protected LocalDate convert(ResultSet rs, int columnIndex) throws SQLException {
+            java.sql.Date value = rs.getDate(columnIndex);
+            return value != null ? value.toLocalDate() : null;
+        }
+    }
+
+    /**
+     * implementation class to get/set java.time.LocalDateTime typed value.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static class LocalDateTimeSetter extends JavaTimeSetter<LocalDateTime> {
+        public LocalDateTimeSetter(Method setter) {
+            super(setter, LocalDateTime.class, Timestamp.class);
+        }
+
+        @Override
+        protected LocalDateTime fromRaw(Object raw) {
+            return ((Timestamp) raw).toLocalDateTime();
+        }
+
+        @Override
+        protected LocalDateTime convert(ResultSet rs, int columnIndex) throws SQLException {
+            Timestamp value = rs.getTimestamp(columnIndex);
+            return value != null ? value.toLocalDateTime() : null;
+        }
+    }
+
+    /**
+     * implementation class to get/set java.time.LocalTime typed value.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static class LocalTimeSetter extends JavaTimeSetter<LocalTime> {
+        public LocalTimeSetter(Method setter) {
+            super(setter, LocalTime.class, Time.class);
+        }
+
+        @Override
+        protected LocalTime fromRaw(Object raw) {
+            return ((Time) raw).toLocalTime();
+        }
+
+        @Override
+        protected LocalTime convert(ResultSet rs, int columnIndex) throws SQLException {
+            Time value = rs.getTime(columnIndex);
+            return value != null ? value.toLocalTime() : null;
+        }
+    }
+
+    /**
+     * implementation class to get/set java.time.Instant typed value.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static class InstantSetter extends JavaTimeSetter<Instant> {
+        public InstantSetter(Method setter) {
+            super(setter, Instant.class, Timestamp.class);
+        }
+
+        @Override
+        protected Instant fromRaw(Object raw) {
+            return ((Timestamp) raw).toInstant();
+        }
+
+        @Override
+        protected Instant convert(ResultSet rs, int columnIndex) throws SQLException {
+            Timestamp value = rs.getTimestamp(columnIndex);
+            return value != null ? value.toInstant() : null;
+        }
+    }
+
+    /**
+     * implementation class to get timestamp value and set it to long typed field as epoch milliseconds.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static class EpochMillisSetter extends AbstractSetter {
+        public EpochMillisSetter(Method setter) {
+            super(setter);
+        }
+
+        @Override
+        public void invoke(Object beanInst, ResultSet rs, String columnName)
+                throws IllegalAccessException, IllegalArgumentException,
+                InvocationTargetException, SQLException {
+            setter.invoke(beanInst, get(rs, rs.findColumn(columnName)));
+        }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return toValue(getRaw(rs, columnIndex));
+        }
+
+        @Override
+        public Object getRaw(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getTimestamp(columnIndex);
+        }
+
+        @Override
+        public Object toValue(Object raw) {
+            return raw != null ? ((Timestamp) raw).getTime() : 0L;
+        }
+    }
+
+    /**
+     * implementation class to get/set byte[] typed value.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static class BytesSetter extends AbstractSetter {
+        public BytesSetter(Method setter) {
+            super(setter);
+        }
+
+        @Override
+        public void invoke(Object beanInst, ResultSet rs, String columnName)
+                throws IllegalAccessException, IllegalArgumentException,
+                InvocationTargetException, SQLException {
+            setter.invoke(beanInst, rs.getBytes(columnName));
+        }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getBytes(columnIndex);
+        }
+    }
+
+    /**
+     * implementation class to get/set {@link ByteBuffer} typed value.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static class ByteBufferSetter extends AbstractSetter {
+        public ByteBufferSetter(Method setter) {
+            super(setter);
+        }
+
+        @Override
+        public void invoke(Object beanInst, ResultSet rs, String columnName)
+                throws IllegalAccessException, IllegalArgumentException,
+                InvocationTargetException, SQLException {
+            setter.invoke(beanInst, get(rs, rs.findColumn(columnName)));
+        }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return toValue(getRaw(rs, columnIndex));
+        }
+
+        @Override
+        public Object getRaw(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getBytes(columnIndex);
+        }
+
+        @Override
+        public Object toValue(Object raw) {
+            return raw != null ? ByteBuffer.wrap((byte[]) raw) : null;
+        }
+    }
+
+    /**
+     * implementation class to get binary value and set it to {@link InputStream} typed field.
+     * the value is copied into memory so that the stream is readable after the result set is closed
+     * (a stream of {@link java.sql.Blob} is invalid after the transaction ends, e.g. in auto-commit mode).
+     * use {@link LobTransfer} to write a large value without loading it into memory.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static class InputStreamSetter extends AbstractSetter {
+        public InputStreamSetter(Method setter) {
+            super(setter);
+        }
+
+        @Override
+        public void invoke(Object beanInst, ResultSet rs, String columnName)
+                throws IllegalAccessException, IllegalArgumentException,
+                InvocationTargetException, SQLException {
+            setter.invoke(beanInst, get(rs, rs.findColumn(columnName)));
+        }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return toValue(getRaw(rs, columnIndex));
+        }
+
+        @Override
+        public Object getRaw(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getBytes(columnIndex);
+        }
+
+        @Override
+        public Object toValue(Object raw) {
+            return raw != null ? new ByteArrayInputStream((byte[]) raw) : null;
+        }
+    }
+
+    /**
+     * implementation class to get character value and set it to {@link Reader} typed field.
+     * the value is copied into memory as {@link InputStreamSetter}.
+     *
+     * @author tamura shingo (tamura.shingo at gmail.com)
+     * @since 0.3.0
+     */
+    static class ReaderSetter extends AbstractSetter {
+        public ReaderSetter(Method setter) {
+            super(setter);
+        }
+
+        @Override
+        public void invoke(Object beanInst, ResultSet rs, String columnName)
+                throws IllegalAccessException, IllegalArgumentException,
+                InvocationTargetException, SQLException {
+            setter.invoke(beanInst, get(rs, rs.findColumn(columnName)));
+        }
+
+        @Override
+        public Object get(ResultSet rs, int columnIndex) throws SQLException {
+            return toValue(getRaw(rs, columnIndex));
+        }
+
+        @Override
+        public Object getRaw(ResultSet rs, int columnIndex) throws SQLException {
+            return rs.getString(columnIndex);
+        }
+
+        @Override
+        public Object toValue(Object raw) {
+            return raw != null ? new StringReader((String) raw) : null;
+        }
     }
 }
@@ -0,0 +1,234 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.lang.reflect.InvocationTargetException;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map.Entry;
+
+import com.github.tamurashingo.dbutils3.Mapper.AbstractSetter;
+
+/**
+ * setters of a bean resolved to the column indexes of a {@link ResultSet}.
+ *
+ * <p>
+ * reading the values ({@link #read(ResultSet)}) and setting them to a new bean
+ * ({@link #build(Object[])}) are separated so that they can run on different threads.
+ * the result is the same as {@link BeanBuilder#build(ResultSet)}.
+ * </p>
+ * <p>
+ * {@link #read(ResultSet)} calls the driver, which converts the column to a JDBC type
+ * ({@code getInt}, {@code getString} and so on) and cannot leave the thread of the {@link ResultSet}.
+ * the conversion from a JDBC type to the field type (java.time types, epoch milliseconds,
+ * {@link java.nio.ByteBuffer}, {@link java.io.InputStream} and {@link java.io.Reader})
+ * and setting the value run in {@link #build(Object[])}.
+ * </p>
+ * <p>
+ * the plan is reused while the result has the same columns
+ * (see {@link BeanBuilder#createPlan(ResultSet)}).
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+class MappingPlan {
+
+    /** the value could not be read */
+    private static final Object SKIP = new Object();
+
+    private final Class<?> cls;
+    private final AbstractSetter[] setters;
+    private final int[] columns;
+
+    /** column labels of the result, or null when they are unknown */
+    private final String[] labels;
+
+    /**
+     * constructor.
+     * columns which are not in the {@link ResultSet} are excluded.
+     *
+     * @param cls bean class
+     * @param mapper setters of the bean
+     * @param rs search result
+     */
+    MappingPlan(Class<?> cls, Mapper mapper, ResultSet rs) {
+        this(cls, mapper, rs, null);
+    }
+
+    /**
+     * constructor.
+     * columns which are not in the {@link ResultSet} are excluded.
+     *
+     * @param cls bean class
+     * @param mapper setters of the bean
+     * @param rs search result
+     * @param labels column labels of the result (see {@link #labels(ResultSetMetaData)})
+     */
+    MappingPlan(Class<?> cls, Mapper mapper, ResultSet rs, String[] labels) {
+        List<AbstractSetter> setterList = new ArrayList<>();
+        List<Integer> columnList = new ArrayList<>();
+        for (Entry<String, AbstractSetter> entry: mapper.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            try {
+                columnList.add(rs.findColumn(entry.getKey()));
+                setterList.add(entry.getValue());
+            }
+            catch (SQLException ex) {
+                // nothing to set when the column is not found.
+            }
+        }
+
+        this.cls = cls;
+        this.labels = labels;
+        this.setters = setterList.toArray(new AbstractSetter[setterList.size()]);
+        this.columns = new int[columnList.size()];
+        for (int ix = 0; ix < columns.length; ix++) {
+            columns[ix] = columnList.get(ix);
+        }
+    }
+
+    /**
+     * @param rsmd metadata of the result
+     * @return column labels
+     * @throws SQLException database error has occurred
+     */
+    static String[] labels(ResultSetMetaData rsmd) throws SQLException {
+        String[] labels = new String[rsmd.getColumnCount()];
+        for (int ix = 0; ix < labels.length; ix++) {
+            labels[ix] = rsmd.getColumnLabel(ix + 1);
+        }
+        return labels;
+    }
+
+    /**
+     * @param labels column labels of the result
+     * @return key of the plan cache
+     */
+    static String signature(String[] labels) {
+        return String.join("\0", labels);
+    }
+
+    /**
+     * check that the result has the same columns as the result this plan is created for.
+     * nothing is allocated.
+     *
+     * @param rsmd metadata of the result
+     * @return true when the plan can be used for the result
+     * @throws SQLException database error has occurred
+     */
+    boolean matches(ResultSetMetaData rsmd) throws SQLException {
+        if (labels == null || labels.length != rsmd.getColumnCount()) {
+            return false;
+        }
+        for (int ix = 0; ix < labels.length; ix++) {
+            if (!labels[ix].equals(rsmd.getColumnLabel(ix + 1))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * create bean and set the values of the current row.
+     * the same as {@code build(read(rs))} without the intermediate array.
+     *
+     * @param rs search result
+     * @param <T> bean type
+     * @return bean
+     * @throws BeanBuilderException failed to construct a bean.
+     */
+    <T> T build(ResultSet rs) throws BeanBuilderException {
+        try {
+            @SuppressWarnings("unchecked")
+            T bean = (T)cls.newInstance();
+            for (int ix = 0; ix < setters.length; ix++) {
+                try {
+                    setters[ix].set(bean, setters[ix].get(rs, columns[ix]));
+                }
+                catch (IllegalArgumentException | InvocationTargetException | SQLException ex) {
+                    // set nothing(null) when exception occurred.
+                }
+            }
+            return bean;
+        }
+        catch (InstantiationException | IllegalAccessException ex) {
+            throw new BeanBuilderException(ex);
+        }
+    }
+
+    /**
+     * read the values of the current row.
+     *
+     * @param rs search result
+     * @return values for {@link #build(Object[])}
+     */
+    Object[] read(ResultSet rs) {
+        Object[] values = new Object[setters.length];
+        for (int ix = 0; ix < setters.length; ix++) {
+            try {
+                values[ix] = setters[ix].getRaw(rs, columns[ix]);
+            }
+            catch (SQLException ex) {
+                values[ix] = SKIP;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * create bean and set the values.
+     *
+     * @param values values read by {@link #read(ResultSet)}
+     * @param <T> bean type
+     * @return bean
+     * @throws BeanBuilderException failed to construct a bean.
+     */
+    <T> T build(Object[] values) throws BeanBuilderException {
+        try {
+            @SuppressWarnings("unchecked")
+            T bean = (T)cls.newInstance();
+            for (int ix = 0; ix < setters.length; ix++) {
+                if (values[ix] == SKIP) {
+                    continue;
+                }
+                try {
+                    setters[ix].set(bean, setters[ix].toValue(values[ix]));
+                }
+                catch (IllegalArgumentException | InvocationTargetException ex) {
+                    // set nothing(null) when exception occurred.
+                }
+            }
+            return bean;
+        }
+        catch (InstantiationException | IllegalAccessException ex) {
+            throw new BeanBuilderException(ex);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * {@link StatementInterceptor} which reports the same statement executed repeatedly
+ * with different parameters (N+1 queries), which should be an in-list query or a batch.
+ *
+ * <p>
+ * executions are counted for each {@link DBConnectionUtil} and each fingerprint of the sql
+ * until {@link #reset()} is called, so call it at the end of the unit of work (e.g. the transaction).
+ * </p>
+ * <pre><code>
+ * NPlusOneDetector detector = new NPlusOneDetector();
+ * detector.setThreshold(5);
+ * conn.addInterceptor(detector);
+ * try {
+ *     ...
+ * }
+ * finally {
+ *     for (NPlusOneDetector.Report report: detector.getReports()) {
+ *         System.err.println(report);
+ *     }
+ *     detector.reset();
+ * }
+ * </code></pre>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class NPlusOneDetector implements StatementInterceptor {
+
+    /**
+     * receives the reports.
+     */
+    public interface Listener {
+        /**
+         * @param report detected statement
+         */
+        void onDetected(Report report);
+    }
+
+    /**
+     * statement executed more than the threshold.
+     */
+    public static final class Report {
+        private final String sql;
+        private final String fingerprint;
+        private final int executions;
+        private final StackTraceElement[] stackTrace;
+
+        Report(String sql, String fingerprint, int executions, StackTraceElement[] stackTrace) {
+            this.sql = sql;
+            this.fingerprint = fingerprint;
+            this.executions = executions;
+            this.stackTrace = stackTrace;
+        }
+
+        /**
+         * @return executed sql
+         */
+        public String getSQL() {
+            return sql;
+        }
+
+        /**
+         * @return normalized sql
+         */
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        /**
+         * @return the number of executions when it is detected
+         */
+        public int getExecutions() {
+            return executions;
+        }
+
+        /**
+         * @return the caller of {@link DBConnectionUtil} at the execution which exceeded the threshold, or null
+         */
+        public StackTraceElement getCallSite() {
+            return stackTrace.length > 0 ? stackTrace[0] : null;
+        }
+
+        /**
+         * @return stack trace from {@link #getCallSite()}
+         */
+        public StackTraceElement[] getStackTrace() {
+            return stackTrace.clone();
+        }
+
+        @Override
+        public String toString() {
+            return "N+1 query [executions=" + executions + ", sql=" + sql + ", at " + getCallSite() + "]";
+        }
+    }
+
+    /** executions of a statement */
+    private static class Counter {
+        int executions;
+        final Set<Integer> parameters = new HashSet<>();
+        boolean reported;
+    }
+
+    private final Map<DBConnectionUtil, Map<String, Counter>> counters = new WeakHashMap<>();
+    private final List<Report> reports = new ArrayList<>();
+    private volatile int threshold = 10;
+    private volatile Listener listener;
+
+    /**
+     * @param threshold report when the statement is executed with more than this number of different parameters (default 10)
+     */
+    public void setThreshold(int threshold) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive:" + threshold);
+        }
+        this.threshold = threshold;
+    }
+
+    /**
+     * @param listener receives each report, or null
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return detected statements
+     */
+    public synchronized List<Report> getReports() {
+        return new ArrayList<>(reports);
+    }
+
+    /**
+     * clear the counts and the reports to start the next unit of work.
+     */
+    public synchronized void reset() {
+        counters.clear();
+        reports.clear();
+    }
+
+    /**
+     * clear the counts of the connection.
+     *
+     * @param conn connection
+     */
+    public synchronized void reset(DBConnectionUtil conn) {
+        counters.remove(conn);
+    }
+
+    @Override
+    public void afterExecute(StatementContext ctx, long startNanos, long endNanos) {
+        if (ctx.getOperation() != StatementContext.Operation.QUERY
+                && ctx.getOperation() != StatementContext.Operation.UPDATE) {
+            return;
+        }
+
+        String fingerprint = ctx.getFingerprint();
+        if (fingerprint == null) {
+            return;
+        }
+        Object[] params = ctx.getParameters();
+        int limit = threshold;
+        Report report = null;
+        synchronized (this) {
+            Map<String, Counter> statements = counters.get(ctx.getConnectionUtil());
+            if (statements == null) {
+                statements = new HashMap<>();
+                counters.put(ctx.getConnectionUtil(), statements);
+            }
+            Counter counter = statements.get(fingerprint);
+            if (counter == null) {
+                counter = new Counter();
+                statements.put(fingerprint, counter);
+            }
+            counter.executions++;
+            if (counter.reported) {
+                return;
+            }
+            counter.parameters.add(Arrays.deepHashCode(params));
+            if (counter.parameters.size() > limit) {
+                counter.reported = true;
+                counter.parameters.clear();
+                report = new Report(ctx.getSQL(), fingerprint, counter.executions, callSite());
+                reports.add(report);
+            }
+        }
+
+        Listener l = listener;
+        if (report != null && l != null) {
+            l.onDetected(report);
+        }
+    }
+
+    /**
+     * @return stack trace of the caller of {@link DBConnectionUtil}
+     */
+    private static StackTraceElement[] callSite() {
+        StackTraceElement[] stack = new Throwable().getStackTrace();
+        int from = 0;
+        for (int ix = 0; ix < stack.length; ix++) {
+            String name = stack[ix].getClassName();
+            if (name.equals(DBConnectionUtil.class.getName()) || name.equals(RoutingDBConnectionUtil.class.getName())) {
+                from = ix + 1;
+            }
+        }
+        return Arrays.copyOfRange(stack, from, stack.length);
+    }
+}
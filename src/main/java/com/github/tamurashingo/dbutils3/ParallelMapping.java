@@ -0,0 +1,147 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * map the values read by {@link MappingPlan} to beans on a {@link ForkJoinPool}.
+ * the order of the rows is kept.
+ *
+ * <p>
+ * the pool runs the creation of the beans, the conversion to the field types and the setters.
+ * the values have been read from the driver on the thread of the {@link java.sql.ResultSet},
+ * so the gain depends on how much of the mapping is not in the driver.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+class ParallelMapping {
+
+    /** chunks per thread, to balance the load of uneven rows */
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    private ParallelMapping() {
+    }
+
+    /**
+     * map the rows to beans.
+     * when the number of rows is less than the threshold, they are mapped on the current thread.
+     *
+     * @param plan mapping plan
+     * @param rows values of each row
+     * @param threshold min number of rows to map in parallel
+     * @param pool pool to map, or null to use {@link ForkJoinPool#commonPool()}
+     * @param <T> bean type
+     * @return beans in order of the rows
+     * @throws BeanBuilderException failed to construct a bean
+     */
+    static <T> List<T> map(MappingPlan plan, List<Object[]> rows, int threshold, ForkJoinPool pool) throws BeanBuilderException {
+        int size = rows.size();
+        if (size < threshold) {
+            List<T> list = new ArrayList<>(size);
+            for (Object[] row: rows) {
+                T bean = plan.build(row);
+                list.add(bean);
+            }
+            return list;
+        }
+
+        ForkJoinPool fj = pool != null ? pool : ForkJoinPool.commonPool();
+        int chunk = Math.max(1, size / (fj.getParallelism() * CHUNKS_PER_THREAD));
+        Object[] beans = new Object[size];
+        try {
+            fj.invoke(new MapTask(plan, rows, beans, 0, size, chunk));
+        }
+        catch (MappingFailure ex) {
+            throw ex.getCause();
+        }
+
+        @SuppressWarnings("unchecked")
+        List<T> list = (List<T>)new ArrayList<>(Arrays.asList(beans));
+        return list;
+    }
+
+    /**
+     * map the rows in [from, to).
+     */
+    private static class MapTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final MappingPlan plan;
+        private final List<Object[]> rows;
+        private final Object[] beans;
+        private final int from;
+        private final int to;
+        private final int chunk;
+
+        MapTask(MappingPlan plan, List<Object[]> rows, Object[] beans, int from, int to, int chunk) {
+            this.plan = plan;
+            this.rows = rows;
+            this.beans = beans;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= chunk) {
+                try {
+                    for (int ix = from; ix < to; ix++) {
+                        beans[ix] = plan.build(rows.get(ix));
+                    }
+                }
+                catch (BeanBuilderException ex) {
+                    throw new MappingFailure(ex);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new MapTask(plan, rows, beans, from, mid, chunk),
+                      new MapTask(plan, rows, beans, mid, to, chunk));
+        }
+    }
+
+    /**
+     * carries {@link BeanBuilderException} out of the pool.
+     */
+    private static class MappingFailure extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        MappingFailure(BeanBuilderException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized BeanBuilderException getCause() {
+            return (BeanBuilderException)super.getCause();
+        }
+    }
+}
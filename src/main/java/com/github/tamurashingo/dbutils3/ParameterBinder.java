@@ -0,0 +1,406 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+
+/**
+ * This class binds a typed value to {@link PreparedStatement}
+ * with the setter method specialized for its Java type.
+ *
+ * <table>
+ *   <caption>Java types and generated ParameterBinders</caption>
+ *   <thead>
+ *     <tr>
+ *       <th>Java type</th>
+ *       <th>ParameterBinder</th>
+ *     </tr>
+ *   </thead>
+ *   <tbody>
+ *     <tr><td>{@link Integer}</td><td>{@link IntBinder}</td></tr>
+ *     <tr><td>{@link Long}</td><td>{@link LongBinder}</td></tr>
+ *     <tr><td>{@link Short}</td><td>{@link ShortBinder}</td></tr>
+ *     <tr><td>{@link Byte}</td><td>{@link ByteBinder}</td></tr>
+ *     <tr><td>{@link Boolean}</td><td>{@link BooleanBinder}</td></tr>
+ *     <tr><td>{@link Double}</td><td>{@link DoubleBinder}</td></tr>
+ *     <tr><td>{@link Float}</td><td>{@link FloatBinder}</td></tr>
+ *     <tr><td>{@link BigDecimal}</td><td>{@link BigDecimalBinder}</td></tr>
+ *     <tr><td>{@link String}</td><td>{@link StringBinder}</td></tr>
+ *     <tr><td>{@link Timestamp}</td><td>{@link TimestampBinder}</td></tr>
+ *     <tr><td>{@link java.sql.Date}</td><td>{@link SqlDateBinder}</td></tr>
+ *     <tr><td>{@link Time}</td><td>{@link TimeBinder}</td></tr>
+ *     <tr><td>{@code byte[]}</td><td>{@link BytesBinder}</td></tr>
+ *     <tr><td>{@link ArrayParam}</td><td>{@link ArrayBinder}</td></tr>
+ *     <tr><td>others</td><td>{@link ObjectBinder}</td></tr>
+ *   </tbody>
+ * </table>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+abstract class ParameterBinder {
+
+    /** binder which uses {@link PreparedStatement#setObject(int, Object)} */
+    static final ParameterBinder OBJECT = new ObjectBinder();
+
+    private static final ParameterBinder INT = new IntBinder();
+    private static final ParameterBinder LONG = new LongBinder();
+    private static final ParameterBinder SHORT = new ShortBinder();
+    private static final ParameterBinder BYTE = new ByteBinder();
+    private static final ParameterBinder BOOLEAN = new BooleanBinder();
+    private static final ParameterBinder DOUBLE = new DoubleBinder();
+    private static final ParameterBinder FLOAT = new FloatBinder();
+    private static final ParameterBinder BIG_DECIMAL = new BigDecimalBinder();
+    private static final ParameterBinder STRING = new StringBinder();
+    private static final ParameterBinder TIMESTAMP = new TimestampBinder();
+    private static final ParameterBinder SQL_DATE = new SqlDateBinder();
+    private static final ParameterBinder TIME = new TimeBinder();
+    private static final ParameterBinder BYTES = new BytesBinder();
+    private static final ParameterBinder ARRAY = new ArrayBinder();
+
+    /** Java type which this binder accepts */
+    protected final Class<?> type;
+
+    /**
+     * constructor.
+     *
+     * @param type Java type which this binder accepts
+     */
+    protected ParameterBinder(Class<?> type) {
+        this.type = type;
+    }
+
+    /**
+     * select the binder from the Java type of the value.
+     *
+     * @param value parameter value (not null)
+     * @return binder for the value
+     */
+    static ParameterBinder forValue(Object value) {
+        Class<?> cls = value.getClass();
+        if (cls == Integer.class) {
+            return INT;
+        }
+        else if (cls == Long.class) {
+            return LONG;
+        }
+        else if (cls == String.class) {
+            return STRING;
+        }
+        else if (cls == Short.class) {
+            return SHORT;
+        }
+        else if (cls == Byte.class) {
+            return BYTE;
+        }
+        else if (cls == Boolean.class) {
+            return BOOLEAN;
+        }
+        else if (cls == Double.class) {
+            return DOUBLE;
+        }
+        else if (cls == Float.class) {
+            return FLOAT;
+        }
+        else if (cls == BigDecimal.class) {
+            return BIG_DECIMAL;
+        }
+        else if (cls == Timestamp.class) {
+            return TIMESTAMP;
+        }
+        else if (cls == java.sql.Date.class) {
+            return SQL_DATE;
+        }
+        else if (cls == Time.class) {
+            return TIME;
+        }
+        else if (cls == byte[].class) {
+            return BYTES;
+        }
+        else if (cls == ArrayParam.class) {
+            return ARRAY;
+        }
+        else {
+            return OBJECT;
+        }
+    }
+
+    /**
+     * @param value parameter value (not null)
+     * @return true when this binder can bind the value
+     */
+    boolean accepts(Object value) {
+        return value.getClass() == type;
+    }
+
+    /**
+     * set the value to {@link PreparedStatement}.
+     *
+     * @param stmt prepared statement
+     * @param ix parameter index (1-origin)
+     * @param value parameter value (not null)
+     * @throws SQLException database error has occurred
+     */
+    abstract void bind(PreparedStatement stmt, int ix, Object value) throws SQLException;
+
+    /**
+     * implementation class to bind any typed value.
+     */
+    static class ObjectBinder extends ParameterBinder {
+        ObjectBinder() {
+            super(Object.class);
+        }
+
+        @Override
+        boolean accepts(Object value) {
+            return true;
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            if (value instanceof ArrayParam) {
+                ARRAY.bind(stmt, ix, value);
+            }
+            else {
+                stmt.setObject(ix, value);
+            }
+        }
+    }
+
+    /**
+     * implementation class to bind int typed value.
+     */
+    static class IntBinder extends ParameterBinder {
+        IntBinder() {
+            super(Integer.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setInt(ix, (Integer)value);
+        }
+    }
+
+    /**
+     * implementation class to bind long typed value.
+     */
+    static class LongBinder extends ParameterBinder {
+        LongBinder() {
+            super(Long.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setLong(ix, (Long)value);
+        }
+    }
+
+    /**
+     * implementation class to bind short typed value.
+     */
+    static class ShortBinder extends ParameterBinder {
+        ShortBinder() {
+            super(Short.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setShort(ix, (Short)value);
+        }
+    }
+
+    /**
+     * implementation class to bind byte typed value.
+     */
+    static class ByteBinder extends ParameterBinder {
+        ByteBinder() {
+            super(Byte.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setByte(ix, (Byte)value);
+        }
+    }
+
+    /**
+     * implementation class to bind boolean typed value.
+     */
+    static class BooleanBinder extends ParameterBinder {
+        BooleanBinder() {
+            super(Boolean.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setBoolean(ix, (Boolean)value);
+        }
+    }
+
+    /**
+     * implementation class to bind double typed value.
+     */
+    static class DoubleBinder extends ParameterBinder {
+        DoubleBinder() {
+            super(Double.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setDouble(ix, (Double)value);
+        }
+    }
+
+    /**
+     * implementation class to bind float typed value.
+     */
+    static class FloatBinder extends ParameterBinder {
+        FloatBinder() {
+            super(Float.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setFloat(ix, (Float)value);
+        }
+    }
+
+    /**
+     * implementation class to bind {@link BigDecimal} typed value.
+     */
+    static class BigDecimalBinder extends ParameterBinder {
+        BigDecimalBinder() {
+            super(BigDecimal.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setBigDecimal(ix, (BigDecimal)value);
+        }
+    }
+
+    /**
+     * implementation class to bind String typed value.
+     */
+    static class StringBinder extends ParameterBinder {
+        StringBinder() {
+            super(String.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setString(ix, (String)value);
+        }
+    }
+
+    /**
+     * implementation class to bind {@link Timestamp} typed value.
+     */
+    static class TimestampBinder extends ParameterBinder {
+        TimestampBinder() {
+            super(Timestamp.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setTimestamp(ix, (Timestamp)value);
+        }
+    }
+
+    /**
+     * implementation class to bind {@link java.sql.Date} typed value.
+     */
+    static class SqlDateBinder extends ParameterBinder {
+        SqlDateBinder() {
+            super(java.sql.Date.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setDate(ix, (java.sql.Date)value);
+        }
+    }
+
+    /**
+     * implementation class to bind {@link Time} typed value.
+     */
+    static class TimeBinder extends ParameterBinder {
+        TimeBinder() {
+            super(Time.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setTime(ix, (Time)value);
+        }
+    }
+
+    /**
+     * implementation class to bind byte array.
+     */
+    static class BytesBinder extends ParameterBinder {
+        BytesBinder() {
+            super(byte[].class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            stmt.setBytes(ix, (byte[])value);
+        }
+    }
+
+    /**
+     * implementation class to bind {@link ArrayParam} as SQL ARRAY.
+     * the created {@link Array} is freed by {@link StatementHandle#release()}.
+     */
+    static class ArrayBinder extends ParameterBinder {
+        ArrayBinder() {
+            super(ArrayParam.class);
+        }
+
+        @Override
+        void bind(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            bindArray(stmt, ix, value);
+        }
+
+        /**
+         * @param stmt prepared statement
+         * @param ix parameter index (1-origin)
+         * @param value {@link ArrayParam}
+         * @return created array which the caller frees after the execution
+         * @throws SQLException database error has occurred
+         */
+        static Array bindArray(PreparedStatement stmt, int ix, Object value) throws SQLException {
+            ArrayParam param = (ArrayParam)value;
+            Array array = stmt.getConnection().createArrayOf(param.getTypeName(), param.toArray());
+            stmt.setArray(ix, array);
+            return array;
+        }
+    }
+}
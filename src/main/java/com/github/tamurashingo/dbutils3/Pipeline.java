@@ -0,0 +1,447 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.tamurashingo.dbutils3.parser.SQLParser;
+
+/**
+ * queue several independent queries and updates, and execute them with the fewest round trips.
+ *
+ * <pre><code>
+ * Pipeline pipeline = conn.pipeline();
+ * Pipeline.Result&lt;List&lt;UserBean&gt;&gt; user = pipeline.queryWithParam(UserBean.class,
+ *         "select * from user where id = :id", new Param().put("id", id));
+ * Pipeline.Result&lt;List&lt;Map&lt;String, String&gt;&gt;&gt; count = pipeline.query(
+ *         "select count(*) as cnt from message where user_id = ?", id);
+ * Pipeline.Result&lt;Integer&gt; visited = pipeline.update(
+ *         "update user set visited = current_timestamp where id = ?", id);
+ * pipeline.execute();
+ *
+ * List&lt;UserBean&gt; users = user.get();
+ * </code></pre>
+ *
+ * <p>
+ * when {@link #setMultiStatement(boolean)} is enabled, the statements are joined with {@code ;}
+ * and sent at once, and the results are read with {@link java.sql.Statement#getMoreResults()}.
+ * enable it only when the driver accepts multi-statement sql in a prepared statement
+ * (e.g. PostgreSQL, SQL Server, or MySQL Connector/J with {@code allowMultiQueries=true}).
+ * {@link java.sql.DatabaseMetaData#supportsMultipleResultSets()} is not a reliable sign of it.
+ * </p>
+ * <p>
+ * otherwise the statements are executed in order on the same connection.
+ * the statement of the same sql is prepared once, and consecutive updates of the same sql
+ * are sent as one batch.
+ * </p>
+ * <p>
+ * a {@link java.util.Collection} value is expanded to the placeholder list as {@link DBConnectionUtil},
+ * but it is not split into chunks: a collection larger than the in-list limit is rejected.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class Pipeline {
+
+    /**
+     * result of a queued statement, available after {@link Pipeline#execute()}.
+     *
+     * @param <T> result type
+     */
+    public static final class Result<T> {
+
+        private T value;
+        private boolean done = false;
+
+        private Result() {
+        }
+
+        /**
+         * @return result of the statement
+         * @throws IllegalStateException the pipeline is not executed yet
+         */
+        public T get() {
+            if (!done) {
+                throw new IllegalStateException("pipeline is not executed");
+            }
+            return value;
+        }
+
+        private void set(T value) {
+            this.value = value;
+            this.done = true;
+        }
+    }
+
+    private final Connection conn;
+    private final List<Entry<?>> entries = new ArrayList<>();
+    private boolean multiStatement = false;
+    private int inListLimit = SQLParser.DEFAULT_IN_LIST_LIMIT;
+
+    /**
+     * constructor.
+     *
+     * @param conn database connection
+     */
+    Pipeline(Connection conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * @param multiStatement true to send the statements as one multi-statement sql (default false).
+     *        the driver must accept it.
+     */
+    public void setMultiStatement(boolean multiStatement) {
+        this.multiStatement = multiStatement;
+    }
+
+    /**
+     * @param limit max number of placeholders which one collection value is expanded to
+     */
+    void setInListLimit(int limit) {
+        this.inListLimit = limit;
+    }
+
+    /**
+     * queue query sql which result is {@link List} of {@link Map}.
+     *
+     * @param sql sql with placeholders
+     * @param params parameter for the sql
+     * @return result available after {@link #execute()}
+     */
+    public Result<List<Map<String, String>>> query(String sql, Object... params) {
+        return add(sql, params, Kind.MAP, null);
+    }
+
+    /**
+     * queue query sql which result is Bean of {@link List}.
+     *
+     * @param cls bean class information which set search result
+     * @param sql sql with placeholders
+     * @param params parameter for the sql
+     * @param <T> bean type
+     * @return result available after {@link #execute()}
+     */
+    public <T> Result<List<T>> query(Class<T> cls, String sql, Object... params) {
+        return add(sql, params, Kind.BEAN, cls);
+    }
+
+    /**
+     * queue query sql with named parameters which result is {@link List} of {@link Map}.
+     *
+     * @param sql sql with named parameters
+     * @param params parameter for the sql
+     * @return result available after {@link #execute()}
+     * @throws IllegalArgumentException a collection value is larger than the in-list limit
+     */
+    public Result<List<Map<String, String>>> queryWithParam(String sql, Param params) {
+        SQLParser parser = analyze(sql);
+        return add(expandedSQL(parser, params), parser.createParams(params), Kind.MAP, null);
+    }
+
+    /**
+     * queue query sql with named parameters which result is Bean of {@link List}.
+     *
+     * @param cls bean class information which set search result
+     * @param sql sql with named parameters
+     * @param params parameter for the sql
+     * @param <T> bean type
+     * @return result available after {@link #execute()}
+     * @throws IllegalArgumentException a collection value is larger than the in-list limit
+     */
+    public <T> Result<List<T>> queryWithParam(Class<T> cls, String sql, Param params) {
+        SQLParser parser = analyze(sql);
+        return add(expandedSQL(parser, params), parser.createParams(params), Kind.BEAN, cls);
+    }
+
+    /**
+     * queue update sql.
+     *
+     * @param sql sql with placeholders
+     * @param params parameter for the sql
+     * @return the number of update, available after {@link #execute()}
+     */
+    public Result<Integer> update(String sql, Object... params) {
+        return add(sql, params, Kind.UPDATE, null);
+    }
+
+    /**
+     * queue update sql with named parameters.
+     *
+     * @param sql sql with named parameters
+     * @param params parameter for the sql
+     * @return the number of update, available after {@link #execute()}
+     * @throws IllegalArgumentException a collection value is larger than the in-list limit
+     */
+    public Result<Integer> updateWithParam(String sql, Param params) {
+        SQLParser parser = analyze(sql);
+        return add(expandedSQL(parser, params), parser.createParams(params), Kind.UPDATE, null);
+    }
+
+    /**
+     * @return the number of queued statements
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * execute the queued statements in order and clear the queue.
+     *
+     * @throws SQLException database error or bean writer error has occurred
+     */
+    public void execute() throws SQLException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        try {
+            if (entries.size() > 1 && useMultiStatement()) {
+                executeMultiStatement();
+            }
+            else {
+                executeSequential();
+            }
+        }
+        finally {
+            entries.clear();
+        }
+    }
+
+    /**
+     * @return true when the statements are sent as one multi-statement sql
+     */
+    boolean useMultiStatement() {
+        return multiStatement;
+    }
+
+    /**
+     * execute the statements in order.
+     * the update count of a batched update may be {@link java.sql.Statement#SUCCESS_NO_INFO}.
+     *
+     * @throws SQLException database error has occurred
+     */
+    private void executeSequential() throws SQLException {
+        Map<String, StatementHandle> statements = new HashMap<>();
+        try {
+            int size = entries.size();
+            int ix = 0;
+            while (ix < size) {
+                Entry<?> entry = entries.get(ix);
+                StatementHandle handle = statements.get(entry.sql);
+                if (handle == null) {
+                    PreparedStatement st = conn.prepareStatement(entry.sql);
+                    handle = new StatementHandle(st);
+                    statements.put(entry.sql, handle);
+                }
+                PreparedStatement st = handle.getStatement();
+                applyDeadline(st);
+
+                int end = ix + 1;
+                if (entry.kind == Kind.UPDATE) {
+                    while (end < size && entries.get(end).kind == Kind.UPDATE && entries.get(end).sql.equals(entry.sql)) {
+                        end++;
+                    }
+                }
+
+                if (end - ix > 1) {
+                    for (int batch = ix; batch < end; batch++) {
+                        bind(handle, entries.get(batch).params, 0);
+                        st.addBatch();
+                    }
+                    int[] counts = st.executeBatch();
+                    for (int batch = ix; batch < end; batch++) {
+                        entries.get(batch).complete(counts[batch - ix]);
+                    }
+                }
+                else if (entry.kind == Kind.UPDATE) {
+                    bind(handle, entry.params, 0);
+                    entry.complete(st.executeUpdate());
+                }
+                else {
+                    bind(handle, entry.params, 0);
+                    try (ResultSet rs = st.executeQuery()) {
+                        entry.complete(map(entry, rs));
+                    }
+                }
+                handle.release();
+                ix = end;
+            }
+        }
+        finally {
+            for (StatementHandle handle: statements.values()) {
+                handle.release();
+                try {
+                    handle.getStatement().close();
+                }
+                catch (SQLException ex) {
+                    // nothing to do
+                }
+            }
+        }
+    }
+
+    private void executeMultiStatement() throws SQLException {
+        StringBuilder sql = new StringBuilder();
+        for (Entry<?> entry: entries) {
+            if (sql.length() > 0) {
+                sql.append(";\n");
+            }
+            sql.append(entry.sql);
+        }
+
+        try (PreparedStatement st = conn.prepareStatement(sql.toString())) {
+            applyDeadline(st);
+            StatementHandle handle = new StatementHandle(st);
+            boolean isResultSet;
+            try {
+                int offset = 0;
+                for (Entry<?> entry: entries) {
+                    bind(handle, entry.params, offset);
+                    offset += entry.params.length;
+                }
+                isResultSet = st.execute();
+            }
+            finally {
+                handle.release();
+            }
+            for (Entry<?> entry: entries) {
+                if (entry.kind == Kind.UPDATE) {
+                    int count = st.getUpdateCount();
+                    if (isResultSet || count < 0) {
+                        throw new SQLException("update count is expected:" + entry.sql);
+                    }
+                    entry.complete(count);
+                }
+                else {
+                    if (!isResultSet) {
+                        throw new SQLException("result set is expected:" + entry.sql);
+                    }
+                    try (ResultSet rs = st.getResultSet()) {
+                        entry.complete(map(entry, rs));
+                    }
+                }
+                isResultSet = st.getMoreResults();
+            }
+        }
+    }
+
+    private static void applyDeadline(PreparedStatement st) throws SQLException {
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            st.setQueryTimeout(deadline.queryTimeout(0));
+        }
+    }
+
+    private static void bind(StatementHandle handle, Object[] params, int offset) throws SQLException {
+        for (int ix = 0; ix < params.length; ix++) {
+            handle.bind(offset + ix + 1, params[ix]);
+        }
+    }
+
+    private Object map(Entry<?> entry, ResultSet rs) throws SQLException {
+        if (entry.kind == Kind.MAP) {
+            ResultSetMetaData rsmd = rs.getMetaData();
+            int columnCount = rsmd.getColumnCount();
+            List<Map<String, String>> list = new ArrayList<>();
+            while (rs.next()) {
+                Map<String, String> map = new HashMap<>();
+                for (int ix = 1; ix <= columnCount; ix++) {
+                    map.put(rsmd.getColumnLabel(ix), rs.getString(ix));
+                }
+                list.add(map);
+            }
+            return list;
+        }
+
+        BeanBuilder builder = BeanBuilderFactory.getManager().getBeanBuilder(entry.cls);
+        List<Object> list = new ArrayList<>();
+        try {
+            while (rs.next()) {
+                list.add(builder.build(rs));
+            }
+        }
+        catch (BeanBuilderException ex) {
+            throw new SQLException(ex);
+        }
+        return list;
+    }
+
+    private SQLParser analyze(String sql) {
+        SQLParser parser = new SQLParser();
+        parser.setInListLimit(inListLimit);
+        parser.analyzeSQL(sql);
+        return parser;
+    }
+
+    private static String expandedSQL(SQLParser parser, Param params) {
+        if (!parser.hasCollectionParam(params)) {
+            return parser.getAnalyzedSQL();
+        }
+        if (parser.splitParams(params).size() > 1) {
+            throw new IllegalArgumentException("collection is larger than in-list limit:" + parser.getInListLimit());
+        }
+        return parser.expandSQL(params);
+    }
+
+    private <T> Result<T> add(String sql, Object[] params, Kind kind, Class<?> cls) {
+        Entry<T> entry = new Entry<>(sql, params, kind, cls);
+        entries.add(entry);
+        return entry.result;
+    }
+
+    private enum Kind {
+        MAP,
+        BEAN,
+        UPDATE
+    }
+
+    private static final class Entry<T> {
+        final String sql;
+        final Object[] params;
+        final Kind kind;
+        final Class<?> cls;
+        final Result<T> result = new Result<>();
+
+        Entry(String sql, Object[] params, Kind kind, Class<?> cls) {
+            this.sql = sql;
+            this.params = params;
+            this.kind = kind;
+            this.cls = cls;
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete(Object value) {
+            result.set((T)value);
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * create the column list of select statement from the bean mapping,
+ * so that the query fetches only the columns which are set to the bean.
+ *
+ * <p>
+ * {@code :columns(BeanClass)} or {@code :columns(BeanClass, alias)} in the sql is replaced
+ * with the column names of the bean.
+ * the bean is one of the specified classes (simple name or fully qualified name),
+ * or is loaded by the fully qualified name.
+ * {@link DBConnectionUtil#prepareWithParam(String)} replaces the directive of fully qualified names.
+ * </p>
+ * <pre><code>
+ * conn.prepareWithParam(Projection.expand(
+ *     "select :columns(UserBean, u) from user u where u.id = :id", UserBean.class));
+ * // select u.id, u.user_name, u.age, u.valid from user u where u.id = ?
+ * </code></pre>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public final class Projection {
+
+    private static final String DIRECTIVE = ":columns(";
+
+    /** column list of each bean */
+    private static final Map<Class<?>, String> cache = new ConcurrentHashMap<>();
+
+    private Projection() {
+    }
+
+    /**
+     * @param cls bean class
+     * @return comma separated column names of the bean
+     * @throws IllegalArgumentException the bean has no mapped column
+     */
+    public static String columns(Class<?> cls) {
+        String columns = cache.get(cls);
+        if (columns == null) {
+            columns = build(cls, null);
+            cache.put(cls, columns);
+        }
+        return columns;
+    }
+
+    /**
+     * @param cls bean class
+     * @param alias table alias to qualify the columns, or null
+     * @return comma separated column names of the bean
+     * @throws IllegalArgumentException the bean has no mapped column
+     */
+    public static String columns(Class<?> cls, String alias) {
+        return alias == null ? columns(cls) : build(cls, alias);
+    }
+
+    private static String build(Class<?> cls, String alias) {
+        List<String> names = BeanBuilderFactory.getManager().getBeanBuilder(cls).getColumnNames();
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("no column is mapped:" + cls.getName());
+        }
+        StringBuilder buf = new StringBuilder();
+        for (String name: names) {
+            if (buf.length() > 0) {
+                buf.append(", ");
+            }
+            if (alias != null) {
+                buf.append(alias).append('.');
+            }
+            buf.append(name);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @param sql sql
+     * @return true when the sql may contain the directive
+     */
+    static boolean hasDirective(String sql) {
+        return sql.contains(DIRECTIVE);
+    }
+
+    /**
+     * replace {@code :columns(BeanClass)} with the column names of the bean.
+     * the directive in quoted literals is not replaced.
+     *
+     * @param sql sql containing the directive
+     * @param beans bean classes referred by the simple name
+     * @return sql
+     * @throws IllegalArgumentException the bean is not found or the directive is not closed
+     */
+    public static String expand(String sql, Class<?>... beans) {
+        if (!hasDirective(sql)) {
+            return sql;
+        }
+
+        StringBuilder buf = new StringBuilder(sql.length() + 64);
+        int length = sql.length();
+        int ix = 0;
+        while (ix < length) {
+            char ch = sql.charAt(ix);
+            if (ch == '\'' || ch == '"') {
+                int end = sql.indexOf(ch, ix + 1);
+                end = end < 0 ? length : end + 1;
+                buf.append(sql, ix, end);
+                ix = end;
+            }
+            else if (ch == ':' && sql.startsWith(DIRECTIVE, ix)) {
+                int start = ix + DIRECTIVE.length();
+                int end = sql.indexOf(')', start);
+                if (end < 0) {
+                    throw new IllegalArgumentException("directive is not closed:" + sql.substring(ix));
+                }
+                String[] args = sql.substring(start, end).split(",");
+                String alias = args.length > 1 ? args[1].trim() : null;
+                if (args.length > 2 || (alias != null && alias.isEmpty())) {
+                    throw new IllegalArgumentException("invalid directive:" + sql.substring(ix, end + 1));
+                }
+                buf.append(columns(resolve(args[0].trim(), beans), alias));
+                ix = end + 1;
+            }
+            else {
+                buf.append(ch);
+                ix++;
+            }
+        }
+        return buf.toString();
+    }
+
+    /**
+     * @param name simple name or fully qualified name
+     * @param beans candidates
+     * @return bean class
+     */
+    private static Class<?> resolve(String name, Class<?>[] beans) {
+        for (Class<?> bean: beans) {
+            if (bean.getSimpleName().equals(name) || bean.getName().equals(name)) {
+                return bean;
+            }
+        }
+        try {
+            ClassLoader loader = Thread.currentThread().getContextClassLoader();
+            return Class.forName(name, false, loader != null ? loader : Projection.class.getClassLoader());
+        }
+        catch (ClassNotFoundException ex) {
+            throw new IllegalArgumentException("bean is not found:" + name, ex);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * read rows of a {@link ResultSet} on another thread into a bounded buffer.
+ *
+ * <p>
+ * the producer thread calls {@link ResultSet#next()} and reads the values by {@link MappingPlan},
+ * while the caller takes them by {@link #next()} and builds beans,
+ * so that waiting for the network and mapping overlap.
+ * the {@link ResultSet} is used only by the producer until {@link #close()} returns.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+class ReadAhead implements AutoCloseable, Runnable {
+
+    /** end of rows */
+    private static final Object[] END = new Object[0];
+
+    private final ResultSet rs;
+    private final MappingPlan plan;
+    private final BlockingQueue<Object[]> queue;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private volatile boolean stopped = false;
+    private volatile Throwable error;
+
+    /**
+     * start reading the rows.
+     *
+     * @param rs search result
+     * @param plan plan to read the values
+     * @param capacity max number of rows in the buffer
+     * @param executor executor to run the producer, or null to use the default
+     */
+    ReadAhead(ResultSet rs, MappingPlan plan, int capacity, Executor executor) {
+        this.rs = rs;
+        this.plan = plan;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        (executor != null ? executor : DefaultExecutor.INSTANCE).execute(this);
+    }
+
+    /**
+     * producer.
+     * the end of rows is always delivered, so that {@link #next()} does not wait forever.
+     */
+    @Override
+    public void run() {
+        boolean ended = false;
+        try {
+            while (!stopped && rs.next()) {
+                put(plan.read(rs));
+            }
+            ended = put(END);
+        }
+        catch (InterruptedException ex) {
+            error = ex;
+            Thread.currentThread().interrupt();
+        }
+        catch (Throwable ex) {
+            error = ex;
+        }
+        finally {
+            if (!ended) {
+                // stopped or failed: the rows in the buffer are not needed, so END always fits
+                queue.clear();
+                queue.offer(END);
+            }
+            done.countDown();
+        }
+    }
+
+    /**
+     * @param row values of a row
+     * @return false when the producer is stopped before the row is put
+     * @throws InterruptedException the producer is interrupted
+     */
+    private boolean put(Object[] row) throws InterruptedException {
+        while (!queue.offer(row, 10, TimeUnit.MILLISECONDS)) {
+            if (stopped) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * take the values of the next row.
+     *
+     * @return values for {@link MappingPlan#build(Object[])}, or null at the end
+     * @throws SQLException database error has occurred on the producer
+     */
+    Object[] next() throws SQLException {
+        Object[] row;
+        try {
+            row = queue.take();
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(ex);
+        }
+
+        if (row != END) {
+            return row;
+        }
+        Throwable ex = error;
+        if (ex instanceof SQLException) {
+            throw (SQLException)ex;
+        }
+        else if (ex instanceof Error) {
+            throw (Error)ex;
+        }
+        else if (ex != null) {
+            throw new SQLException(ex);
+        }
+        return null;
+    }
+
+    /**
+     * stop the producer and wait for it to leave the {@link ResultSet}.
+     */
+    @Override
+    public void close() {
+        stopped = true;
+        queue.clear();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            }
+            catch (InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * daemon threads shared by the queries which do not specify the executor.
+     */
+    private static class DefaultExecutor {
+        static final ExecutorService INSTANCE = Executors.newCachedThreadPool(new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "dbutils3-read-ahead-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
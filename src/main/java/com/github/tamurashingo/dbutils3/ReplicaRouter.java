@@ -0,0 +1,163 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+/**
+ * selects a read replica for {@link RoutingDBConnectionUtil}.
+ * one router is shared by all sessions so that the load is balanced among them.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class ReplicaRouter {
+
+    /**
+     * how to select the replica.
+     */
+    public enum Strategy {
+        /** in turn */
+        ROUND_ROBIN,
+        /** the replica with the fewest requests in progress */
+        LEAST_OUTSTANDING
+    }
+
+    private final DataSource[] replicas;
+    private final AtomicInteger[] outstanding;
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile Strategy strategy = Strategy.ROUND_ROBIN;
+    private volatile long stickinessNanos = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * constructor.
+     *
+     * @param replicas read replicas
+     */
+    public ReplicaRouter(List<DataSource> replicas) {
+        this.replicas = replicas.toArray(new DataSource[replicas.size()]);
+        this.outstanding = new AtomicInteger[this.replicas.length];
+        for (int ix = 0; ix < outstanding.length; ix++) {
+            outstanding[ix] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * @param strategy how to select the replica (default {@link Strategy#ROUND_ROBIN})
+     */
+    public void setStrategy(Strategy strategy) {
+        this.strategy = strategy;
+    }
+
+    /**
+     * @return how to select the replica
+     */
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * queries are sent to the primary for this period after a write
+     * so that the session reads its own writes.
+     *
+     * @param window period after a write (default 1 second, 0 to disable)
+     * @param unit unit of window
+     */
+    public void setStickiness(long window, TimeUnit unit) {
+        if (window < 0) {
+            throw new IllegalArgumentException("window must not be negative:" + window);
+        }
+        this.stickinessNanos = unit.toNanos(window);
+    }
+
+    /**
+     * @return period after a write in nanoseconds
+     */
+    long getStickinessNanos() {
+        return stickinessNanos;
+    }
+
+    /**
+     * @return the number of replicas
+     */
+    public int size() {
+        return replicas.length;
+    }
+
+    /**
+     * @param replica replica index
+     * @return the number of requests in progress on the replica
+     */
+    public int getOutstanding(int replica) {
+        return outstanding[replica].get();
+    }
+
+    /**
+     * @param replica replica index
+     * @return data source of the replica
+     */
+    DataSource getReplica(int replica) {
+        return replicas[replica];
+    }
+
+    /**
+     * select the replica and count the request in progress.
+     * {@link #release(int)} must be called when the request ends.
+     *
+     * @return replica index, or -1 when there is no replica
+     */
+    int acquire() {
+        int size = replicas.length;
+        if (size == 0) {
+            return -1;
+        }
+
+        int start = (next.getAndIncrement() & Integer.MAX_VALUE) % size;
+        int selected = start;
+        if (strategy == Strategy.LEAST_OUTSTANDING) {
+            int min = outstanding[start].get();
+            for (int ix = 1; ix < size && min > 0; ix++) {
+                int candidate = (start + ix) % size;
+                int count = outstanding[candidate].get();
+                if (count < min) {
+                    min = count;
+                    selected = candidate;
+                }
+            }
+        }
+        outstanding[selected].incrementAndGet();
+        return selected;
+    }
+
+    /**
+     * @param replica replica index returned by {@link #acquire()}
+     */
+    void release(int replica) {
+        outstanding[replica].decrementAndGet();
+    }
+}
@@ -0,0 +1,542 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * write {@link ResultSet} as CSV or NDJSON (newline delimited JSON) in UTF-8.
+ *
+ * <p>
+ * rows are encoded directly from the {@link ResultSet} into a reusable byte buffer,
+ * so no {@link java.util.Map} nor intermediate string is created for each row.
+ * </p>
+ * <pre><code>
+ * ResultSetExporter exporter = new ResultSetExporter(ResultSetExporter.Format.CSV);
+ * exporter.setGzip(true);
+ * try (FileChannel out = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+ *     conn.prepare("select * from user");
+ *     long rows = conn.export(exporter, out);
+ * }
+ * </code></pre>
+ *
+ * <p>
+ * this class is not thread safe because the buffer is reused.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class ResultSetExporter {
+
+    /**
+     * output format.
+     */
+    public enum Format {
+        /** RFC 4180 CSV. a field is quoted only when it contains comma, quote or line break. */
+        CSV,
+        /** one JSON object per line. keys are column labels. */
+        NDJSON
+    }
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** max bytes of one character in UTF-8 */
+    private static final int MAX_CHAR_BYTES = 4;
+
+    /** column kinds for NDJSON */
+    private static final int KIND_STRING = 0;
+    private static final int KIND_NUMBER = 1;
+    private static final int KIND_BOOLEAN = 2;
+
+    private static final byte[] NULL = "null".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRUE = "true".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] FALSE = "false".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private final Format format;
+    private boolean header = true;
+    private boolean gzip = false;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    private ByteBuffer buffer;
+    private WritableByteChannel channel;
+    private GzipStream gzipStream;
+
+    /** bytes written by the current export before {@link #buffer} */
+    private long flushed;
+
+    /** encoded bytes of the values written by the last export */
+    private long valueBytes;
+
+    /** set by {@link #cancel()} from another thread */
+    private volatile boolean cancelled;
+
+    /**
+     * constructor.
+     *
+     * @param format output format
+     */
+    public ResultSetExporter(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * @param header true to write column labels as the first line of CSV (default true)
+     */
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    /**
+     * @param gzip true to compress the output with gzip (default false)
+     */
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    /**
+     * @param bufferSize size of the byte buffer (default 64KiB)
+     */
+    public void setBufferSize(int bufferSize) {
+        if (bufferSize < MAX_CHAR_BYTES * 4) {
+            throw new IllegalArgumentException("bufferSize is too small:" + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.buffer = null;
+    }
+
+    /**
+     * stop the running export before the next row, or the next export when it is not running.
+     * the export fails with {@link SQLException} (SQLState HY008).
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * write all rows of the {@link ResultSet}.
+     * the stream is not closed.
+     *
+     * @param rs search result
+     * @param out output
+     * @return the number of rows
+     * @throws SQLException database error has occurred
+     * @throws IOException failed to write
+     */
+    public long export(ResultSet rs, OutputStream out) throws SQLException, IOException {
+        return export(rs, Channels.newChannel(out));
+    }
+
+    /**
+     * write all rows of the {@link ResultSet}.
+     * the channel is not closed.
+     *
+     * @param rs search result
+     * @param out output
+     * @return the number of rows
+     * @throws SQLException database error has occurred
+     * @throws IOException failed to write
+     */
+    public long export(ResultSet rs, WritableByteChannel out) throws SQLException, IOException {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(bufferSize);
+        }
+        buffer.clear();
+        flushed = 0;
+        valueBytes = 0;
+        channel = out;
+        gzipStream = gzip ? new GzipStream(Channels.newOutputStream(out), bufferSize) : null;
+        try {
+            long rows = format == Format.CSV ? writeCsv(rs) : writeNdjson(rs);
+            flush();
+            if (gzipStream != null) {
+                gzipStream.finish();
+            }
+            return rows;
+        }
+        finally {
+            if (gzipStream != null) {
+                gzipStream.end();
+            }
+            channel = null;
+            gzipStream = null;
+            cancelled = false;
+        }
+    }
+
+    /**
+     * @return encoded bytes (before compression) of the values written by the last export,
+     *         excluding the header, the separators and the keys
+     */
+    long getValueBytes() {
+        return valueBytes;
+    }
+
+    /**
+     * @return bytes written by the current export
+     */
+    private long written() {
+        return flushed + buffer.position();
+    }
+
+    private long writeCsv(ResultSet rs) throws SQLException, IOException {
+        ResultSetMetaData rsmd = rs.getMetaData();
+        int columnCount = rsmd.getColumnCount();
+
+        if (header) {
+            for (int ix = 1; ix <= columnCount; ix++) {
+                if (ix > 1) {
+                    put((byte)',');
+                }
+                writeCsvField(rsmd.getColumnLabel(ix));
+            }
+            put((byte)'\n');
+        }
+
+        long mark = written();
+        long rows = 0;
+        while (rs.next()) {
+            if (cancelled) {
+                throw new SQLException("export is cancelled", "HY008");
+            }
+            for (int ix = 1; ix <= columnCount; ix++) {
+                if (ix > 1) {
+                    put((byte)',');
+                }
+                String value = rs.getString(ix);
+                if (value != null) {
+                    writeCsvField(value);
+                }
+            }
+            put((byte)'\n');
+            rows++;
+        }
+        // ',' and '\n' of each row
+        valueBytes = written() - mark - rows * columnCount;
+        return rows;
+    }
+
+    private long writeNdjson(ResultSet rs) throws SQLException, IOException {
+        ResultSetMetaData rsmd = rs.getMetaData();
+        int columnCount = rsmd.getColumnCount();
+
+        // encode "label": once for each export
+        byte[][] keys = new byte[columnCount + 1][];
+        int[] kinds = new int[columnCount + 1];
+        for (int ix = 1; ix <= columnCount; ix++) {
+            StringBuilder key = new StringBuilder(ix == 1 ? "{\"" : ",\"");
+            appendJsonEscaped(key, rsmd.getColumnLabel(ix));
+            key.append("\":");
+            keys[ix] = key.toString().getBytes(StandardCharsets.UTF_8);
+            kinds[ix] = kindOf(rsmd.getColumnType(ix));
+        }
+
+        long keyBytes = 2;
+        for (int ix = 1; ix <= columnCount; ix++) {
+            keyBytes += keys[ix].length;
+        }
+
+        long mark = written();
+        long rows = 0;
+        while (rs.next()) {
+            if (cancelled) {
+                throw new SQLException("export is cancelled", "HY008");
+            }
+            for (int ix = 1; ix <= columnCount; ix++) {
+                put(keys[ix]);
+                if (kinds[ix] == KIND_BOOLEAN) {
+                    boolean value = rs.getBoolean(ix);
+                    put(rs.wasNull() ? NULL : value ? TRUE : FALSE);
+                    continue;
+                }
+                String value = rs.getString(ix);
+                if (value == null) {
+                    put(NULL);
+                }
+                else if (kinds[ix] == KIND_NUMBER && isJsonNumber(value)) {
+                    writeChars(value);
+                }
+                else {
+                    put((byte)'"');
+                    writeJsonString(value);
+                    put((byte)'"');
+                }
+            }
+            if (columnCount == 0) {
+                put((byte)'{');
+            }
+            put((byte)'}');
+            put((byte)'\n');
+            rows++;
+        }
+        // keys, '}' and '\n' of each row
+        valueBytes = written() - mark - rows * keyBytes;
+        return rows;
+    }
+
+    private static int kindOf(int sqlType) {
+        switch (sqlType) {
+        case Types.TINYINT:
+        case Types.SMALLINT:
+        case Types.INTEGER:
+        case Types.BIGINT:
+        case Types.REAL:
+        case Types.FLOAT:
+        case Types.DOUBLE:
+        case Types.DECIMAL:
+        case Types.NUMERIC:
+            return KIND_NUMBER;
+        case Types.BOOLEAN:
+        case Types.BIT:
+            return KIND_BOOLEAN;
+        default:
+            return KIND_STRING;
+        }
+    }
+
+    /**
+     * @param value string representation of a number
+     * @return false when the value is not a JSON number (e.g. NaN, Infinity, .5, 01), which is quoted
+     */
+    static boolean isJsonNumber(String value) {
+        // -? (0 | [1-9][0-9]*) (. [0-9]+)? ([eE] [+-]? [0-9]+)?
+        int length = value.length();
+        int ix = 0;
+        if (ix < length && value.charAt(ix) == '-') {
+            ix++;
+        }
+        if (ix < length && value.charAt(ix) == '0') {
+            ix++;
+        }
+        else {
+            int start = ix;
+            ix = skipDigits(value, ix);
+            if (ix == start) {
+                return false;
+            }
+        }
+        if (ix < length && value.charAt(ix) == '.') {
+            int start = ++ix;
+            ix = skipDigits(value, ix);
+            if (ix == start) {
+                return false;
+            }
+        }
+        if (ix < length && (value.charAt(ix) == 'e' || value.charAt(ix) == 'E')) {
+            ix++;
+            if (ix < length && (value.charAt(ix) == '+' || value.charAt(ix) == '-')) {
+                ix++;
+            }
+            int start = ix;
+            ix = skipDigits(value, ix);
+            if (ix == start) {
+                return false;
+            }
+        }
+        return ix == length;
+    }
+
+    private static int skipDigits(String value, int ix) {
+        while (ix < value.length() && '0' <= value.charAt(ix) && value.charAt(ix) <= '9') {
+            ix++;
+        }
+        return ix;
+    }
+
+    private void writeCsvField(String value) throws IOException {
+        boolean quote = false;
+        for (int ix = 0; ix < value.length(); ix++) {
+            char c = value.charAt(ix);
+            if (c == ',' || c == '"' || c == '\r' || c == '\n') {
+                quote = true;
+                break;
+            }
+        }
+        if (!quote) {
+            writeChars(value);
+            return;
+        }
+
+        put((byte)'"');
+        for (int ix = 0; ix < value.length(); ix++) {
+            char c = value.charAt(ix);
+            if (c == '"') {
+                put((byte)'"');
+            }
+            ix = writeChar(value, ix);
+        }
+        put((byte)'"');
+    }
+
+    private void writeJsonString(String value) throws IOException {
+        for (int ix = 0; ix < value.length(); ix++) {
+            char c = value.charAt(ix);
+            if (c == '"' || c == '\\') {
+                put((byte)'\\');
+                put((byte)c);
+            }
+            else if (c < 0x20) {
+                put((byte)'\\');
+                switch (c) {
+                case '\n':
+                    put((byte)'n');
+                    break;
+                case '\r':
+                    put((byte)'r');
+                    break;
+                case '\t':
+                    put((byte)'t');
+                    break;
+                default:
+                    put((byte)'u');
+                    put((byte)'0');
+                    put((byte)'0');
+                    put(HEX[c >> 4]);
+                    put(HEX[c & 0xf]);
+                }
+            }
+            else {
+                ix = writeChar(value, ix);
+            }
+        }
+    }
+
+    private static void appendJsonEscaped(StringBuilder buf, String value) {
+        for (int ix = 0; ix < value.length(); ix++) {
+            char c = value.charAt(ix);
+            if (c == '"' || c == '\\') {
+                buf.append('\\').append(c);
+            }
+            else if (c < 0x20) {
+                buf.append(String.format("\\u%04x", (int)c));
+            }
+            else {
+                buf.append(c);
+            }
+        }
+    }
+
+    private void writeChars(String value) throws IOException {
+        for (int ix = 0; ix < value.length(); ix++) {
+            ix = writeChar(value, ix);
+        }
+    }
+
+    /**
+     * encode a character at the index to UTF-8.
+     *
+     * @param value string
+     * @param ix index of the character
+     * @return index of the last char consumed (next index of high surrogate when a surrogate pair)
+     * @throws IOException failed to flush
+     */
+    private int writeChar(String value, int ix) throws IOException {
+        if (buffer.remaining() < MAX_CHAR_BYTES) {
+            flush();
+        }
+        char c = value.charAt(ix);
+        if (c < 0x80) {
+            buffer.put((byte)c);
+        }
+        else if (c < 0x800) {
+            buffer.put((byte)(0xc0 | (c >> 6)));
+            buffer.put((byte)(0x80 | (c & 0x3f)));
+        }
+        else if (Character.isHighSurrogate(c) && ix + 1 < value.length() && Character.isLowSurrogate(value.charAt(ix + 1))) {
+            int cp = Character.toCodePoint(c, value.charAt(ix + 1));
+            buffer.put((byte)(0xf0 | (cp >> 18)));
+            buffer.put((byte)(0x80 | ((cp >> 12) & 0x3f)));
+            buffer.put((byte)(0x80 | ((cp >> 6) & 0x3f)));
+            buffer.put((byte)(0x80 | (cp & 0x3f)));
+            return ix + 1;
+        }
+        else if (Character.isSurrogate(c)) {
+            buffer.put((byte)'?');
+        }
+        else {
+            buffer.put((byte)(0xe0 | (c >> 12)));
+            buffer.put((byte)(0x80 | ((c >> 6) & 0x3f)));
+            buffer.put((byte)(0x80 | (c & 0x3f)));
+        }
+        return ix;
+    }
+
+    private void put(byte b) throws IOException {
+        if (!buffer.hasRemaining()) {
+            flush();
+        }
+        buffer.put(b);
+    }
+
+    private void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void flush() throws IOException {
+        flushed += buffer.position();
+        if (gzipStream != null) {
+            gzipStream.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+            buffer.clear();
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * {@link GZIPOutputStream} which releases the native memory of the deflater
+     * without closing the output.
+     */
+    private static class GzipStream extends GZIPOutputStream {
+        GzipStream(OutputStream out, int size) throws IOException {
+            super(out, size);
+        }
+
+        void end() {
+            def.end();
+        }
+    }
+}
@@ -0,0 +1,450 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+
+import com.github.tamurashingo.dbutils3.parser.ParamSlots;
+
+/**
+ * {@link DBConnectionUtil} which sends queries to read replicas.
+ *
+ * <p>
+ * executeQuery*, export* and transfer* are executed on a replica selected by {@link ReplicaRouter},
+ * except while a transaction is open (auto-commit is off) and for the stickiness window after a write.
+ * the other operations are executed on the primary connection.
+ * the replica connections are opened on first use and closed by {@link #close()}.
+ * </p>
+ * <pre><code>
+ * ReplicaRouter router = new ReplicaRouter(Arrays.asList(replica1, replica2));
+ * router.setStrategy(ReplicaRouter.Strategy.LEAST_OUTSTANDING);
+ *
+ * try (DBConnectionUtil conn = new RoutingDBConnectionUtil(primary.getConnection(), router)) {
+ *     conn.prepareWithParam("select * from user where id = :id");
+ *     List&lt;UserBean&gt; users = conn.executeQueryWithParam(UserBean.class, new Param().put("id", 3));
+ * }
+ * </code></pre>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class RoutingDBConnectionUtil extends DBConnectionUtil {
+
+    private final ReplicaRouter router;
+
+    /** connections to the replicas (opened on first use) */
+    private final DBConnectionUtil[] replicas;
+
+    /** {@link #version} prepared on each replica */
+    private final int[] preparedVersion;
+
+    /** replica executing the current query, to be cancelled by {@link #cancel()} */
+    private volatile DBConnectionUtil active;
+
+    /** incremented by each prepare */
+    private int version = 0;
+
+    private String sql;
+    private boolean withParam;
+    private StatementOptions options;
+
+    /** {@link System#nanoTime()} until which queries are sent to the primary */
+    private long stickyUntil;
+    private boolean sticky = false;
+
+    /**
+     * constructor.
+     *
+     * @param conn primary database connection
+     * @param router replica router
+     */
+    public RoutingDBConnectionUtil(Connection conn, ReplicaRouter router) {
+        super(conn);
+        this.router = router;
+        this.replicas = new DBConnectionUtil[router.size()];
+        this.preparedVersion = new int[router.size()];
+    }
+
+    @Override
+    public void prepare(String sql, StatementOptions options) throws SQLException {
+        super.prepare(sql, options);
+        this.sql = sql;
+        this.withParam = false;
+        this.options = options;
+        version++;
+    }
+
+    @Override
+    public void prepareWithParam(String sql, StatementOptions options) throws SQLException {
+        super.prepareWithParam(sql, options);
+        this.sql = sql;
+        this.withParam = true;
+    }
+
+    @Override
+    public List<Map<String, String>> executeQuery(Object... params) throws SQLException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.executeQuery(params);
+        }
+        try {
+            return enter(ix).executeQuery(params);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    @Override
+    public List<Map<String, String>> executeQueryWithParam(ParamSlots slots) throws SQLException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.executeQueryWithParam(slots);
+        }
+        try {
+            return enter(ix).executeQueryWithParam(slots);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    @Override
+    public List<Map<String, String>> executeQueryWithParam(Param params) throws SQLException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.executeQueryWithParam(params);
+        }
+        try {
+            return enter(ix).executeQueryWithParam(params);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    @Override
+    public <T> List<T> executeQuery(Class<T> cls, Object... params) throws SQLException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.executeQuery(cls, params);
+        }
+        try {
+            return enter(ix).executeQuery(cls, params);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    @Override
+    public <T> List<T> executeQueryWithParam(Class<T> cls, ParamSlots slots) throws SQLException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.executeQueryWithParam(cls, slots);
+        }
+        try {
+            return enter(ix).executeQueryWithParam(cls, slots);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    @Override
+    public <T> List<T> executeQueryWithParam(Class<T> cls, Param params) throws SQLException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.executeQueryWithParam(cls, params);
+        }
+        try {
+            return enter(ix).executeQueryWithParam(cls, params);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    @Override
+    public long export(ResultSetExporter exporter, WritableByteChannel out, Object... params) throws SQLException, IOException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.export(exporter, out, params);
+        }
+        try {
+            return enter(ix).export(exporter, out, params);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    @Override
+    public long exportWithParam(ResultSetExporter exporter, WritableByteChannel out, Param params) throws SQLException, IOException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.exportWithParam(exporter, out, params);
+        }
+        try {
+            return enter(ix).exportWithParam(exporter, out, params);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    @Override
+    public long transfer(LobTransfer transfer, WritableByteChannel out, Object... params) throws SQLException, IOException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.transfer(transfer, out, params);
+        }
+        try {
+            return enter(ix).transfer(transfer, out, params);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    @Override
+    public long transferWithParam(LobTransfer transfer, WritableByteChannel out, Param params) throws SQLException, IOException {
+        int ix = acquireReplica();
+        if (ix < 0) {
+            return super.transferWithParam(transfer, out, params);
+        }
+        try {
+            return enter(ix).transferWithParam(transfer, out, params);
+        }
+        finally {
+            leave(ix);
+        }
+    }
+
+    /**
+     * cancel the running execution on the primary or the replica from another thread.
+     *
+     * @throws SQLException database error has occurred
+     */
+    @Override
+    public void cancel() throws SQLException {
+        super.cancel();
+        DBConnectionUtil replica = active;
+        if (replica != null) {
+            replica.cancel();
+        }
+    }
+
+    @Override
+    public int executeUpdate(Object... params) throws SQLException {
+        written();
+        return super.executeUpdate(params);
+    }
+
+    @Override
+    public int executeUpdateWithParam(Param params) throws SQLException {
+        written();
+        return super.executeUpdateWithParam(params);
+    }
+
+    @Override
+    public int executeUpdateWithParam(ParamSlots slots) throws SQLException {
+        written();
+        return super.executeUpdateWithParam(slots);
+    }
+
+    @Override
+    public int executeBatch(List<Object[]> params) throws SQLException {
+        written();
+        return super.executeBatch(params);
+    }
+
+    @Override
+    public int executeBatchWithParam(List<Param> params) throws SQLException {
+        written();
+        return super.executeBatchWithParam(params);
+    }
+
+    @Override
+    public long[] executeInsert(List<Object[]> params) throws SQLException {
+        written();
+        return super.executeInsert(params);
+    }
+
+    @Override
+    public long[] executeInsertWithParam(List<Param> params) throws SQLException {
+        written();
+        return super.executeInsertWithParam(params);
+    }
+
+    @Override
+    public <T> long[] executeInsertWithParam(List<Param> params, List<T> beans) throws SQLException {
+        written();
+        return super.executeInsertWithParam(params, beans);
+    }
+
+    /**
+     * add the interceptor to the primary and the replicas already opened.
+     * replicas opened later receive the interceptors of the primary.
+     *
+     * @param interceptor interceptor
+     */
+    @Override
+    public void addInterceptor(StatementInterceptor interceptor) {
+        super.addInterceptor(interceptor);
+        for (DBConnectionUtil replica: replicas) {
+            if (replica != null) {
+                replica.addInterceptor(interceptor);
+            }
+        }
+    }
+
+    /**
+     * remove the interceptor from the primary and the replicas.
+     *
+     * @param interceptor interceptor added by {@link #addInterceptor(StatementInterceptor)}
+     * @return true when the interceptor is removed
+     */
+    @Override
+    public boolean removeInterceptor(StatementInterceptor interceptor) {
+        for (DBConnectionUtil replica: replicas) {
+            if (replica != null) {
+                replica.removeInterceptor(interceptor);
+            }
+        }
+        return super.removeInterceptor(interceptor);
+    }
+
+    /**
+     * disconnect the primary and replica connections.
+     */
+    @Override
+    public void close() {
+        for (int ix = 0; ix < replicas.length; ix++) {
+            if (replicas[ix] != null) {
+                replicas[ix].close();
+                replicas[ix] = null;
+            }
+        }
+        super.close();
+    }
+
+    /**
+     * @return true when queries are sent to the primary for read-your-writes
+     */
+    public boolean isSticky() {
+        if (sticky && System.nanoTime() - stickyUntil >= 0) {
+            sticky = false;
+        }
+        return sticky;
+    }
+
+    /**
+     * start the stickiness window.
+     * it is started before the write because the write may be committed even if it fails.
+     */
+    private void written() {
+        long window = router.getStickinessNanos();
+        if (window > 0) {
+            stickyUntil = System.nanoTime() + window;
+            sticky = true;
+        }
+    }
+
+    /**
+     * select the replica for the query.
+     *
+     * @return replica index, or -1 to use the primary
+     * @throws SQLException database error has occurred
+     */
+    private int acquireReplica() throws SQLException {
+        if (sql == null || isSticky() || !getConnection().getAutoCommit()) {
+            return -1;
+        }
+        int ix = router.acquire();
+        if (ix < 0) {
+            return -1;
+        }
+        if (replicas[ix] == null) {
+            try {
+                replicas[ix] = new DBConnectionUtil(router.getReplica(ix).getConnection());
+                for (StatementInterceptor interceptor: getInterceptors()) {
+                    replicas[ix].addInterceptor(interceptor);
+                }
+            }
+            catch (SQLException ex) {
+                // the replica is not available, use the primary
+                router.release(ix);
+                return -1;
+            }
+        }
+        return ix;
+    }
+
+    /**
+     * make the replica the target of {@link #cancel()}.
+     *
+     * @param ix replica index
+     * @return replica prepared with the current sql
+     * @throws SQLException database error has occurred
+     */
+    private DBConnectionUtil enter(int ix) throws SQLException {
+        DBConnectionUtil replica = replica(ix);
+        active = replica;
+        return replica;
+    }
+
+    /**
+     * @param ix replica index
+     */
+    private void leave(int ix) {
+        active = null;
+        router.release(ix);
+    }
+
+    /**
+     * @param ix replica index
+     * @return replica prepared with the current sql
+     * @throws SQLException database error has occurred
+     */
+    private DBConnectionUtil replica(int ix) throws SQLException {
+        DBConnectionUtil replica = replicas[ix];
+        if (preparedVersion[ix] != version) {
+            replica.setInListLimit(getInListLimit());
+            if (withParam) {
+                replica.prepareWithParam(sql, options);
+            }
+            else {
+                replica.prepare(sql, options);
+            }
+            preparedVersion[ix] = version;
+        }
+        return replica;
+    }
+}
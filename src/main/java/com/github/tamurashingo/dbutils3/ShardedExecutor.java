@@ -0,0 +1,311 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import javax.sql.DataSource;
+
+import com.github.tamurashingo.dbutils3.parser.SQLParser;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+/**
+ * execute the sql with named parameters on the shard selected by the shard key.
+ *
+ * <p>
+ * the value of the shard key is taken from {@link Param} and mapped to one of the shards
+ * by consistent hashing. when the sql does not contain the shard key or its value is null,
+ * the sql is executed on all shards in parallel and the results are merged.
+ * a {@link Collection} value is executed on every shard which one of its elements belongs to.
+ * </p>
+ * <pre><code>
+ * ShardedExecutor sharded = new ShardedExecutor(Arrays.asList(shard0, shard1, shard2), "customerId", executor);
+ * // customer_id = 3 only
+ * List&lt;OrderBean&gt; orders = sharded.executeQueryWithParam(OrderBean.class,
+ *         "select * from orders where customer_id = :customerId", new Param().put("customerId", 3));
+ * // all shards
+ * List&lt;OrderBean&gt; recent = sharded.executeQueryWithParam(OrderBean.class,
+ *         "select * from orders where ordered_at &gt;= :from", new Param().put("from", from));
+ * </code></pre>
+ * <p>
+ * the shards must not be added or removed without moving the rows,
+ * because the shard of a key depends on the number of shards.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class ShardedExecutor {
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    /** max number of sqls cached in {@link #keyed} */
+    private static final int MAX_KEYED = 1024;
+
+    private final DataSource[] shards;
+    private final String shardKey;
+    private final ExecutorService executor;
+
+    /** sql to whether it contains the shard key (sqls over {@link #MAX_KEYED} are parsed every time) */
+    private final Map<String, Boolean> keyed = new ConcurrentHashMap<>();
+
+    /**
+     * constructor.
+     *
+     * @param shards data sources of the shards
+     * @param shardKey name of the named parameter which selects the shard (without colon)
+     * @param executor executor to run the sql on several shards
+     */
+    public ShardedExecutor(List<DataSource> shards, String shardKey, ExecutorService executor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("no shard");
+        }
+        this.shards = shards.toArray(new DataSource[shards.size()]);
+        this.shardKey = shardKey;
+        this.executor = executor;
+    }
+
+    /**
+     * @return the number of shards
+     */
+    public int size() {
+        return shards.length;
+    }
+
+    /**
+     * @param key value of the shard key
+     * @return shard index
+     */
+    public int shardOf(Object key) {
+        long hash;
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+            hash = HASH.hashLong(((Number)key).longValue()).asLong();
+        }
+        else if (key instanceof CharSequence) {
+            hash = HASH.hashString((CharSequence)key, StandardCharsets.UTF_8).asLong();
+        }
+        else {
+            hash = HASH.hashInt(key.hashCode()).asLong();
+        }
+        return Hashing.consistentHash(hash, shards.length);
+    }
+
+    /**
+     * execute query sql and return {@link List} of {@link Map}.
+     *
+     * @param sql sql with named parameters
+     * @param params parameter for the sql
+     * @return search result (merged in order of shard when executed on several shards)
+     * @throws SQLException database error has occurred
+     */
+    public List<Map<String, String>> executeQueryWithParam(final String sql, final Param params) throws SQLException {
+        return gather(sql, params, new ShardCallback<List<Map<String, String>>>() {
+            @Override
+            public List<Map<String, String>> execute(DBConnectionUtil conn) throws SQLException {
+                conn.prepareWithParam(sql);
+                return conn.executeQueryWithParam(params);
+            }
+        });
+    }
+
+    /**
+     * execute query sql and return Bean of {@link List}.
+     *
+     * @param cls bean class information which set search result
+     * @param sql sql with named parameters
+     * @param params parameter for the sql
+     * @param <T> bean type
+     * @return search result (merged in order of shard when executed on several shards)
+     * @throws SQLException database error has occurred
+     */
+    public <T> List<T> executeQueryWithParam(final Class<T> cls, final String sql, final Param params) throws SQLException {
+        return gather(sql, params, new ShardCallback<List<T>>() {
+            @Override
+            public List<T> execute(DBConnectionUtil conn) throws SQLException {
+                conn.prepareWithParam(sql);
+                return conn.executeQueryWithParam(cls, params);
+            }
+        });
+    }
+
+    /**
+     * execute update sql.
+     * without the shard key, it is executed on all shards.
+     *
+     * @param sql sql with named parameters
+     * @param params parameter for the sql
+     * @return the number of update (total of the shards)
+     * @throws SQLException database error has occurred
+     */
+    public int executeUpdateWithParam(final String sql, final Param params) throws SQLException {
+        List<Integer> counts = execute(sql, params, new ShardCallback<Integer>() {
+            @Override
+            public Integer execute(DBConnectionUtil conn) throws SQLException {
+                conn.prepareWithParam(sql);
+                return conn.executeUpdateWithParam(params);
+            }
+        });
+        int total = 0;
+        for (int count: counts) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * select the shards for the parameters.
+     *
+     * @param sql sql with named parameters
+     * @param params parameter for the sql
+     * @return shard indexes
+     */
+    Collection<Integer> shardsOf(String sql, Param params) {
+        Boolean containsKey = keyed.get(sql);
+        if (containsKey == null) {
+            SQLParser parser = new SQLParser();
+            parser.analyzeSQL(sql);
+            containsKey = parser.getSlotNames().contains(shardKey);
+            if (keyed.size() < MAX_KEYED) {
+                keyed.put(sql, containsKey);
+            }
+        }
+
+        Object key = containsKey ? params.get(shardKey) : null;
+        Collection<Integer> selected = new TreeSet<>();
+        if (key instanceof Collection) {
+            for (Object element: (Collection<?>)key) {
+                if (element == null) {
+                    return allShards();
+                }
+                selected.add(shardOf(element));
+            }
+            return selected.isEmpty() ? allShards() : selected;
+        }
+        else if (key == null) {
+            return allShards();
+        }
+        selected.add(shardOf(key));
+        return selected;
+    }
+
+    private Collection<Integer> allShards() {
+        Collection<Integer> all = new ArrayList<>(shards.length);
+        for (int ix = 0; ix < shards.length; ix++) {
+            all.add(ix);
+        }
+        return all;
+    }
+
+    private <T> List<T> gather(String sql, Param params, ShardCallback<List<T>> callback) throws SQLException {
+        List<List<T>> results = execute(sql, params, callback);
+        if (results.size() == 1) {
+            return results.get(0);
+        }
+        List<T> merged = new ArrayList<>();
+        for (List<T> result: results) {
+            merged.addAll(result);
+        }
+        return merged;
+    }
+
+    /**
+     * execute the callback on the selected shards.
+     * the callbacks except the first one run on {@link #executor},
+     * and the deadline of the current thread is propagated to them.
+     */
+    private <T> List<T> execute(String sql, Param params, final ShardCallback<T> callback) throws SQLException {
+        Collection<Integer> selected = shardsOf(sql, params);
+        final Deadline deadline = Deadline.current();
+
+        List<Future<T>> futures = new ArrayList<>(selected.size());
+        Integer first = null;
+        for (final Integer shard: selected) {
+            if (first == null) {
+                first = shard;
+                continue;
+            }
+            futures.add(executor.submit(new Callable<T>() {
+                @Override
+                public T call() throws SQLException {
+                    if (deadline == null) {
+                        return executeOn(shard, callback);
+                    }
+                    Deadline.Scope scope = deadline.bind();
+                    try {
+                        return executeOn(shard, callback);
+                    }
+                    finally {
+                        scope.close();
+                    }
+                }
+            }));
+        }
+
+        List<T> results = new ArrayList<>(selected.size());
+        try {
+            results.add(executeOn(first, callback));
+            for (Future<T> future: futures) {
+                results.add(future.get());
+            }
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException(ex);
+        }
+        catch (ExecutionException ex) {
+            if (ex.getCause() instanceof SQLException) {
+                throw (SQLException)ex.getCause();
+            }
+            throw new SQLException(ex.getCause());
+        }
+        finally {
+            for (Future<T> future: futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private <T> T executeOn(int shard, ShardCallback<T> callback) throws SQLException {
+        try (DBConnectionUtil conn = new DBConnectionUtil(shards[shard].getConnection())) {
+            return callback.execute(conn);
+        }
+    }
+
+    private interface ShardCallback<T> {
+        T execute(DBConnectionUtil conn) throws SQLException;
+    }
+}
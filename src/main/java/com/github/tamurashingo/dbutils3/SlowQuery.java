@@ -0,0 +1,108 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * statement recorded by {@link SlowQueryLog}.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public final class SlowQuery {
+
+    private final long timestamp;
+    private final String sql;
+    private final String fingerprint;
+    private final StatementContext.Operation operation;
+    private final Object[] parameters;
+    private final long elapsedNanos;
+    private final String plan;
+
+    SlowQuery(String sql, String fingerprint, StatementContext.Operation operation, Object[] parameters, long elapsedNanos, String plan) {
+        this.timestamp = System.currentTimeMillis();
+        this.sql = sql;
+        this.fingerprint = fingerprint;
+        this.operation = operation;
+        this.parameters = parameters;
+        this.elapsedNanos = elapsedNanos;
+        this.plan = plan;
+    }
+
+    /**
+     * @return time when the statement finished (milliseconds since epoch)
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return executed sql
+     */
+    public String getSQL() {
+        return sql;
+    }
+
+    /**
+     * @return normalized sql
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return kind of the execution
+     */
+    public StatementContext.Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return bound parameters, or null
+     */
+    public Object[] getParameters() {
+        return parameters == null ? null : parameters.clone();
+    }
+
+    /**
+     * @param unit time unit
+     * @return time taken to execute and map the result
+     */
+    public long getElapsed(TimeUnit unit) {
+        return unit.convert(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return execution plan, or null when it is not captured
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQuery [elapsed=" + getElapsed(TimeUnit.MILLISECONDS) + "ms, sql=" + sql + ", plan=" + plan + "]";
+    }
+}
@@ -0,0 +1,385 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+/**
+ * {@link StatementInterceptor} which records the statements slower than the threshold
+ * with their execution plan.
+ *
+ * <p>
+ * the plan is captured by {@code EXPLAIN} of the same sql and parameters on a connection
+ * of the specified data source, not to disturb the transaction of the application.
+ * H2, PostgreSQL, MySQL and MariaDB are supported.
+ * the plan is cached for each fingerprint of the sql and captured again after {@link #setExplainInterval(long, TimeUnit)}.
+ * </p>
+ * <p>
+ * the plan is captured on {@link #setExplainExecutor(Executor)} so that the application thread does not wait for it.
+ * a statement of which plan is being captured is recorded, and passed to the listener, on that thread
+ * after the plan is captured. the other statements are recorded on the application thread.
+ * </p>
+ * <pre><code>
+ * SlowQueryLog log = new SlowQueryLog(dataSource);
+ * log.setThreshold(200, TimeUnit.MILLISECONDS);
+ * log.setListener(query -&gt; System.err.println(query));
+ * conn.addInterceptor(log);
+ * </code></pre>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class SlowQueryLog implements StatementInterceptor {
+
+    /**
+     * receives the slow statements.
+     */
+    public interface Listener {
+        /**
+         * @param query slow statement
+         */
+        void onSlowQuery(SlowQuery query);
+    }
+
+    /** prefix of the sql to get the execution plan */
+    private static final String EXPLAIN = "EXPLAIN ";
+
+    /** name of the context attribute to keep the execution time of a query until it is mapped */
+    private static final String EXECUTE_NANOS = SlowQueryLog.class.getName() + ".executeNanos";
+
+    /** plan and the time when it is captured */
+    private static class Plan {
+        final String text;
+        final long capturedNanos;
+
+        Plan(String text, long capturedNanos) {
+            this.text = text;
+            this.capturedNanos = capturedNanos;
+        }
+    }
+
+    private final DataSource explainSource;
+    private volatile Executor explainExecutor;
+
+    /** whether the database supports EXPLAIN (null until it is examined) */
+    private volatile Boolean explainSupported;
+    private volatile long thresholdNanos = TimeUnit.SECONDS.toNanos(1);
+    private volatile long explainIntervalNanos = TimeUnit.MINUTES.toNanos(1);
+    private volatile Listener listener;
+    private final Map<String, Plan> plans = new ConcurrentHashMap<>();
+    private int maxPlans = 1000;
+    private final Deque<SlowQuery> records = new ArrayDeque<>();
+    private int capacity = 100;
+
+    /**
+     * constructor.
+     *
+     * @param explainSource data source to run EXPLAIN, or null not to capture the plan
+     */
+    public SlowQueryLog(DataSource explainSource) {
+        this.explainSource = explainSource;
+    }
+
+    /**
+     * @param threshold statements which take longer than this are recorded (default 1 second)
+     * @param unit time unit
+     */
+    public void setThreshold(long threshold, TimeUnit unit) {
+        this.thresholdNanos = unit.toNanos(threshold);
+    }
+
+    /**
+     * @param interval the plan of the same fingerprint is captured at most once in this interval (default 1 minute)
+     * @param unit time unit
+     */
+    public void setExplainInterval(long interval, TimeUnit unit) {
+        this.explainIntervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * @param maxPlans max number of cached plans (default 1000). the cache is cleared when it is full.
+     */
+    public void setMaxPlans(int maxPlans) {
+        this.maxPlans = maxPlans;
+    }
+
+    /**
+     * @param explainExecutor executor to capture the plan, or null to use the default daemon thread
+     */
+    public void setExplainExecutor(Executor explainExecutor) {
+        this.explainExecutor = explainExecutor;
+    }
+
+    /**
+     * @param listener receives each slow statement, or null
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param capacity max number of statements kept by {@link #getRecords()} (default 100)
+     */
+    public synchronized void setCapacity(int capacity) {
+        this.capacity = capacity;
+        while (records.size() > capacity) {
+            records.removeFirst();
+        }
+    }
+
+    /**
+     * @return recent slow statements (in order of recording)
+     */
+    public synchronized List<SlowQuery> getRecords() {
+        return new ArrayList<>(records);
+    }
+
+    /**
+     * clear the recorded statements and the cached plans.
+     */
+    public synchronized void clear() {
+        records.clear();
+        plans.clear();
+    }
+
+    @Override
+    public void afterExecute(StatementContext ctx, long startNanos, long endNanos) {
+        if (ctx.getOperation() == StatementContext.Operation.QUERY
+                || ctx.getOperation() == StatementContext.Operation.EXPORT) {
+            // measured with the map phase
+            ctx.setAttribute(EXECUTE_NANOS, endNanos - startNanos);
+        }
+        else {
+            check(ctx, endNanos - startNanos);
+        }
+    }
+
+    @Override
+    public void afterMap(StatementContext ctx, Object result, long startNanos, long endNanos) {
+        Object executeNanos = ctx.getAttribute(EXECUTE_NANOS);
+        if (executeNanos != null) {
+            check(ctx, (Long) executeNanos + endNanos - startNanos);
+        }
+    }
+
+    /**
+     * record the statement when it is slow.
+     *
+     * @param ctx executed statement
+     * @param elapsedNanos time taken
+     */
+    private void check(StatementContext ctx, long elapsedNanos) {
+        if (elapsedNanos < thresholdNanos) {
+            return;
+        }
+        String sql = ctx.getSQL();
+        String fingerprint = ctx.getFingerprint();
+        StatementContext.Operation operation = ctx.getOperation();
+        Object[] params = ctx.getParameters();
+        Object[] copy = params == null ? null : params.clone();
+
+        if (!claim(sql, fingerprint)) {
+            record(new SlowQuery(sql, fingerprint, operation, copy, elapsedNanos, cachedPlan(fingerprint)));
+            return;
+        }
+        Executor executor = explainExecutor;
+        try {
+            (executor != null ? executor : DefaultExecutor.INSTANCE).execute(new Runnable() {
+                @Override
+                public void run() {
+                    String plan = capture(sql, fingerprint, copy);
+                    record(new SlowQuery(sql, fingerprint, operation, copy, elapsedNanos, plan));
+                }
+            });
+        }
+        catch (RejectedExecutionException ex) {
+            record(new SlowQuery(sql, fingerprint, operation, copy, elapsedNanos, cachedPlan(fingerprint)));
+        }
+    }
+
+    /**
+     * @param query slow statement
+     */
+    private void record(SlowQuery query) {
+        synchronized (this) {
+            if (capacity > 0) {
+                if (records.size() >= capacity) {
+                    records.removeFirst();
+                }
+                records.addLast(query);
+            }
+        }
+        Listener l = listener;
+        if (l != null) {
+            l.onSlowQuery(query);
+        }
+    }
+
+    /**
+     * @param fingerprint fingerprint of the sql
+     * @return cached plan, or null
+     */
+    private String cachedPlan(String fingerprint) {
+        Plan cached = plans.get(fingerprint);
+        return cached != null ? cached.text : null;
+    }
+
+    /**
+     * start capturing the plan unless it is cached or another thread is capturing it.
+     *
+     * @param sql executed sql
+     * @param fingerprint fingerprint of the sql
+     * @return true when the caller should capture the plan
+     */
+    private boolean claim(String sql, String fingerprint) {
+        if (explainSource == null || sql == null || Boolean.FALSE.equals(explainSupported)) {
+            return false;
+        }
+        long now = System.nanoTime();
+        Plan cached = plans.get(fingerprint);
+        if (cached != null && now - cached.capturedNanos < explainIntervalNanos) {
+            return false;
+        }
+
+        // keep the old plan while it is captured
+        Plan capturing = new Plan(cached != null ? cached.text : null, now);
+        if (cached != null ? !plans.replace(fingerprint, cached, capturing) : plans.putIfAbsent(fingerprint, capturing) != null) {
+            return false;
+        }
+        if (plans.size() > maxPlans) {
+            plans.clear();
+        }
+        return true;
+    }
+
+    /**
+     * capture the plan and cache it.
+     *
+     * @param sql executed sql
+     * @param fingerprint fingerprint of the sql
+     * @param params bound parameters
+     * @return plan, or null when it is not available
+     */
+    private String capture(String sql, String fingerprint, Object[] params) {
+        String text;
+        try {
+            text = explain(sql, params);
+        }
+        catch (SQLException ex) {
+            text = "EXPLAIN failed: " + ex.getMessage();
+        }
+        plans.put(fingerprint, new Plan(text, System.nanoTime()));
+        return text;
+    }
+
+    /**
+     * run EXPLAIN on the side connection.
+     *
+     * @param sql executed sql
+     * @param params bound parameters
+     * @return plan, or null when the database is not supported
+     * @throws SQLException database error has occurred
+     */
+    private String explain(String sql, Object[] params) throws SQLException {
+        try (Connection conn = explainSource.getConnection()) {
+            if (explainSupported == null) {
+                explainSupported = isSupported(conn.getMetaData().getDatabaseProductName());
+            }
+            if (!explainSupported) {
+                return null;
+            }
+
+            try (PreparedStatement st = conn.prepareStatement(EXPLAIN + sql)) {
+                StatementHandle h = new StatementHandle(st);
+                StringBuilder buf = new StringBuilder();
+                try {
+                    if (params != null) {
+                        for (int ix = 0; ix < params.length; ix++) {
+                            h.bind(ix + 1, params[ix]);
+                        }
+                    }
+                    try (ResultSet rs = st.executeQuery()) {
+                        int columnCount = rs.getMetaData().getColumnCount();
+                        while (rs.next()) {
+                            if (buf.length() > 0) {
+                                buf.append('\n');
+                            }
+                            for (int ix = 1; ix <= columnCount; ix++) {
+                                if (ix > 1) {
+                                    buf.append('\t');
+                                }
+                                buf.append(rs.getString(ix));
+                            }
+                        }
+                    }
+                }
+                finally {
+                    h.release();
+                }
+                return buf.toString();
+            }
+        }
+    }
+
+    /**
+     * @param productName {@link java.sql.DatabaseMetaData#getDatabaseProductName()}
+     * @return true when the database returns the plan by {@code EXPLAIN sql}
+     */
+    private static boolean isSupported(String productName) {
+        String name = productName.toLowerCase();
+        return name.startsWith("h2") || name.startsWith("postgresql")
+                || name.startsWith("mysql") || name.startsWith("mariadb");
+    }
+
+    /**
+     * captures the plans on a daemon thread.
+     */
+    private static class DefaultExecutor {
+        static final ExecutorService INSTANCE = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "dbutils3-explain");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,176 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.tamurashingo.dbutils3.parser.ParamSlots;
+
+/**
+ * the statement passed to {@link StatementInterceptor}.
+ * one instance is reused by every execution of a {@link DBConnectionUtil}.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class StatementContext {
+
+    /**
+     * phase or kind of the execution.
+     */
+    public enum Operation {
+        /** precompile */
+        PREPARE,
+        /** executeQuery* */
+        QUERY,
+        /** executeUpdate* */
+        UPDATE,
+        /** executeBatch* and executeInsert* */
+        BATCH,
+        /** export* */
+        EXPORT
+    }
+
+    private final DBConnectionUtil conn;
+    private Operation operation;
+    private Class<?> beanClass;
+    private Object[] parameters;
+    private ParamSlots slots;
+    private long rowCount;
+    private Map<String, Object> attributes;
+
+    StatementContext(DBConnectionUtil conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * start the new execution.
+     */
+    void reset() {
+        this.operation = null;
+        this.beanClass = null;
+        this.parameters = null;
+        this.slots = null;
+        this.rowCount = -1;
+        if (attributes != null) {
+            attributes.clear();
+        }
+    }
+
+    void setOperation(Operation operation, Class<?> beanClass) {
+        this.operation = operation;
+        this.beanClass = beanClass;
+    }
+
+    void setParameters(Object[] parameters) {
+        this.parameters = parameters;
+        this.slots = null;
+    }
+
+    void setParameters(ParamSlots slots) {
+        this.parameters = null;
+        this.slots = slots;
+    }
+
+    void setRowCount(long rowCount) {
+        this.rowCount = rowCount;
+    }
+
+    /**
+     * @return connection executing the statement
+     */
+    public DBConnectionUtil getConnectionUtil() {
+        return conn;
+    }
+
+    /**
+     * @return precompiled sql
+     */
+    public String getSQL() {
+        return conn.preparedSQL();
+    }
+
+    /**
+     * @return normalized sql (see {@link com.github.tamurashingo.dbutils3.parser.SQLFingerprint})
+     */
+    public String getFingerprint() {
+        return conn.fingerprint();
+    }
+
+    /**
+     * @return operation, or null while the parameters are bound
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return bean class of the result, or null
+     */
+    public Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    /**
+     * @return parameters set to the placeholders, or null when no parameter is set yet
+     */
+    public Object[] getParameters() {
+        if (parameters == null && slots != null) {
+            parameters = new Object[slots.size()];
+            for (int ix = 0; ix < parameters.length; ix++) {
+                parameters[ix] = slots.getParameter(ix + 1);
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * @return update count, the number of rows, or -1 when unknown
+     */
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * keep a value until the next execution, e.g. to pass it from before* to after*.
+     *
+     * @param name name
+     * @param value value
+     */
+    public void setAttribute(String name, Object value) {
+        if (attributes == null) {
+            attributes = new HashMap<>();
+        }
+        attributes.put(name, value);
+    }
+
+    /**
+     * @param name name
+     * @return value set by {@link #setAttribute(String, Object)}, or null
+     */
+    public Object getAttribute(String name) {
+        return attributes != null ? attributes.get(name) : null;
+    }
+}
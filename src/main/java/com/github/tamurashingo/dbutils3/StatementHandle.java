@@ -0,0 +1,148 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.sql.Array;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.tamurashingo.dbutils3.ParameterBinder.ArrayBinder;
+
+/**
+ * {@link PreparedStatement} and the {@link ParameterBinder} cached for each parameter.
+ *
+ * <p>
+ * the binder of a parameter is selected from the Java type of the first non-null value.
+ * when a value of another type is bound to the same parameter later,
+ * the parameter falls back to {@link PreparedStatement#setObject(int, Object)}.
+ * </p>
+ * <p>
+ * SQL ARRAY values created for {@link ArrayParam} are kept until {@link #release()}
+ * because a batch may refer to the arrays of all rows.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+class StatementHandle {
+
+    /** prepared statement */
+    private final PreparedStatement stmt;
+
+    /** binder for each parameter (0-origin) */
+    private ParameterBinder[] binders = new ParameterBinder[8];
+
+    /** parameter metadata to bind null */
+    private ParameterMetaData pmd;
+
+    /** arrays created by binding, or null */
+    private List<Array> arrays;
+
+    /**
+     * constructor.
+     *
+     * @param stmt prepared statement
+     */
+    StatementHandle(PreparedStatement stmt) {
+        this.stmt = stmt;
+    }
+
+    /**
+     * @return prepared statement
+     */
+    PreparedStatement getStatement() {
+        return stmt;
+    }
+
+    /**
+     * set a parameter to the prepared statement.
+     *
+     * @param ix parameter index (1-origin)
+     * @param value parameter value
+     * @throws SQLException database error has occurred
+     */
+    void bind(int ix, Object value) throws SQLException {
+        if (value == null) {
+            if (pmd == null) {
+                pmd = stmt.getParameterMetaData();
+            }
+            stmt.setNull(ix, pmd.getParameterType(ix));
+            return;
+        }
+
+        if (ix > binders.length) {
+            binders = Arrays.copyOf(binders, Math.max(ix, binders.length * 2));
+        }
+        ParameterBinder binder = binders[ix - 1];
+        if (binder == null) {
+            binder = ParameterBinder.forValue(value);
+            binders[ix - 1] = binder;
+        }
+        else if (!binder.accepts(value)) {
+            binder = ParameterBinder.OBJECT;
+            binders[ix - 1] = binder;
+        }
+        if (value instanceof ArrayParam) {
+            // also when the parameter has fallen back to setObject
+            if (arrays == null) {
+                arrays = new ArrayList<>();
+            }
+            arrays.add(ArrayBinder.bindArray(stmt, ix, value));
+        }
+        else {
+            binder.bind(stmt, ix, value);
+        }
+    }
+
+    /**
+     * free the arrays created by binding.
+     * call after the statement is executed.
+     */
+    void release() {
+        if (arrays == null) {
+            return;
+        }
+        for (Array array: arrays) {
+            try {
+                array.free();
+            }
+            catch (SQLException ex) {
+                // nothing to do
+            }
+        }
+        arrays = null;
+    }
+
+    /**
+     * @param ix parameter index (1-origin)
+     * @return binder cached for the parameter, or null
+     */
+    ParameterBinder getBinder(int ix) {
+        return ix <= binders.length ? binders[ix - 1] : null;
+    }
+}
@@ -0,0 +1,146 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.sql.SQLException;
+
+/**
+ * hooks around the phases of {@link DBConnectionUtil}: prepare, bind, execute and map.
+ *
+ * <p>
+ * interceptors are registered by {@link DBConnectionUtil#addInterceptor(StatementInterceptor)}.
+ * {@code before*} hooks are called in order of registration, and {@code after*} hooks in reverse order.
+ * the timestamps are {@link System#nanoTime()} taken just before and after the phase.
+ * </p>
+ * <pre><code>
+ * conn.addInterceptor(new StatementInterceptor() {
+ *     &#064;Override
+ *     public void afterExecute(StatementContext ctx, long startNanos, long endNanos) {
+ *         histogram(ctx.getFingerprint()).record(endNanos - startNanos);
+ *     }
+ * });
+ * </code></pre>
+ * <p>
+ * the {@link StatementContext} is reused by the next execution.
+ * do not keep it after the hook returns.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public interface StatementInterceptor {
+
+    /**
+     * called before the sql is precompiled.
+     *
+     * @param ctx context ({@link StatementContext#getOperation()} is PREPARE)
+     */
+    default void beforePrepare(StatementContext ctx) {
+    }
+
+    /**
+     * called after the sql is precompiled.
+     *
+     * @param ctx context
+     * @param startNanos start of the phase
+     * @param endNanos end of the phase
+     */
+    default void afterPrepare(StatementContext ctx, long startNanos, long endNanos) {
+    }
+
+    /**
+     * called before the parameters are set to the statement.
+     *
+     * @param ctx context ({@link StatementContext#getParameters()} is available)
+     */
+    default void beforeBind(StatementContext ctx) {
+    }
+
+    /**
+     * called after the parameters are set to the statement.
+     *
+     * @param ctx context
+     * @param startNanos start of the phase
+     * @param endNanos end of the phase
+     */
+    default void afterBind(StatementContext ctx, long startNanos, long endNanos) {
+    }
+
+    /**
+     * called before the statement is executed.
+     *
+     * <p>
+     * return non-null value to skip the execution and use it as the result:
+     * {@link java.util.List} of the result rows (Map or bean, as the called method returns)
+     * for QUERY, {@link Integer} for UPDATE and {@code int[]} for BATCH.
+     * the value is ignored for EXPORT.
+     * the remaining interceptors and the map phase are skipped.
+     * </p>
+     *
+     * @param ctx context
+     * @return the result to short-circuit, or null to execute
+     */
+    default Object beforeExecute(StatementContext ctx) {
+        return null;
+    }
+
+    /**
+     * called after the statement is executed.
+     * for QUERY, this is when the result set is returned, before the rows are read.
+     *
+     * @param ctx context ({@link StatementContext#getRowCount()} is the update count for UPDATE and BATCH)
+     * @param startNanos start of the phase
+     * @param endNanos end of the phase
+     */
+    default void afterExecute(StatementContext ctx, long startNanos, long endNanos) {
+    }
+
+    /**
+     * called when the execution fails.
+     *
+     * @param ctx context
+     * @param ex the error
+     */
+    default void onError(StatementContext ctx, SQLException ex) {
+    }
+
+    /**
+     * called before the rows are read and mapped.
+     *
+     * @param ctx context
+     */
+    default void beforeMap(StatementContext ctx) {
+    }
+
+    /**
+     * called after the rows are read and mapped.
+     *
+     * @param ctx context ({@link StatementContext#getRowCount()} is the number of rows)
+     * @param result {@link java.util.List} of the rows, or {@link Long} the number of rows (bytes for {@link LobTransfer}) for EXPORT
+     * @param startNanos start of the phase
+     * @param endNanos end of the phase
+     */
+    default void afterMap(StatementContext ctx, Object result, long startNanos, long endNanos) {
+    }
+}
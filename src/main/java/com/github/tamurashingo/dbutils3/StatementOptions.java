@@ -0,0 +1,280 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * options to prepare the statement.
+ *
+ * <pre><code>
+ * StatementOptions options = new StatementOptions();
+ * options.setFetchSize(500);
+ * options.setMaxRows(10000);
+ * options.setQueryTimeout(30);
+ * conn.prepareWithParam("select * from event where created &gt;= :from", options);
+ * </code></pre>
+ *
+ * <p>
+ * when {@link #setAdaptiveFetchBudget(long)} is set, the fetch size is estimated
+ * from {@link java.sql.ResultSetMetaData} and the observed size of rows
+ * so that one fetch does not exceed the budget.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class StatementOptions {
+
+    private int fetchSize = 0;
+    private int maxRows = 0;
+    private int queryTimeout = 0;
+    private int resultSetType = ResultSet.TYPE_FORWARD_ONLY;
+    private int resultSetConcurrency = ResultSet.CONCUR_READ_ONLY;
+    private int autoGeneratedKeys = Statement.NO_GENERATED_KEYS;
+    private long adaptiveFetchBudget = 0;
+    private int minFetchSize = 10;
+    private int maxFetchSize = 10000;
+    private int readAheadRows = 0;
+    private Executor readAheadExecutor;
+    private int parallelMappingThreshold = 0;
+    private ForkJoinPool mappingPool;
+
+    /**
+     * @return fetch size. 0 means the driver default.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * @param fetchSize fetch size. 0 means the driver default.
+     */
+    public void setFetchSize(int fetchSize) {
+        if (fetchSize < 0) {
+            throw new IllegalArgumentException("fetchSize must not be negative:" + fetchSize);
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @return max number of rows. 0 means no limit.
+     */
+    public int getMaxRows() {
+        return maxRows;
+    }
+
+    /**
+     * @param maxRows max number of rows. 0 means no limit.
+     */
+    public void setMaxRows(int maxRows) {
+        if (maxRows < 0) {
+            throw new IllegalArgumentException("maxRows must not be negative:" + maxRows);
+        }
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * @return query timeout in seconds. 0 means no limit.
+     */
+    public int getQueryTimeout() {
+        return queryTimeout;
+    }
+
+    /**
+     * the remaining time of {@link Deadline} is used instead when it is shorter.
+     *
+     * @param queryTimeout query timeout in seconds. 0 means no limit.
+     */
+    public void setQueryTimeout(int queryTimeout) {
+        if (queryTimeout < 0) {
+            throw new IllegalArgumentException("queryTimeout must not be negative:" + queryTimeout);
+        }
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * @return result set type (default {@link ResultSet#TYPE_FORWARD_ONLY})
+     */
+    public int getResultSetType() {
+        return resultSetType;
+    }
+
+    /**
+     * @param resultSetType {@link ResultSet#TYPE_FORWARD_ONLY}, {@link ResultSet#TYPE_SCROLL_INSENSITIVE}
+     *        or {@link ResultSet#TYPE_SCROLL_SENSITIVE}
+     */
+    public void setResultSetType(int resultSetType) {
+        this.resultSetType = resultSetType;
+    }
+
+    /**
+     * @return result set concurrency (default {@link ResultSet#CONCUR_READ_ONLY})
+     */
+    public int getResultSetConcurrency() {
+        return resultSetConcurrency;
+    }
+
+    /**
+     * @param resultSetConcurrency {@link ResultSet#CONCUR_READ_ONLY} or {@link ResultSet#CONCUR_UPDATABLE}
+     */
+    public void setResultSetConcurrency(int resultSetConcurrency) {
+        this.resultSetConcurrency = resultSetConcurrency;
+    }
+
+    /**
+     * @return {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     */
+    public int getAutoGeneratedKeys() {
+        return autoGeneratedKeys;
+    }
+
+    /**
+     * JDBC cannot request generated keys together with result set type and concurrency,
+     * so they are ignored when {@link Statement#RETURN_GENERATED_KEYS} is set.
+     *
+     * @param autoGeneratedKeys {@link Statement#RETURN_GENERATED_KEYS} or {@link Statement#NO_GENERATED_KEYS}
+     */
+    public void setAutoGeneratedKeys(int autoGeneratedKeys) {
+        this.autoGeneratedKeys = autoGeneratedKeys;
+    }
+
+    /**
+     * @return bytes which one fetch targets. 0 means adaptive fetch size is disabled.
+     */
+    public long getAdaptiveFetchBudget() {
+        return adaptiveFetchBudget;
+    }
+
+    /**
+     * enable adaptive fetch size.
+     *
+     * @param adaptiveFetchBudget bytes which one fetch targets. 0 disables adaptive fetch size.
+     */
+    public void setAdaptiveFetchBudget(long adaptiveFetchBudget) {
+        if (adaptiveFetchBudget < 0) {
+            throw new IllegalArgumentException("adaptiveFetchBudget must not be negative:" + adaptiveFetchBudget);
+        }
+        this.adaptiveFetchBudget = adaptiveFetchBudget;
+    }
+
+    /**
+     * @return lower limit of adaptive fetch size (default 10)
+     */
+    public int getMinFetchSize() {
+        return minFetchSize;
+    }
+
+    /**
+     * @return upper limit of adaptive fetch size (default 10000)
+     */
+    public int getMaxFetchSize() {
+        return maxFetchSize;
+    }
+
+    /**
+     * @param minFetchSize lower limit of adaptive fetch size
+     * @param maxFetchSize upper limit of adaptive fetch size
+     */
+    public void setFetchSizeRange(int minFetchSize, int maxFetchSize) {
+        if (minFetchSize < 1 || maxFetchSize < minFetchSize) {
+            throw new IllegalArgumentException("invalid range:" + minFetchSize + "-" + maxFetchSize);
+        }
+        this.minFetchSize = minFetchSize;
+        this.maxFetchSize = maxFetchSize;
+    }
+
+    /**
+     * @return max number of rows read ahead. 0 means read-ahead is disabled.
+     */
+    public int getReadAheadRows() {
+        return readAheadRows;
+    }
+
+    /**
+     * enable read-ahead for the queries which return beans.
+     * another thread reads the rows into a buffer of this size while the caller maps them to beans.
+     *
+     * @param readAheadRows max number of rows read ahead. 0 disables read-ahead.
+     */
+    public void setReadAheadRows(int readAheadRows) {
+        if (readAheadRows < 0) {
+            throw new IllegalArgumentException("readAheadRows must not be negative:" + readAheadRows);
+        }
+        this.readAheadRows = readAheadRows;
+    }
+
+    /**
+     * @return executor to read ahead, or null to use the default daemon threads
+     */
+    public Executor getReadAheadExecutor() {
+        return readAheadExecutor;
+    }
+
+    /**
+     * @param readAheadExecutor executor to read ahead, or null to use the default daemon threads
+     */
+    public void setReadAheadExecutor(Executor readAheadExecutor) {
+        this.readAheadExecutor = readAheadExecutor;
+    }
+
+    /**
+     * @return min number of rows to map to beans in parallel. 0 means parallel mapping is disabled.
+     */
+    public int getParallelMappingThreshold() {
+        return parallelMappingThreshold;
+    }
+
+    /**
+     * enable parallel mapping for the queries which return beans.
+     * the rows are read in order, and when there are at least this number of rows,
+     * they are mapped to beans in chunks on {@link ForkJoinPool}.
+     * the values of all rows are kept until the mapping ends.
+     *
+     * @param parallelMappingThreshold min number of rows to map in parallel. 0 disables parallel mapping.
+     */
+    public void setParallelMappingThreshold(int parallelMappingThreshold) {
+        if (parallelMappingThreshold < 0) {
+            throw new IllegalArgumentException("parallelMappingThreshold must not be negative:" + parallelMappingThreshold);
+        }
+        this.parallelMappingThreshold = parallelMappingThreshold;
+    }
+
+    /**
+     * @return pool to map in parallel, or null to use {@link ForkJoinPool#commonPool()}
+     */
+    public ForkJoinPool getMappingPool() {
+        return mappingPool;
+    }
+
+    /**
+     * @param mappingPool pool to map in parallel, or null to use {@link ForkJoinPool#commonPool()}
+     */
+    public void setMappingPool(ForkJoinPool mappingPool) {
+        this.mappingPool = mappingPool;
+    }
+}
@@ -0,0 +1,106 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * counters of {@link TransactionTemplate}.
+ * they can be shared by several templates and read from any thread.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class TransactionMetrics {
+
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong exhausted = new AtomicLong();
+    private final AtomicLong[] retries = new AtomicLong[TransactionTemplate.RetryReason.values().length];
+
+    /**
+     * constructor.
+     */
+    public TransactionMetrics() {
+        for (int ix = 0; ix < retries.length; ix++) {
+            retries[ix] = new AtomicLong();
+        }
+    }
+
+    void commit() {
+        commits.incrementAndGet();
+    }
+
+    void failure() {
+        failures.incrementAndGet();
+    }
+
+    void exhausted() {
+        exhausted.incrementAndGet();
+    }
+
+    void retry(TransactionTemplate.RetryReason reason) {
+        retries[reason.ordinal()].incrementAndGet();
+    }
+
+    /**
+     * @return the number of committed transactions
+     */
+    public long getCommits() {
+        return commits.get();
+    }
+
+    /**
+     * @return the number of transactions which failed (including {@link #getExhausted()})
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return the number of transactions which failed after all retries
+     */
+    public long getExhausted() {
+        return exhausted.get();
+    }
+
+    /**
+     * @param reason reason of retry
+     * @return the number of retries for the reason
+     */
+    public long getRetries(TransactionTemplate.RetryReason reason) {
+        return retries[reason.ordinal()].get();
+    }
+
+    /**
+     * @return the number of retries for all reasons
+     */
+    public long getRetries() {
+        long total = 0;
+        for (AtomicLong count: retries) {
+            total += count.get();
+        }
+        return total;
+    }
+}
@@ -0,0 +1,383 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * execute a unit of work in a transaction, and retry it on deadlocks,
+ * serialization failures and lock timeouts.
+ *
+ * <pre><code>
+ * TransactionTemplate tx = new TransactionTemplate(conn);
+ * int count = tx.execute(new TransactionCallback&lt;Integer&gt;() {
+ *     public Integer doInTransaction(DBConnectionUtil conn) throws SQLException {
+ *         conn.prepareWithParam("update account set balance = balance - :amount where id = :id");
+ *         return conn.executeUpdateWithParam(params);
+ *     }
+ * });
+ * </code></pre>
+ *
+ * <p>
+ * the wait before each retry is chosen at random between 0 and
+ * {@code min(maxBackoff, initialBackoff * 2^attempt)} so that the conflicting
+ * transactions do not collide again. no retry is made after {@link Deadline} has passed.
+ * </p>
+ * <p>
+ * when auto-commit is already off, the callback joins the transaction of the caller:
+ * it is executed once, and neither committed, rolled back nor retried by the template.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class TransactionTemplate {
+
+    /**
+     * reason of retry.
+     */
+    public enum RetryReason {
+        /** deadlock detected */
+        DEADLOCK,
+        /** serialization failure of the isolation level */
+        SERIALIZATION_FAILURE,
+        /** lock wait timeout */
+        LOCK_TIMEOUT
+    }
+
+    private final DBConnectionUtil conn;
+    private int maxRetries = 3;
+    private long initialBackoffMillis = 10;
+    private long maxBackoffMillis = 1000;
+    private TransactionMetrics metrics = new TransactionMetrics();
+
+    /** database product name to classify vendor error codes (read on first failure) */
+    private String databaseProductName;
+
+    /**
+     * constructor.
+     *
+     * @param conn connection to execute the transaction
+     */
+    public TransactionTemplate(DBConnectionUtil conn) {
+        this.conn = conn;
+    }
+
+    /**
+     * @param maxRetries max number of retries (default 3)
+     */
+    public void setMaxRetries(int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative:" + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * @param initialBackoffMillis upper limit of the first wait in milliseconds (default 10)
+     * @param maxBackoffMillis upper limit of the wait in milliseconds (default 1000)
+     */
+    public void setBackoff(long initialBackoffMillis, long maxBackoffMillis) {
+        if (initialBackoffMillis < 0 || maxBackoffMillis < initialBackoffMillis) {
+            throw new IllegalArgumentException("invalid backoff:" + initialBackoffMillis + "-" + maxBackoffMillis);
+        }
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    /**
+     * @param metrics counters to record (to share them by several templates)
+     */
+    public void setMetrics(TransactionMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return counters of this template
+     */
+    public TransactionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * execute the callback in a transaction.
+     * the transaction is committed when the callback returns,
+     * and rolled back when it throws.
+     * auto-commit mode is restored at the end.
+     * when auto-commit is off, the callback is executed once in the transaction of the caller.
+     *
+     * @param callback unit of work
+     * @param <T> result type
+     * @return result of the callback
+     * @throws SQLException the error is not retryable, or retries are exhausted
+     */
+    public <T> T execute(TransactionCallback<T> callback) throws SQLException {
+        Connection connection = conn.getConnection();
+        if (!connection.getAutoCommit()) {
+            // the transaction is owned by the caller
+            return callback.doInTransaction(conn);
+        }
+        connection.setAutoCommit(false);
+        Throwable failure = null;
+        try {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    T result = callback.doInTransaction(conn);
+                    conn.commit();
+                    metrics.commit();
+                    return result;
+                }
+                catch (SQLException ex) {
+                    rollbackQuietly(ex);
+                    RetryReason reason = classify(ex, databaseProductName());
+                    if (reason == null) {
+                        metrics.failure();
+                        throw ex;
+                    }
+                    if (attempt >= maxRetries || !backoff(attempt)) {
+                        metrics.failure();
+                        metrics.exhausted();
+                        throw ex;
+                    }
+                    metrics.retry(reason);
+                }
+                catch (RuntimeException | Error ex) {
+                    rollbackQuietly(ex);
+                    metrics.failure();
+                    throw ex;
+                }
+            }
+        }
+        catch (SQLException | RuntimeException | Error ex) {
+            failure = ex;
+            throw ex;
+        }
+        finally {
+            restoreAutoCommit(connection, failure);
+        }
+    }
+
+    /**
+     * turn auto-commit mode on again.
+     * when the transaction has failed, the error of this is added to it as suppressed.
+     *
+     * @param connection connection
+     * @param failure exception thrown by the transaction, or null
+     * @throws SQLException database error has occurred, and the transaction has not failed
+     */
+    private static void restoreAutoCommit(Connection connection, Throwable failure) throws SQLException {
+        try {
+            connection.setAutoCommit(true);
+        }
+        catch (SQLException | RuntimeException ex) {
+            if (failure == null) {
+                throw ex;
+            }
+            failure.addSuppressed(ex);
+        }
+    }
+
+    /**
+     * classify the exception by SQLState and vendor error code.
+     * the error codes which mean different errors by database are not classified by the vendor.
+     *
+     * @param ex exception
+     * @return reason of retry, or null when the exception is not retryable
+     * @see #classify(SQLException, String)
+     */
+    public static RetryReason classify(SQLException ex) {
+        return classify(ex, null);
+    }
+
+    /**
+     * classify the exception by SQLState and vendor error code of the database.
+     * chained exceptions ({@link SQLException#getNextException()} and causes) are also examined.
+     *
+     * @param ex exception
+     * @param databaseProductName {@link DatabaseMetaData#getDatabaseProductName()}, or null when it is unknown
+     * @return reason of retry, or null when the exception is not retryable
+     */
+    public static RetryReason classify(SQLException ex, String databaseProductName) {
+        Vendor vendor = Vendor.of(databaseProductName);
+        for (Throwable t = ex; t != null; t = next(t)) {
+            if (!(t instanceof SQLException)) {
+                continue;
+            }
+            RetryReason reason = classifyOne((SQLException)t, vendor);
+            if (reason != null) {
+                return reason;
+            }
+        }
+        return null;
+    }
+
+    private static Throwable next(Throwable t) {
+        if (t instanceof SQLException) {
+            SQLException nextException = ((SQLException)t).getNextException();
+            if (nextException != null) {
+                return nextException;
+            }
+        }
+        return t.getCause() != t ? t.getCause() : null;
+    }
+
+    /**
+     * vendor error codes are examined only with the SQLState the vendor reports them.
+     */
+    private static RetryReason classifyOne(SQLException ex, Vendor vendor) {
+        String state = ex.getSQLState();
+        if (state == null) {
+            return null;
+        }
+        int code = ex.getErrorCode();
+
+        switch (state) {
+        case "40P01":
+            // PostgreSQL deadlock_detected
+            return RetryReason.DEADLOCK;
+        case "40001":
+            // MySQL ER_LOCK_DEADLOCK
+            if (code == 1213) {
+                return RetryReason.DEADLOCK;
+            }
+            // SQL Server deadlock victim, or lock wait timeout of MySQL Connector/J
+            if (code == 1205 && vendor == Vendor.SQLSERVER) {
+                return RetryReason.DEADLOCK;
+            }
+            if (code == 1205 && vendor == Vendor.MYSQL) {
+                return RetryReason.LOCK_TIMEOUT;
+            }
+            return RetryReason.SERIALIZATION_FAILURE;
+        case "61000":
+            // Oracle ORA-00060
+            return code == 60 ? RetryReason.DEADLOCK : null;
+        case "72000":
+            // Oracle ORA-08177
+            return code == 8177 ? RetryReason.SERIALIZATION_FAILURE : null;
+        case "55P03":
+            // PostgreSQL lock_not_available
+            return RetryReason.LOCK_TIMEOUT;
+        case "HY000":
+            // MySQL ER_LOCK_WAIT_TIMEOUT (MariaDB and the server)
+            return code == 1205 ? RetryReason.LOCK_TIMEOUT : null;
+        case "HYT00":
+            // H2 LOCK_TIMEOUT_1
+            return code == 50200 ? RetryReason.LOCK_TIMEOUT : null;
+        default:
+            return null;
+        }
+    }
+
+    /**
+     * @return database product name, or null when it is not available
+     */
+    private String databaseProductName() {
+        if (databaseProductName == null) {
+            try {
+                databaseProductName = conn.getConnection().getMetaData().getDatabaseProductName();
+            }
+            catch (SQLException ex) {
+                return null;
+            }
+        }
+        return databaseProductName;
+    }
+
+    /**
+     * database of which error codes collide with the others.
+     */
+    private enum Vendor {
+        MYSQL,
+        SQLSERVER,
+        OTHER;
+
+        static Vendor of(String databaseProductName) {
+            if (databaseProductName == null) {
+                return OTHER;
+            }
+            if (databaseProductName.startsWith("MySQL") || databaseProductName.startsWith("MariaDB")) {
+                return MYSQL;
+            }
+            if (databaseProductName.startsWith("Microsoft SQL Server")) {
+                return SQLSERVER;
+            }
+            return OTHER;
+        }
+    }
+
+    /**
+     * wait before the retry.
+     *
+     * @param attempt the number of attempts so far (0-origin)
+     * @return false when the retry should not be made
+     */
+    private boolean backoff(int attempt) {
+        long limit = backoffLimit(initialBackoffMillis, maxBackoffMillis, attempt);
+        long wait = limit > 0 ? ThreadLocalRandom.current().nextLong(limit < Long.MAX_VALUE ? limit + 1 : limit) : 0;
+
+        Deadline deadline = Deadline.current();
+        if (deadline != null && deadline.remaining(TimeUnit.MILLISECONDS) <= wait) {
+            return false;
+        }
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            }
+            catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * {@code min(max, initial * 2^attempt)} without overflow.
+     *
+     * @param initial upper limit of the first wait
+     * @param max upper limit of the wait
+     * @param attempt the number of attempts so far (0-origin)
+     * @return upper limit of the wait
+     */
+    static long backoffLimit(long initial, long max, int attempt) {
+        long limit = Math.min(initial, max);
+        for (int ix = 0; ix < attempt && limit < max; ix++) {
+            limit = limit > max / 2 ? max : limit * 2;
+        }
+        return limit;
+    }
+
+    private void rollbackQuietly(Throwable cause) {
+        try {
+            conn.rollback();
+        }
+        catch (SQLException ex) {
+            cause.addSuppressed(ex);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.parser;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.github.tamurashingo.dbutils3.Param;
+
+/**
+ * reusable, array-backed parameter holder for an analyzed sql.
+ *
+ * <p>
+ * each distinct named parameter owns one slot.
+ * a name which appears several times in the sql (e.g. {@code :today}) is
+ * set only once and bound to every placeholder that refers to it.
+ * </p>
+ * <pre><code>
+ * SQLParser parser = new SQLParser();
+ * parser.analyzeSQL("select * from table where start_ymd &lt;= :today and :today &lt;= end_ymd and id = :id");
+ * ParamSlots slots = parser.newParamSlots();
+ * int id = slots.slotIndex("id");
+ *
+ * slots.set("today", "20150830");
+ * for (int ix = 0; ix &lt; 100; ix++) {
+ *     slots.set(id, ix);
+ *     List&lt;TableBean&gt; result = conn.executeQueryWithParam(TableBean.class, slots);
+ * }
+ * </code></pre>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class ParamSlots {
+
+    /** slot names (distinct named parameters in order of first appearance) */
+    private final String[] names;
+
+    /** placeholder (0-origin) to slot */
+    private final int[] slotOf;
+
+    /** slot values */
+    private final Object[] values;
+
+    /**
+     * constructor.
+     *
+     * @param names slot names
+     * @param slotOf slot index for each placeholder
+     */
+    ParamSlots(List<String> names, int[] slotOf) {
+        this.names = names.toArray(new String[names.size()]);
+        this.slotOf = slotOf;
+        this.values = new Object[this.names.length];
+    }
+
+    /**
+     * @return the number of placeholders in the analyzed sql
+     */
+    public int size() {
+        return slotOf.length;
+    }
+
+    /**
+     * @return the number of distinct named parameters
+     */
+    public int slotCount() {
+        return names.length;
+    }
+
+    /**
+     * resolve the slot index of the named parameter.
+     *
+     * @param name parameter name without colon
+     * @return slot index, or -1 when the sql does not contain the name
+     */
+    public int slotIndex(String name) {
+        for (int ix = 0; ix < names.length; ix++) {
+            if (names[ix].equals(name)) {
+                return ix;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param slot slot index
+     * @return parameter name of the slot
+     */
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * set the value to the slot.
+     *
+     * @param slot slot index
+     * @param value parameter value
+     * @return this
+     */
+    public ParamSlots set(int slot, Object value) {
+        values[slot] = value;
+        return this;
+    }
+
+    /**
+     * set the value to the slot of the named parameter.
+     *
+     * @param name parameter name without colon
+     * @param value parameter value
+     * @return this
+     * @throws IllegalArgumentException the sql does not contain the name
+     */
+    public ParamSlots set(String name, Object value) {
+        int slot = slotIndex(name);
+        if (slot < 0) {
+            throw new IllegalArgumentException("unknown parameter:" + name);
+        }
+        values[slot] = value;
+        return this;
+    }
+
+    /**
+     * set all slots from {@link Param}.
+     * the slot is set to null when the param does not contain its name.
+     *
+     * @param params named parameters and values
+     * @return this
+     */
+    public ParamSlots set(Param params) {
+        for (int ix = 0; ix < names.length; ix++) {
+            values[ix] = params.get(names[ix]);
+        }
+        return this;
+    }
+
+    /**
+     * @param slot slot index
+     * @return value of the slot
+     */
+    public Object get(int slot) {
+        return values[slot];
+    }
+
+    /**
+     * get the value bound to the placeholder.
+     *
+     * @param parameterIndex placeholder index (1-origin, same as {@link java.sql.PreparedStatement})
+     * @return parameter value
+     */
+    public Object getParameter(int parameterIndex) {
+        return values[slotOf[parameterIndex - 1]];
+    }
+
+    /**
+     * set null to all slots.
+     *
+     * @return this
+     */
+    public ParamSlots clear() {
+        Arrays.fill(values, null);
+        return this;
+    }
+}
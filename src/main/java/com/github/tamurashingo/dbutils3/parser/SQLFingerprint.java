@@ -0,0 +1,111 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.parser;
+
+import java.util.regex.Pattern;
+
+import org.antlr.v4.runtime.ANTLRInputStream;
+import org.antlr.v4.runtime.Token;
+
+/**
+ * normalize sql to identify the statements which differ only in literals and parameters.
+ *
+ * <p>example.</p>
+ * <pre><code>
+ * SQLFingerprint.of("SELECT * FROM user WHERE id = 3 and name = 'foo'");
+ * // select * from user where id = ? and name = ?
+ * SQLFingerprint.of("select * from user where id in (:id1, :id2, :id3)");
+ * // select * from user where id in (?)
+ * </code></pre>
+ *
+ * <ul>
+ *   <li>keywords and identifiers are lowercased</li>
+ *   <li>string and number literals, placeholders and named parameters become {@code ?}</li>
+ *   <li>lists of {@code ?} and lists of {@code (?)} are collapsed into one</li>
+ *   <li>white spaces and newlines are collapsed into one space</li>
+ * </ul>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public final class SQLFingerprint {
+
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\?(?: ?, ?\\?)+");
+    private static final Pattern ROW_LIST = Pattern.compile("\\( ?\\? ?\\)(?: ?, ?\\( ?\\? ?\\))+");
+
+    private SQLFingerprint() {
+    }
+
+    /**
+     * @param sql sql string
+     * @return normalized sql
+     */
+    public static String of(String sql) {
+        SQLLexer l = new SQLLexer(new ANTLRInputStream(sql.replace('\r', ' ').replace('\n', ' ')));
+        l.removeErrorListeners();
+        StringBuilder buf = new StringBuilder(sql.length());
+
+        boolean inWord = false;
+        boolean inNumber = false;
+        for (Token token = l.nextToken(); token.getType() != SQLLexer.EOF; token = l.nextToken()) {
+            int type = token.getType();
+            String text = token.getText();
+
+            if (type == SQLLexer.NUMBER && inWord) {
+                buf.append(text);
+                continue;
+            }
+            if (type == SQLLexer.NUMBER || (inNumber && ".".equals(text))) {
+                if (!inNumber) {
+                    buf.append('?');
+                    inNumber = true;
+                }
+                continue;
+            }
+            inNumber = false;
+            inWord = type == SQLLexer.ALPHA;
+
+            switch (type) {
+            case SQLLexer.ALPHA:
+                buf.append(Character.toLowerCase(text.charAt(0)));
+                break;
+            case SQLLexer.QUOTELITERAL:
+            case SQLLexer.NAMED_PARAM:
+                buf.append('?');
+                break;
+            case SQLLexer.WS:
+                if (buf.length() > 0 && buf.charAt(buf.length() - 1) != ' ') {
+                    buf.append(' ');
+                }
+                break;
+            default:
+                buf.append(text);
+            }
+        }
+
+        String fingerprint = buf.toString().trim();
+        fingerprint = PLACEHOLDER_LIST.matcher(fingerprint).replaceAll("?");
+        return ROW_LIST.matcher(fingerprint).replaceAll("(?)");
+    }
+}
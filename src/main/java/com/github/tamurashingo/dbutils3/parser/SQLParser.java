@@ -24,7 +24,10 @@
 package com.github.tamurashingo.dbutils3.parser;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.antlr.v4.runtime.ANTLRInputStream;
 import org.antlr.v4.runtime.Token;
@@ -49,9 +52,30 @@ import com.github.tamurashingo.dbutils3.Param;
  * @since 0.2.0
  */
 public class SQLParser {
+
+    /**
+     * default max number of placeholders which one {@link Collection} value is expanded to.
+     * @since 0.3.0
+     */
+    public static final int DEFAULT_IN_LIST_LIMIT = 1000;
     
     private String analyzedSQL;
     private List<String> keyNames;
+    /** position of each placeholder in the analyzed sql */
+    private List<Integer> positions;
+
+    /** distinct key names in order of first appearance */
+    private List<String> slotNames;
+    /** placeholder to index of {@link #slotNames} */
+    private int[] slotOf;
+    /** placeholder to the first placeholder which has same key name */
+    private int[] firstOccurrence;
+
+    /** max number of placeholders for one collection value */
+    private int inListLimit = DEFAULT_IN_LIST_LIMIT;
+
+    /** {@code VALUES (...)} clause of insert statement, or null */
+    private ValuesClause values;
     
     private boolean analyzed;
     
@@ -60,6 +84,10 @@ public class SQLParser {
      */
     public SQLParser() {
         keyNames = new ArrayList<>();
+        positions = new ArrayList<>();
+        slotNames = new ArrayList<>();
+        slotOf = new int[0];
+        firstOccurrence = new int[0];
         analyzed = false;
     }
     
@@ -79,13 +107,18 @@ public class SQLParser {
     public String analyzeSQL(String sql) {
         SQLLexer l = new SQLLexer(new ANTLRInputStream(sql));
         StringBuilder buf = new StringBuilder();
+        keyNames.clear();
+        positions.clear();
+        ValuesClause clause = new ValuesClause();
         
         Token token = l.nextToken();
         int prevType = SQLLexer.WS;
         while (token.getType() != SQLLexer.EOF) {
+            clause.accept(token, buf.length(), keyNames.size());
             switch (token.getType()) {
             case SQLLexer.NAMED_PARAM:
                 keyNames.add(token.getText().substring(1));
+                positions.add(buf.length());
                 buf.append("?");
                 break;
             case SQLLexer.WS:
@@ -101,9 +134,33 @@ public class SQLParser {
         }
         
         this.analyzedSQL = buf.toString();
+        this.values = clause.isRewritable(keyNames.size()) ? clause : null;
+        compileSlots();
         this.analyzed = true;
         return analyzedSQL;
     }
+
+    /**
+     * assign a slot to each distinct key name.
+     */
+    private void compileSlots() {
+        slotNames = new ArrayList<>();
+        slotOf = new int[keyNames.size()];
+        firstOccurrence = new int[keyNames.size()];
+        for (int ix = 0; ix < keyNames.size(); ix++) {
+            String key = keyNames.get(ix);
+            int slot = slotNames.indexOf(key);
+            if (slot < 0) {
+                slot = slotNames.size();
+                slotNames.add(key);
+                firstOccurrence[ix] = ix;
+            }
+            else {
+                firstOccurrence[ix] = keyNames.indexOf(key);
+            }
+            slotOf[ix] = slot;
+        }
+    }
     
     /**
      * get converted sql string
@@ -115,17 +172,350 @@ public class SQLParser {
     
     /**
      * convert named parameters to array of parameter values.
+     * <p>
+     * a {@link Collection} value is expanded to its elements,
+     * padded to {@link #bucketSize(int)} by repeating the last element
+     * (see {@link #expandSQL(Param)}).
+     * </p>
      * 
      * @param params named parameters and values
      * @return array of parameter values
      */
     public Object[] createParams(Param params) {
-        List<Object> p = new ArrayList<>(keyNames.size());
-        for (String key: keyNames) {
-            p.add(params.get(key));
+        if (hasCollectionParam(params)) {
+            return createExpandedParams(params);
+        }
+
+        Object[] p = new Object[keyNames.size()];
+        for (int ix = 0; ix < p.length; ix++) {
+            if (firstOccurrence[ix] == ix) {
+                p[ix] = params.get(keyNames.get(ix));
+            }
+            else {
+                p[ix] = p[firstOccurrence[ix]];
+            }
         }
         
-        return (Object[])p.toArray(new Object[]{});
+        return p;
+    }
+
+    /**
+     * @param params named parameters and values
+     * @return true when a value of the named parameters in the analyzed sql is {@link Collection}
+     * @since 0.3.0
+     */
+    public boolean hasCollectionParam(Param params) {
+        for (String name: slotNames) {
+            if (params.get(name) instanceof Collection) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * convert the analyzed sql to expand {@link Collection} valued parameters to placeholder list.
+     * <p>
+     * {@code select * from table where id in (:ids)} is converted to
+     * {@code select * from table where id in (?, ?, ?, ?)} when ids has 3 elements.
+     * the number of placeholders is rounded up to power of two (see {@link #bucketSize(int)})
+     * so that the number of distinct statements stays small.
+     * an empty collection is converted to one placeholder which is bound to null.
+     * </p>
+     *
+     * @param params named parameters and values
+     * @return expanded sql
+     * @since 0.3.0
+     */
+    public String expandSQL(Param params) {
+        StringBuilder buf = new StringBuilder(analyzedSQL.length() + 16);
+        int prev = 0;
+        for (int ix = 0; ix < keyNames.size(); ix++) {
+            int pos = positions.get(ix);
+            buf.append(analyzedSQL, prev, pos);
+            Object value = params.get(keyNames.get(ix));
+            int count = value instanceof Collection ? bucketSize(((Collection<?>)value).size()) : 1;
+            buf.append("?");
+            for (int c = 1; c < count; c++) {
+                buf.append(", ?");
+            }
+            prev = pos + 1;
+        }
+        buf.append(analyzedSQL, prev, analyzedSQL.length());
+        return buf.toString();
+    }
+
+    /**
+     * split the named parameters so that no {@link Collection} value has more elements than the in-list limit.
+     * <p>
+     * each returned {@link Param} has a chunk of the large collection
+     * and the same values for other names.
+     * executing the sql for each of them and concatenating the results
+     * is equivalent to {@code IN} with the whole collection.
+     * </p>
+     *
+     * @param params named parameters and values
+     * @return split parameters. contains params itself when no collection is too large.
+     * @throws IllegalArgumentException more than one collection has more elements than the limit
+     * @since 0.3.0
+     */
+    public List<Param> splitParams(Param params) {
+        int max = inListLimit;
+        String large = null;
+        for (String name: slotNames) {
+            Object value = params.get(name);
+            if (value instanceof Collection && ((Collection<?>)value).size() > max) {
+                if (large != null) {
+                    throw new IllegalArgumentException("cannot split both " + large + " and " + name);
+                }
+                large = name;
+            }
+        }
+        if (large == null) {
+            return Collections.singletonList(params);
+        }
+
+        List<?> values = new ArrayList<>((Collection<?>)params.get(large));
+        List<Param> chunks = new ArrayList<>(values.size() / max + 1);
+        for (int start = 0; start < values.size(); start += max) {
+            Param chunk = new Param();
+            for (Map.Entry<String, Object> entry: params) {
+                chunk.put(entry.getKey(), entry.getValue());
+            }
+            chunk.put(large, values.subList(start, Math.min(start + max, values.size())));
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    /**
+     * round up the number of elements to power of two, not exceeding the in-list limit.
+     *
+     * @param size the number of elements
+     * @return the number of placeholders
+     * @since 0.3.0
+     */
+    public int bucketSize(int size) {
+        if (size <= 1) {
+            return 1;
+        }
+        int bucket = Integer.highestOneBit(size - 1) << 1;
+        if (bucket <= 0 || bucket > inListLimit) {
+            return Math.max(size, inListLimit);
+        }
+        return bucket;
+    }
+
+    /**
+     * set max number of placeholders which one {@link Collection} value is expanded to.
+     *
+     * @param limit max number of placeholders
+     * @throws IllegalArgumentException limit is less than 1
+     * @since 0.3.0
+     */
+    public void setInListLimit(int limit) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("limit must be positive:" + limit);
+        }
+        this.inListLimit = limit;
+    }
+
+    /**
+     * @return max number of placeholders which one {@link Collection} value is expanded to
+     * @since 0.3.0
+     */
+    public int getInListLimit() {
+        return inListLimit;
+    }
+
+    /**
+     * convert named parameters to array of parameter values with expanding {@link Collection}.
+     *
+     * @param params named parameters and values
+     * @return array of parameter values
+     */
+    private Object[] createExpandedParams(Param params) {
+        List<Object> p = new ArrayList<>(keyNames.size() + 16);
+        for (String key: keyNames) {
+            Object value = params.get(key);
+            if (value instanceof Collection) {
+                Collection<?> c = (Collection<?>)value;
+                Object last = null;
+                for (Object element: c) {
+                    p.add(element);
+                    last = element;
+                }
+                int bucket = bucketSize(c.size());
+                for (int ix = c.size(); ix < bucket; ix++) {
+                    p.add(last);
+                }
+            }
+            else {
+                p.add(value);
+            }
+        }
+        return p.toArray();
+    }
+
+    /**
+     * get distinct named parameters in order of first appearance.
+     *
+     * @return parameter names without colon
+     * @since 0.3.0
+     */
+    public List<String> getSlotNames() {
+        return Collections.unmodifiableList(slotNames);
+    }
+
+    /**
+     * @return true when the analyzed sql is {@code INSERT ... VALUES (...)}
+     *         and all named parameters are in the {@code VALUES} list.
+     * @since 0.3.0
+     */
+    public boolean isRewritableInsert() {
+        return values != null;
+    }
+
+    /**
+     * convert the analyzed insert sql to multi-row insert sql.
+     * <p>
+     * {@code insert into table (id, name) values (?, ?)} is converted to
+     * {@code insert into table (id, name) values (?, ?), (?, ?), (?, ?)} when rows is 3.
+     * </p>
+     *
+     * @param rows the number of rows
+     * @return multi-row insert sql
+     * @throws IllegalStateException the analyzed sql is not rewritable
+     * @since 0.3.0
+     */
+    public String createMultiRowSQL(int rows) {
+        if (values == null) {
+            throw new IllegalStateException("sql is not rewritable insert");
+        }
+        String group = analyzedSQL.substring(values.start, values.end);
+        StringBuilder buf = new StringBuilder(analyzedSQL.length() + (group.length() + 2) * (rows - 1));
+        buf.append(analyzedSQL, 0, values.end);
+        for (int ix = 1; ix < rows; ix++) {
+            buf.append(", ").append(group);
+        }
+        buf.append(analyzedSQL, values.end, analyzedSQL.length());
+        return buf.toString();
+    }
+
+    /**
+     * convert rows of named parameters to array of parameter values for multi-row insert sql.
+     *
+     * @param rows named parameters and values of each row
+     * @return array of parameter values
+     * @throws IllegalStateException the analyzed sql is not rewritable
+     * @since 0.3.0
+     */
+    public Object[] createMultiRowParams(List<Param> rows) {
+        if (values == null) {
+            throw new IllegalStateException("sql is not rewritable insert");
+        }
+        int width = keyNames.size();
+        Object[] p = new Object[width * rows.size()];
+        int pos = 0;
+        for (Param params: rows) {
+            for (int ix = 0; ix < width; ix++) {
+                if (firstOccurrence[ix] == ix) {
+                    p[pos + ix] = params.get(keyNames.get(ix));
+                }
+                else {
+                    p[pos + ix] = p[pos + firstOccurrence[ix]];
+                }
+            }
+            pos += width;
+        }
+        return p;
     }
 
+    /**
+     * create reusable parameter holder which has compiled slot layout of the analyzed sql.
+     *
+     * @return parameter holder
+     * @since 0.3.0
+     */
+    public ParamSlots newParamSlots() {
+        return new ParamSlots(slotNames, slotOf);
+    }
+
+    /**
+     * find {@code VALUES (...)} clause of insert statement from token stream.
+     * <p>
+     * {@link SQLLexer} returns a token for each character of a word,
+     * so this class concatenates them to find the keywords.
+     * </p>
+     */
+    private static class ValuesClause {
+        private StringBuilder word = new StringBuilder();
+        private boolean insert = false;
+        private boolean firstWord = true;
+        private boolean pending = false;
+        private boolean multiRow = false;
+        private boolean closed = false;
+        private int depth = 0;
+
+        /** start position of the values list in the analyzed sql (points to '(') */
+        private int start = -1;
+        /** end position of the values list in the analyzed sql (next to ')') */
+        private int end = -1;
+        /** the number of named parameters before the values list */
+        private int keyStart = -1;
+        /** the number of named parameters at the end of the values list */
+        private int keyEnd = -1;
+
+        void accept(Token token, int position, int keyCount) {
+            int type = token.getType();
+            if (type == SQLLexer.ALPHA || type == SQLLexer.NUMBER) {
+                word.append(token.getText());
+                return;
+            }
+            if (word.length() > 0) {
+                acceptWord(word.toString());
+                word.setLength(0);
+            }
+            if (type == SQLLexer.WS) {
+                return;
+            }
+
+            String text = token.getText();
+            if (closed) {
+                multiRow = multiRow || text.equals(",");
+                closed = false;
+            }
+            if (text.equals("(")) {
+                if (pending && depth == 0 && start < 0) {
+                    start = position;
+                    keyStart = keyCount;
+                }
+                depth++;
+            }
+            else if (text.equals(")")) {
+                depth--;
+                if (depth == 0 && start >= 0 && end < 0) {
+                    end = position + 1;
+                    keyEnd = keyCount;
+                    closed = true;
+                }
+            }
+            pending = false;
+        }
+
+        private void acceptWord(String w) {
+            if (firstWord) {
+                insert = w.equalsIgnoreCase("insert");
+                firstWord = false;
+            }
+            if (closed) {
+                closed = false;
+            }
+            pending = w.equalsIgnoreCase("values");
+        }
+
+        boolean isRewritable(int keyCount) {
+            return insert && !multiRow && end > 0 && keyStart == 0 && keyEnd == keyCount;
+        }
+    }
 }
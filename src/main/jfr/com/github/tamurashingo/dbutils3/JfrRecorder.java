@@ -0,0 +1,56 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import com.github.tamurashingo.dbutils3.jfr.Events;
+
+/**
+ * {@link FlightRecorderSupport.Recorder} by {@link Events}.
+ * loaded by name only when {@code jdk.jfr} is available.
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+class JfrRecorder implements FlightRecorderSupport.Recorder {
+
+    @Override
+    public Object begin(int kind) {
+        return Events.begin(kind);
+    }
+
+    @Override
+    public boolean end(Object event) {
+        return Events.end(event);
+    }
+
+    @Override
+    public void commit(Object event, String sql, String operation, Class<?> beanClass, long rows) {
+        Events.commit(event, sql, operation, beanClass, rows);
+    }
+
+    @Override
+    public void commitMapping(Object event, Class<?> beanClass, long rows, long mappingNanos) {
+        Events.commitMapping(event, beanClass, rows, mappingNanos);
+    }
+}
@@ -0,0 +1,174 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.jfr;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * create and commit the events of this package.
+ *
+ * <p>
+ * the events are passed as {@link Object} so that the callers can be loaded
+ * on a JVM without {@code jdk.jfr}. no event is created while no recording is running.
+ * the thresholds (default 10 ms) can be changed by the recording settings, e.g.
+ * {@code recording.enable("dbutils3.Execute").withThreshold(Duration.ofMillis(100))}.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public final class Events {
+
+    /** operation kinds */
+    public static final int PREPARE = 0;
+    public static final int EXECUTE = 1;
+    public static final int FETCH = 2;
+    public static final int MAPPING = 3;
+
+    private static final Set<Long> running = ConcurrentHashMap.newKeySet();
+    private static volatile boolean recording = false;
+
+    static {
+        FlightRecorder.addListener(new FlightRecorderListener() {
+            @Override
+            public void recordingStateChanged(Recording r) {
+                if (r.getState() == RecordingState.RUNNING) {
+                    running.add(r.getId());
+                }
+                else {
+                    running.remove(r.getId());
+                }
+                recording = !running.isEmpty();
+            }
+        });
+        if (FlightRecorder.isInitialized()) {
+            for (Recording r: FlightRecorder.getFlightRecorder().getRecordings()) {
+                if (r.getState() == RecordingState.RUNNING) {
+                    running.add(r.getId());
+                }
+            }
+            recording = !running.isEmpty();
+        }
+    }
+
+    private Events() {
+    }
+
+    /**
+     * begin the event.
+     *
+     * @param kind {@link #PREPARE}, {@link #EXECUTE}, {@link #FETCH} or {@link #MAPPING}
+     * @return event, or null when no recording is running
+     */
+    public static Object begin(int kind) {
+        if (!recording) {
+            return null;
+        }
+        Event event;
+        switch (kind) {
+        case PREPARE:
+            event = new PrepareEvent();
+            break;
+        case EXECUTE:
+            event = new ExecuteEvent();
+            break;
+        case FETCH:
+            event = new FetchEvent();
+            break;
+        default:
+            event = new MappingEvent();
+        }
+        event.begin();
+        return event;
+    }
+
+    /**
+     * end the event.
+     *
+     * @param event event returned by {@link #begin(int)}
+     * @return true when the event should be committed (it exceeds the threshold)
+     */
+    public static boolean end(Object event) {
+        Event e = (Event)event;
+        e.end();
+        return e.shouldCommit();
+    }
+
+    /**
+     * commit the event ended by {@link #end(Object)}.
+     *
+     * @param event event
+     * @param sql sql fingerprint
+     * @param operation name of the operation
+     * @param beanClass bean class, or null
+     * @param rows the number of rows
+     */
+    public static void commit(Object event, String sql, String operation, Class<?> beanClass, long rows) {
+        if (event instanceof ExecuteEvent) {
+            ExecuteEvent e = (ExecuteEvent)event;
+            e.sql = sql;
+            e.operation = operation;
+            e.rows = rows;
+            e.commit();
+        }
+        else if (event instanceof FetchEvent) {
+            FetchEvent e = (FetchEvent)event;
+            e.sql = sql;
+            e.beanClass = beanClass;
+            e.rows = rows;
+            e.commit();
+        }
+        else if (event instanceof MappingEvent) {
+            commitMapping(event, beanClass, rows, 0);
+        }
+        else {
+            PrepareEvent e = (PrepareEvent)event;
+            e.sql = sql;
+            e.commit();
+        }
+    }
+
+    /**
+     * commit the {@link #MAPPING} event ended by {@link #end(Object)}.
+     *
+     * @param event event
+     * @param beanClass bean class
+     * @param rows the number of rows
+     * @param mappingNanos time spent in the mapping
+     */
+    public static void commitMapping(Object event, Class<?> beanClass, long rows, long mappingNanos) {
+        MappingEvent e = (MappingEvent)event;
+        e.beanClass = beanClass;
+        e.rows = rows;
+        e.mappingTime = mappingNanos;
+        e.commit();
+    }
+}
@@ -26,6 +26,14 @@ package com.github.tamurashingo.dbutils3;
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import org.junit.Test;
 
 public class BeanBuilderFactoryTest {
@@ -48,6 +56,46 @@ public class BeanBuilderFactoryTest {
         assertThat(anotherBuilder, is(sameInstance(builder)));
     }
     
+    /**
+     * 複数スレッドから同時に取得した場合も同じインスタンスが渡されること
+     */
+    @Test
+    public void testConcurrent() throws Exception {
+        BeanBuilderFactory.Manager factoryManager = BeanBuilderFactory.getManager();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<BeanBuilder>> futures = new ArrayList<>();
+            for (int ix = 0; ix < 8; ix++) {
+                futures.add(executor.submit(new Callable<BeanBuilder>() {
+                    @Override
+                    public BeanBuilder call() throws Exception {
+                        start.await();
+                        return factoryManager.getBeanBuilder(ConcurrentBean.class);
+                    }
+                }));
+            }
+            start.countDown();
+            BeanBuilder builder = futures.get(0).get();
+            for (Future<BeanBuilder> future: futures) {
+                assertThat(future.get(), is(sameInstance(builder)));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    public static class ConcurrentBean {
+        private String value;
+        public String getValue() {
+            return value;
+        }
+        public void setValue(String value) {
+            this.value = value;
+        }
+    }
+
     public static class TestBean {
         private String value;
         public String getValue() {
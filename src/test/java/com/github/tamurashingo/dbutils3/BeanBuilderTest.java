@@ -26,10 +26,18 @@ package com.github.tamurashingo.dbutils3;
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 
 import org.junit.After;
 import org.junit.Before;
@@ -112,6 +120,235 @@ public class BeanBuilderTest {
         }
     }
 
+    /**
+     * java.time 型と EpochMillis の試験
+     */
+    @Test
+    public void testJavaTime() throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table time_test(id int, d date, dt timestamp, t time, ts timestamp, ms timestamp)");
+            st.execute("insert into time_test values(1, date '2015-08-30', timestamp '2015-08-30 12:34:56.789', "
+                    + "time '12:34:56', timestamp '2015-08-30 12:34:56.789', timestamp '2015-08-30 12:34:56.789')");
+            st.execute("insert into time_test values(2, null, null, null, null, null)");
+        }
+
+        Timestamp expected = Timestamp.valueOf("2015-08-30 12:34:56.789");
+        BeanBuilder builder = new BeanBuilder(JavaTimeBean.class);
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("select * from time_test order by id")) {
+                MappingPlan plan = builder.createPlan(rs);
+
+                rs.next();
+                JavaTimeBean bean = builder.build(rs);
+                assertThat(bean.getDate(), is(LocalDate.of(2015, 8, 30)));
+                assertThat(bean.getDateTime(), is(LocalDateTime.of(2015, 8, 30, 12, 34, 56, 789000000)));
+                assertThat(bean.getTime(), is(LocalTime.of(12, 34, 56)));
+                assertThat(bean.getInstant(), is(expected.toInstant()));
+                assertThat(bean.getMillis(), is(expected.getTime()));
+
+                // converted to the field types in build(Object[])
+                Object[] values = plan.read(rs);
+                assertThat(values[1], is(instanceOf(Timestamp.class)));
+                JavaTimeBean planned = plan.build(values);
+                assertThat(planned.getDate(), is(bean.getDate()));
+                assertThat(planned.getDateTime(), is(bean.getDateTime()));
+                assertThat(planned.getTime(), is(bean.getTime()));
+                assertThat(planned.getInstant(), is(bean.getInstant()));
+                assertThat(planned.getMillis(), is(bean.getMillis()));
+
+                rs.next();
+                bean = builder.build(rs);
+                assertThat(bean.getDate(), is(nullValue()));
+                assertThat(bean.getDateTime(), is(nullValue()));
+                assertThat(bean.getInstant(), is(nullValue()));
+                assertThat(bean.getMillis(), is(0L));
+
+                planned = plan.build(plan.read(rs));
+                assertThat(planned.getDateTime(), is(nullValue()));
+                assertThat(planned.getMillis(), is(0L));
+            }
+        }
+    }
+
+    /**
+     * バイナリ型と LOB の試験
+     */
+    @Test
+    public void testLob() throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table lob_test(id int, bin varbinary(16), buf varbinary(16), b blob, c clob)");
+            st.execute("insert into lob_test values(1, X'010203', X'0405', X'0a0b0c', 'clob value')");
+            st.execute("insert into lob_test values(2, null, null, null, null)");
+        }
+
+        BeanBuilder builder = new BeanBuilder(LobBean.class);
+        LobBean bean;
+        LobBean empty;
+        try (Statement st = conn.createStatement()) {
+            try (ResultSet rs = st.executeQuery("select * from lob_test order by id")) {
+                MappingPlan plan = builder.createPlan(rs);
+                rs.next();
+                bean = builder.build(rs);
+                LobBean planned = plan.build(plan.read(rs));
+                assertThat(planned.getBuf(), is(bean.getBuf()));
+                assertThat(planned.getBlob().read(), is(0x0a));
+                rs.next();
+                empty = builder.build(rs);
+            }
+        }
+
+        assertThat(bean.getBin(), is(new byte[] {1, 2, 3}));
+        assertThat(bean.getBuf(), is(ByteBuffer.wrap(new byte[] {4, 5})));
+        // the streams are readable after the result set and the statement are closed
+        byte[] blob = new byte[8];
+        assertThat(bean.getBlob().read(blob), is(3));
+        assertThat(blob[2], is((byte) 0x0c));
+        char[] clob = new char[32];
+        int length = bean.getClob().read(clob);
+        assertThat(new String(clob, 0, length), is("clob value"));
+        bean.getBlob().close();
+        bean.getClob().close();
+
+        assertThat(empty.getBin(), is(nullValue()));
+        assertThat(empty.getBuf(), is(nullValue()));
+        assertThat(empty.getBlob(), is(nullValue()));
+        assertThat(empty.getClob(), is(nullValue()));
+    }
+
+    /**
+     * 列の並びごとのマッピング計画のキャッシュの試験
+     */
+    @Test
+    public void testPlanCache() throws Exception {
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table plan_test(id int, d date, dt timestamp)");
+            st.execute("insert into plan_test values(1, date '2015-08-30', timestamp '2015-08-30 12:34:56')");
+        }
+
+        BeanBuilder builder = new BeanBuilder(JavaTimeBean.class);
+        try (Statement st = conn.createStatement()) {
+            MappingPlan first;
+            try (ResultSet rs = st.executeQuery("select * from plan_test")) {
+                first = builder.createPlan(rs);
+                rs.next();
+                JavaTimeBean bean = first.build(rs);
+                assertThat(bean.getDate(), is(LocalDate.of(2015, 8, 30)));
+                assertThat(bean.getDateTime(), is(LocalDateTime.of(2015, 8, 30, 12, 34, 56)));
+            }
+            try (ResultSet rs = st.executeQuery("select * from plan_test")) {
+                assertThat(builder.createPlan(rs), is(sameInstance(first)));
+            }
+
+            // the column list is changed
+            MappingPlan reordered;
+            try (ResultSet rs = st.executeQuery("select dt, d from plan_test")) {
+                reordered = builder.createPlan(rs);
+                assertThat(reordered, is(not(sameInstance(first))));
+                rs.next();
+                JavaTimeBean bean = reordered.build(rs);
+                assertThat(bean.getDate(), is(LocalDate.of(2015, 8, 30)));
+                assertThat(bean.getDateTime(), is(LocalDateTime.of(2015, 8, 30, 12, 34, 56)));
+            }
+            try (ResultSet rs = st.executeQuery("select * from plan_test")) {
+                assertThat(builder.createPlan(rs), is(sameInstance(first)));
+            }
+
+            // the plan in use is kept while more column lists than the cache size are used
+            for (int ix = 0; ix < 100; ix++) {
+                try (ResultSet rs = st.executeQuery("select d, dt, " + ix + " as c" + ix + " from plan_test")) {
+                    builder.createPlan(rs);
+                }
+                try (ResultSet rs = st.executeQuery("select * from plan_test")) {
+                    assertThat(builder.createPlan(rs), is(sameInstance(first)));
+                }
+            }
+            try (ResultSet rs = st.executeQuery("select dt, d from plan_test")) {
+                assertThat(builder.createPlan(rs), is(not(sameInstance(reordered))));
+            }
+        }
+    }
+
+    public static class LobBean {
+        @Column("bin")
+        private byte[] bin;
+        @Column("buf")
+        private ByteBuffer buf;
+        @Column("b")
+        private InputStream blob;
+        @Column("c")
+        private Reader clob;
+
+        public byte[] getBin() {
+            return bin;
+        }
+        public void setBin(byte[] bin) {
+            this.bin = bin;
+        }
+        public ByteBuffer getBuf() {
+            return buf;
+        }
+        public void setBuf(ByteBuffer buf) {
+            this.buf = buf;
+        }
+        public InputStream getBlob() {
+            return blob;
+        }
+        public void setBlob(InputStream blob) {
+            this.blob = blob;
+        }
+        public Reader getClob() {
+            return clob;
+        }
+        public void setClob(Reader clob) {
+            this.clob = clob;
+        }
+    }
+
+    public static class JavaTimeBean {
+        @Column("d")
+        private LocalDate date;
+        @Column("dt")
+        private LocalDateTime dateTime;
+        @Column("t")
+        private LocalTime time;
+        @Column("ts")
+        private Instant instant;
+        @Column("ms")
+        @EpochMillis
+        private long millis;
+
+        public LocalDate getDate() {
+            return date;
+        }
+        public void setDate(LocalDate date) {
+            this.date = date;
+        }
+        public LocalDateTime getDateTime() {
+            return dateTime;
+        }
+        public void setDateTime(LocalDateTime dateTime) {
+            this.dateTime = dateTime;
+        }
+        public LocalTime getTime() {
+            return time;
+        }
+        public void setTime(LocalTime time) {
+            this.time = time;
+        }
+        public Instant getInstant() {
+            return instant;
+        }
+        public void setInstant(Instant instant) {
+            this.instant = instant;
+        }
+        public long getMillis() {
+            return millis;
+        }
+        public void setMillis(long millis) {
+            this.millis = millis;
+        }
+    }
+
     public static class NoColumnBean {
         private int id;
         private String value;
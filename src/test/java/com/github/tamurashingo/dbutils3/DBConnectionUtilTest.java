@@ -26,18 +26,28 @@ package com.github.tamurashingo.dbutils3;
 import static org.junit.Assert.*;
 import static org.hamcrest.CoreMatchers.*;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.channels.Channels;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
 import java.sql.Statement;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import com.github.tamurashingo.dbutils3.parser.ParamSlots;
+
 public class DBConnectionUtilTest {
     
     private static final String createTableSQL =
@@ -274,6 +284,486 @@ public class DBConnectionUtilTest {
         }
     }
 
+    /**
+     * prepareWithParam, ParamSlots の試験
+     */
+    @Test
+    public void testExecuteQueryWithParamSlots() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                conn.prepareWithParam("insert into test (id, int_value, str_value) values (:id, :id, :str)");
+                ParamSlots insert = conn.newParamSlots();
+                int id = insert.slotIndex("id");
+                insert.set("str", "slot");
+                for (int ix = 2; ix <= 4; ix++) {
+                    insert.set(id, ix);
+                    assertThat(conn.executeUpdateWithParam(insert), is(1));
+                }
+
+                conn.prepareWithParam("select * from test where id >= :min and int_value >= :min order by id");
+                ParamSlots select = conn.newParamSlots().set("min", 3);
+                List<TestBean> beans = conn.executeQueryWithParam(TestBean.class, select);
+                assertThat(beans.size(), is(2));
+                assertThat(beans.get(0).getIntVal(), is(3));
+                assertThat(beans.get(1).getIntVal(), is(4));
+                assertThat(beans.get(1).getStrVal(), is("slot"));
+
+                List<Map<String, String>> maps = conn.executeQueryWithParam(select.set("min", 4));
+                assertThat(maps.size(), is(1));
+                assertThat(maps.get(0).get("ID"), is("4"));
+            }
+        }
+    }
+
+    /**
+     * executeBatchWithParam の試験（multi-row insertへの書き換え）
+     */
+    @Test
+    public void testExecuteBatchWithParam() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                conn.prepareWithParam("insert into test (id, int_value, str_value) values (:id, :id, :str)");
+
+                List<Param> rows = new ArrayList<>();
+                for (int ix = 2; ix <= 3; ix++) {
+                    rows.add(new Param().put("id", ix).put("str", "batch" + ix));
+                }
+                assertThat(conn.executeBatchWithParam(rows), is(2));
+
+                conn.setInsertRewriteWidth(3);
+                rows.clear();
+                for (int ix = 4; ix <= 11; ix++) {
+                    rows.add(new Param().put("id", ix).put("str", "batch" + ix));
+                }
+                assertThat(conn.executeBatchWithParam(rows), is(8));
+
+                // 端数が1行の場合
+                rows.clear();
+                for (int ix = 12; ix <= 15; ix++) {
+                    rows.add(new Param().put("id", ix).put("str", "batch" + ix));
+                }
+                assertThat(conn.executeBatchWithParam(rows), is(4));
+
+                conn.prepare("select * from test where id >= ? order by id");
+                List<TestBean> result = conn.executeQuery(TestBean.class, 2);
+                assertThat(result.size(), is(14));
+                for (int ix = 0; ix < result.size(); ix++) {
+                    assertThat(result.get(ix).getIntVal(), is(ix + 2));
+                    assertThat(result.get(ix).getStrVal(), is("batch" + (ix + 2)));
+                }
+
+                conn.prepare("update test set int_value = ? where id = ?");
+                List<Object[]> updates = new ArrayList<>();
+                updates.add(new Object[]{100, 2});
+                updates.add(new Object[]{100, 3});
+                updates.add(new Object[]{100, 999});
+                assertThat(conn.executeBatch(updates), is(2));
+            }
+        }
+    }
+
+    /**
+     * IN句へのCollectionの展開の試験
+     */
+    @Test
+    public void testExecuteQueryWithCollection() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                conn.prepareWithParam("insert into test (id, int_value) values (:id, :id)");
+                List<Param> rows = new ArrayList<>();
+                for (int ix = 2; ix <= 10; ix++) {
+                    rows.add(new Param().put("id", ix));
+                }
+                conn.executeBatchWithParam(rows);
+
+                conn.prepareWithParam("select * from test where id in (:ids) and int_value >= :min order by id");
+                List<TestBean> result = conn.executeQueryWithParam(TestBean.class,
+                        new Param().put("ids", Arrays.asList(1, 3, 5)).put("min", 4));
+                assertThat(result.size(), is(2));
+                assertThat(result.get(0).getIntVal(), is(6)); // id = 1
+                assertThat(result.get(1).getIntVal(), is(5));
+
+                List<Map<String, String>> empty = conn.executeQueryWithParam(
+                        new Param().put("ids", new ArrayList<Integer>()).put("min", 0));
+                assertThat(empty.size(), is(0));
+
+                // 3件ずつに分割して実行
+                conn.setInListLimit(3);
+                result = conn.executeQueryWithParam(TestBean.class,
+                        new Param().put("ids", Arrays.asList(2, 3, 4, 5, 6, 7, 8)).put("min", 0));
+                assertThat(result.size(), is(7));
+                for (int ix = 0; ix < result.size(); ix++) {
+                    assertThat(result.get(ix).getIntVal(), is(ix + 2));
+                }
+
+                conn.prepareWithParam("delete from test where id in (:ids)");
+                assertThat(conn.executeUpdateWithParam(new Param().put("ids", Arrays.asList(2, 3, 4, 5, 99))), is(4));
+            }
+        }
+    }
+
+    /**
+     * ArrayParamの試験
+     */
+    @Test
+    public void testExecuteQueryWithArray() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                conn.prepareWithParam("insert into test (id, int_value) values (:id, :id)");
+                List<Param> rows = new ArrayList<>();
+                for (int ix = 2; ix <= 10; ix++) {
+                    rows.add(new Param().put("id", ix));
+                }
+                conn.executeBatchWithParam(rows);
+
+                conn.prepareWithParam("select * from test where id = ANY(:ids) order by id");
+                List<TestBean> result = conn.executeQueryWithParam(TestBean.class,
+                        new Param().put("ids", ArrayParam.of(new long[]{2, 4, 6, 99})));
+                assertThat(result.size(), is(3));
+                assertThat(result.get(0).getIntVal(), is(2));
+                assertThat(result.get(2).getIntVal(), is(6));
+
+                conn.prepareWithParam("select * from test where ARRAY_CONTAINS(:ids, id) order by id");
+                result = conn.executeQueryWithParam(TestBean.class,
+                        new Param().put("ids", ArrayParam.of(new int[]{3, 5})));
+                assertThat(result.size(), is(2));
+                assertThat(result.get(1).getIntVal(), is(5));
+
+                result = conn.executeQueryWithParam(TestBean.class,
+                        new Param().put("ids", ArrayParam.of("INTEGER", Arrays.asList(7, 8, 9, 10))));
+                assertThat(result.size(), is(4));
+            }
+        }
+    }
+
+    /**
+     * executeInsertWithParam の試験（自動採番キーの取得）
+     */
+    @Test
+    public void testExecuteInsertWithParam() throws Exception {
+        try (Connection connection = connect()) {
+            try (Statement st = connection.createStatement()) {
+                st.execute("create table generated (id bigint auto_increment primary key, str_value varchar)");
+            }
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                conn.prepareWithParam("insert into generated (str_value) values (:str)", Statement.RETURN_GENERATED_KEYS);
+
+                List<Param> rows = new ArrayList<>();
+                List<GeneratedBean> beans = new ArrayList<>();
+                for (int ix = 1; ix <= 5; ix++) {
+                    rows.add(new Param().put("str", "row" + ix));
+                    beans.add(new GeneratedBean());
+                }
+                long[] keys = conn.executeInsertWithParam(rows, beans);
+                assertThat(keys.length, is(5));
+                for (int ix = 0; ix < keys.length; ix++) {
+                    assertThat(keys[ix], is((long)(ix + 1)));
+                    assertThat(beans.get(ix).getId(), is((long)(ix + 1)));
+                }
+
+                // multi-row insert
+                conn.setInsertRewriteWidth(2);
+                keys = conn.executeInsertWithParam(rows);
+                assertThat(keys, is(new long[]{6, 7, 8, 9, 10}));
+
+                conn.prepare("insert into generated (str_value) values (?)", Statement.RETURN_GENERATED_KEYS);
+                keys = conn.executeInsert(Arrays.asList(new Object[]{"a"}, new Object[]{"b"}));
+                assertThat(keys, is(new long[]{11, 12}));
+
+                conn.prepare("insert into generated (str_value) values (?)");
+                try {
+                    conn.executeInsert(Arrays.<Object[]>asList(new Object[]{"c"}));
+                    fail("not reached");
+                }
+                catch (SQLException ex) {
+                    // not prepared with RETURN_GENERATED_KEYS
+                }
+            }
+        }
+    }
+
+    /**
+     * StatementOptions の試験（fetch size, max rows, adaptive fetch size）
+     */
+    @Test
+    public void testPrepareWithOptions() throws Exception {
+        try (Connection connection = connect()) {
+            try (Statement st = connection.createStatement()) {
+                st.execute("create table options (id int primary key, str_value varchar(100))");
+                for (int ix = 1; ix <= 20; ix++) {
+                    st.execute("insert into options values (" + ix + ", 'value" + ix + "')");
+                }
+            }
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                StatementOptions options = new StatementOptions();
+                options.setFetchSize(5);
+                options.setMaxRows(3);
+                conn.prepareWithParam("select id from options where id >= :min order by id", options);
+                assertThat(conn.stmt.getFetchSize(), is(5));
+
+                List<Map<String, String>> result = conn.executeQueryWithParam(new Param().put("min", 10));
+                assertThat(result.size(), is(3));
+                assertThat(result.get(0).get("ID"), is("10"));
+
+                options = new StatementOptions();
+                options.setResultSetType(ResultSet.TYPE_SCROLL_INSENSITIVE);
+                conn.prepare("select id from options", options);
+                assertThat(conn.stmt.getResultSetType(), is(ResultSet.TYPE_SCROLL_INSENSITIVE));
+                assertThat(conn.executeQuery().size(), is(20));
+
+                options = new StatementOptions();
+                options.setAdaptiveFetchBudget(1000);
+                options.setFetchSizeRange(2, 50);
+                conn.prepare("select id, str_value from options", options);
+                assertThat(conn.executeQuery().size(), is(20));
+                int fetchSize = conn.stmt.getFetchSize();
+                assertThat(fetchSize >= 2 && fetchSize <= 50, is(true));
+
+                // observed rows are smaller than estimated by metadata
+                conn.executeQuery();
+                assertThat(conn.stmt.getFetchSize() > fetchSize, is(true));
+
+                // bean
+                conn.prepare("select id, str_value from options", options);
+                assertThat(conn.executeQuery(GeneratedBean.class).size(), is(20));
+                fetchSize = conn.stmt.getFetchSize();
+                conn.executeQuery(GeneratedBean.class);
+                assertThat(conn.stmt.getFetchSize() > fetchSize, is(true));
+
+                // bean with read-ahead
+                options.setReadAheadRows(4);
+                conn.prepare("select id, str_value from options", options);
+                assertThat(conn.executeQuery(GeneratedBean.class).size(), is(20));
+                fetchSize = conn.stmt.getFetchSize();
+                conn.executeQuery(GeneratedBean.class);
+                assertThat(conn.stmt.getFetchSize() > fetchSize, is(true));
+
+                // export
+                ResultSetExporter exporter = new ResultSetExporter(ResultSetExporter.Format.NDJSON);
+                conn.prepare("select id, str_value from options", options);
+                assertThat(conn.export(exporter, Channels.newChannel(new ByteArrayOutputStream())), is(20L));
+                fetchSize = conn.stmt.getFetchSize();
+                conn.export(exporter, Channels.newChannel(new ByteArrayOutputStream()));
+                assertThat(conn.stmt.getFetchSize() > fetchSize, is(true));
+            }
+        }
+    }
+
+    /**
+     * queryTimeout, Deadline の試験
+     */
+    @Test
+    public void testDeadline() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                StatementOptions options = new StatementOptions();
+                options.setQueryTimeout(30);
+                conn.prepareWithParam("select id from test where id = :id", options);
+                assertThat(conn.stmt.getQueryTimeout(), is(30));
+
+                try (Deadline.Scope scope = Deadline.within(2, TimeUnit.SECONDS)) {
+                    assertThat(conn.executeQueryWithParam(new Param().put("id", 1)).size(), is(1));
+                    assertThat(conn.stmt.getQueryTimeout() <= 2, is(true));
+                }
+                assertThat(Deadline.current(), is(nullValue()));
+
+                conn.executeQueryWithParam(new Param().put("id", 1));
+                assertThat(conn.stmt.getQueryTimeout(), is(30));
+
+                try (Deadline.Scope scope = Deadline.within(-1, TimeUnit.MILLISECONDS)) {
+                    conn.executeQueryWithParam(new Param().put("id", 1));
+                    fail("not reached");
+                }
+                catch (SQLTimeoutException ex) {
+                    assertThat(ex.getSQLState(), is("HYT00"));
+                }
+            }
+        }
+    }
+
+    /**
+     * cancel の試験
+     */
+    @Test
+    public void testCancel() throws Exception {
+        try (Connection connection = connect()) {
+            try (Statement st = connection.createStatement()) {
+                st.execute("create table cancel (id int primary key)");
+                st.execute("insert into cancel values (1), (2), (3)");
+            }
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                CancelBean.conn = conn;
+                conn.prepare("select id from cancel order by id");
+                try {
+                    conn.executeQuery(CancelBean.class);
+                    fail("not reached");
+                }
+                catch (SQLException ex) {
+                    assertThat(ex.getSQLState(), is("HY008"));
+                }
+                finally {
+                    CancelBean.conn = null;
+                }
+
+                // cancel is cleared by the next execution
+                assertThat(conn.executeQuery().size(), is(3));
+            }
+        }
+    }
+
+    /**
+     * 実行前に呼ばれた cancel の試験
+     */
+    @Test
+    public void testCancelBeforeExecute() throws Exception {
+        try (Connection connection = connect()) {
+            try (Statement st = connection.createStatement()) {
+                st.execute("create table cancel (id int primary key, flag int)");
+                st.execute("insert into cancel values (1, 0), (2, 0), (3, 0)");
+            }
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                final int[] executed = {0};
+                StatementInterceptor canceller = new StatementInterceptor() {
+                    @Override
+                    public void afterExecute(StatementContext ctx, long startNanos, long endNanos) {
+                        executed[0]++;
+                        try {
+                            conn.cancel();
+                        }
+                        catch (SQLException ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                    }
+                };
+                conn.addInterceptor(canceller);
+
+                // cancelled between the chunks of the in-list
+                conn.setInListLimit(2);
+                conn.prepareWithParam("update cancel set flag = 1 where id in (:ids)");
+                try {
+                    conn.executeUpdateWithParam(new Param().put("ids", Arrays.asList(1, 2, 3)));
+                    fail("not reached");
+                }
+                catch (SQLException ex) {
+                    assertThat(ex.getSQLState(), is("HY008"));
+                }
+                assertThat(executed[0], is(1));
+                conn.removeInterceptor(canceller);
+
+                // cancelled before the statement is executed
+                conn.addInterceptor(new StatementInterceptor() {
+                    @Override
+                    public Object beforeExecute(StatementContext ctx) {
+                        try {
+                            conn.cancel();
+                        }
+                        catch (SQLException ex) {
+                            throw new IllegalStateException(ex);
+                        }
+                        return null;
+                    }
+                });
+                conn.prepare("update cancel set flag = 2");
+                try {
+                    conn.executeUpdate();
+                    fail("not reached");
+                }
+                catch (SQLException ex) {
+                    assertThat(ex.getSQLState(), is("HY008"));
+                }
+
+                conn.prepare("select id from cancel where flag = 1");
+                try {
+                    conn.executeQuery();
+                    fail("not reached");
+                }
+                catch (SQLException ex) {
+                    assertThat(ex.getSQLState(), is("HY008"));
+                }
+
+                // only the first chunk is updated
+                try (Statement st = connection.createStatement(); ResultSet rs = st.executeQuery("select sum(flag) from cancel")) {
+                    rs.next();
+                    assertThat(rs.getInt(1), is(2));
+                }
+            }
+        }
+    }
+
+    /**
+     * 先読み（readAheadRows）の試験
+     */
+    @Test
+    public void testReadAhead() throws Exception {
+        try (Connection connection = connect()) {
+            try (Statement st = connection.createStatement()) {
+                st.execute("insert into test (id, int_value, str_value, date_value) "
+                        + "select x + 1, x, 'row' || x, timestamp '2015-01-01 00:00:00' from system_range(1, 500)");
+            }
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                conn.prepare("select * from test order by id");
+                List<TestBean> expected = conn.executeQuery(TestBean.class);
+
+                StatementOptions options = new StatementOptions();
+                options.setReadAheadRows(8);
+                conn.prepare("select * from test order by id", options);
+                List<TestBean> result = conn.executeQuery(TestBean.class);
+
+                assertThat(result.size(), is(501));
+                for (int ix = 0; ix < result.size(); ix++) {
+                    assertThat(result.get(ix).getIntVal(), is(expected.get(ix).getIntVal()));
+                    assertThat(result.get(ix).getStrVal(), is(expected.get(ix).getStrVal()));
+                    assertThat(result.get(ix).getDateVal(), is(expected.get(ix).getDateVal()));
+                    assertThat(result.get(ix).isBooleanVal(), is(expected.get(ix).isBooleanVal()));
+                }
+                assertThat(result.get(0).getStrVal(), is("string"));
+            }
+        }
+    }
+
+    /**
+     * 並列マッピング（parallelMappingThreshold）の試験
+     */
+    @Test
+    public void testParallelMapping() throws Exception {
+        try (Connection connection = connect()) {
+            try (Statement st = connection.createStatement()) {
+                st.execute("insert into test (id, int_value, str_value) "
+                        + "select x + 1, x, 'row' || x from system_range(1, 500)");
+            }
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                StatementOptions options = new StatementOptions();
+                options.setParallelMappingThreshold(100);
+                options.setMappingPool(pool);
+                conn.prepare("select * from test where id <= ? order by id", options);
+
+                List<TestBean> result = conn.executeQuery(TestBean.class, 501);
+                assertThat(result.size(), is(501));
+                assertThat(result.get(0).getStrVal(), is("string"));
+                for (int ix = 1; ix < result.size(); ix++) {
+                    assertThat(result.get(ix).getIntVal(), is(ix));
+                    assertThat(result.get(ix).getStrVal(), is("row" + ix));
+                }
+
+                // less than threshold
+                result = conn.executeQuery(TestBean.class, 10);
+                assertThat(result.size(), is(10));
+                assertThat(result.get(9).getIntVal(), is(9));
+
+                // with read-ahead
+                options.setReadAheadRows(16);
+                conn.prepare("select * from test order by id", options);
+                result = conn.executeQuery(TestBean.class);
+                assertThat(result.size(), is(501));
+                assertThat(result.get(500).getStrVal(), is("row500"));
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+    }
+
     /**
      * prepare, executeUpdate　の試験
      */
@@ -769,6 +1259,35 @@ public class DBConnectionUtilTest {
         }
     }
     
+    public static class GeneratedBean {
+        @Column("id")
+        private long id;
+
+        public long getId() {
+            return id;
+        }
+        public void setId(long id) {
+            this.id = id;
+        }
+    }
+
+    public static class CancelBean {
+        static DBConnectionUtil conn;
+
+        @Column("id")
+        private int id;
+
+        public int getId() {
+            return id;
+        }
+        public void setId(int id) throws SQLException {
+            this.id = id;
+            if (conn != null) {
+                conn.cancel();
+            }
+        }
+    }
+
     public static class NoJavaBean {
         private String message;
         public NoJavaBean(String message) {
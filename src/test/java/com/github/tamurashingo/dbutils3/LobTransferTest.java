@@ -0,0 +1,122 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class LobTransferTest {
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+    }
+
+    private Connection connect(String name, byte[] blob, String clob) throws Exception {
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:" + name);
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table document (id int primary key, content blob, text clob)");
+        }
+        try (PreparedStatement ps = conn.prepareStatement("insert into document values (1, ?, ?)")) {
+            ps.setBytes(1, blob);
+            ps.setString(2, clob);
+            ps.executeUpdate();
+        }
+        return conn;
+    }
+
+    /**
+     * BLOB の転送の試験
+     */
+    @Test
+    public void testBlob() throws Exception {
+        byte[] blob = new byte[300000];
+        for (int ix = 0; ix < blob.length; ix++) {
+            blob[ix] = (byte) ix;
+        }
+        Path path = Files.createTempFile("lobtransfer", ".bin");
+        try (DBConnectionUtil conn = new DBConnectionUtil(connect("lobtransfer1", blob, "x"))) {
+            LobTransfer transfer = new LobTransfer("content");
+            transfer.setChunkSize(4096);
+            conn.prepare("select content from document where id = ?");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            assertThat(conn.transfer(transfer, Channels.newChannel(out), 1), is((long) blob.length));
+            assertThat(Arrays.equals(out.toByteArray(), blob), is(true));
+
+            try (FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                file.write(ByteBuffer.wrap(new byte[] {9, 9}));
+                assertThat(conn.transfer(transfer, file, 1), is((long) blob.length));
+                assertThat(file.position(), is(blob.length + 2L));
+            }
+            byte[] written = Files.readAllBytes(path);
+            assertThat(written.length, is(blob.length + 2));
+            assertThat(Arrays.equals(Arrays.copyOfRange(written, 2, written.length), blob), is(true));
+
+            assertThat(conn.transfer(transfer, Channels.newChannel(new ByteArrayOutputStream()), 2), is(0L));
+        }
+        finally {
+            Files.delete(path);
+        }
+    }
+
+    /**
+     * CLOB の転送の試験
+     */
+    @Test
+    public void testClob() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int ix = 0; ix < 10000; ix++) {
+            text.append("テキスト").append(ix).append('\n');
+        }
+        try (DBConnectionUtil conn = new DBConnectionUtil(connect("lobtransfer2", new byte[0], text.toString()))) {
+            LobTransfer transfer = new LobTransfer("text");
+            transfer.setChunkSize(100);
+            conn.prepareWithParam("select text from document where id = :id");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            long bytes = conn.transferWithParam(transfer, Channels.newChannel(out), new Param().put("id", 1));
+            byte[] expected = text.toString().getBytes(StandardCharsets.UTF_8);
+            assertThat(bytes, is((long) expected.length));
+            assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), is(text.toString()));
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class NPlusOneDetectorTest {
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+    }
+
+    private Connection connect(String name) throws Exception {
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:" + name);
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table item (id int primary key, name varchar)");
+            st.execute("insert into item values (1, 'a'), (2, 'b'), (3, 'c'), (4, 'd'), (5, 'e')");
+        }
+        return conn;
+    }
+
+    /**
+     * 異なるパラメータで繰り返し実行された文の検出の試験
+     */
+    @Test
+    public void testDetect() throws Exception {
+        NPlusOneDetector detector = new NPlusOneDetector();
+        detector.setThreshold(3);
+        List<NPlusOneDetector.Report> received = new ArrayList<>();
+        detector.setListener(received::add);
+
+        try (DBConnectionUtil conn = new DBConnectionUtil(connect("nplusone1"))) {
+            conn.addInterceptor(detector);
+            conn.prepareWithParam("select * from item where id = :id");
+            for (int id = 1; id <= 5; id++) {
+                assertThat(conn.executeQueryWithParam(new Param().put("id", id)).size(), is(1));
+            }
+        }
+
+        List<NPlusOneDetector.Report> reports = detector.getReports();
+        assertThat(reports.size(), is(1));
+        assertThat(received.size(), is(1));
+        assertThat(reports.get(0).getSQL(), is("select * from item where id = ?"));
+        assertThat(reports.get(0).getExecutions(), is(4));
+        assertThat(reports.get(0).getCallSite().getClassName(), is(NPlusOneDetectorTest.class.getName()));
+        assertThat(reports.get(0).getCallSite().getMethodName(), is("testDetect"));
+
+        detector.reset();
+        assertThat(detector.getReports().isEmpty(), is(true));
+    }
+
+    /**
+     * 同じパラメータでの繰り返しを検出しない試験
+     */
+    @Test
+    public void testSameParameter() throws Exception {
+        NPlusOneDetector detector = new NPlusOneDetector();
+        detector.setThreshold(3);
+
+        try (DBConnectionUtil conn = new DBConnectionUtil(connect("nplusone2"))) {
+            conn.addInterceptor(detector);
+            conn.prepare("select * from item where id = ?");
+            for (int ix = 0; ix < 10; ix++) {
+                assertThat(conn.executeQuery(1).size(), is(1));
+            }
+        }
+        assertThat(detector.getReports().isEmpty(), is(true));
+    }
+}
@@ -0,0 +1,168 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.github.tamurashingo.dbutils3.ParameterBinder.ArrayBinder;
+import com.github.tamurashingo.dbutils3.ParameterBinder.BigDecimalBinder;
+import com.github.tamurashingo.dbutils3.ParameterBinder.BytesBinder;
+import com.github.tamurashingo.dbutils3.ParameterBinder.IntBinder;
+import com.github.tamurashingo.dbutils3.ParameterBinder.LongBinder;
+import com.github.tamurashingo.dbutils3.ParameterBinder.ObjectBinder;
+import com.github.tamurashingo.dbutils3.ParameterBinder.StringBinder;
+import com.github.tamurashingo.dbutils3.ParameterBinder.TimestampBinder;
+
+/**
+ * 値の型に応じたbinderが選択されることを確認する。
+ */
+public class ParameterBinderTest {
+
+    @Test
+    public void testForValue() {
+        assertThat(ParameterBinder.forValue(1), is(instanceOf(IntBinder.class)));
+        assertThat(ParameterBinder.forValue(1L), is(instanceOf(LongBinder.class)));
+        assertThat(ParameterBinder.forValue("1"), is(instanceOf(StringBinder.class)));
+        assertThat(ParameterBinder.forValue(BigDecimal.ONE), is(instanceOf(BigDecimalBinder.class)));
+        assertThat(ParameterBinder.forValue(new Timestamp(0)), is(instanceOf(TimestampBinder.class)));
+        assertThat(ParameterBinder.forValue(new byte[0]), is(instanceOf(BytesBinder.class)));
+        assertThat(ParameterBinder.forValue(ArrayParam.of(new long[0])), is(instanceOf(ArrayBinder.class)));
+        assertThat(ParameterBinder.forValue(new java.util.Date()), is(instanceOf(ObjectBinder.class)));
+
+        assertThat(ParameterBinder.forValue(1).accepts(2), is(true));
+        assertThat(ParameterBinder.forValue(1).accepts(2L), is(false));
+        assertThat(ParameterBinder.OBJECT.accepts(2L), is(true));
+    }
+
+    /**
+     * 型が変わった場合にsetObjectへフォールバックすることの確認
+     */
+    @Test
+    public void testFallback() throws Exception {
+        Class.forName("org.h2.Driver");
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:test")) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("create table binder (id int primary key, str_value varchar)");
+            }
+            try (PreparedStatement stmt = conn.prepareStatement("insert into binder (id, str_value) values (?, ?)")) {
+                StatementHandle handle = new StatementHandle(stmt);
+
+                handle.bind(1, 1);
+                handle.bind(2, "one");
+                stmt.executeUpdate();
+                assertThat(handle.getBinder(1), is(instanceOf(IntBinder.class)));
+                assertThat(handle.getBinder(2), is(instanceOf(StringBinder.class)));
+
+                handle.bind(1, 2L);
+                handle.bind(2, null);
+                stmt.executeUpdate();
+                assertThat(handle.getBinder(1), is(instanceOf(ObjectBinder.class)));
+                assertThat(handle.getBinder(2), is(instanceOf(StringBinder.class)));
+            }
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("select id, str_value from binder order by id")) {
+                assertThat(rs.next(), is(true));
+                assertThat(rs.getInt(1), is(1));
+                assertThat(rs.getString(2), is("one"));
+                assertThat(rs.next(), is(true));
+                assertThat(rs.getInt(1), is(2));
+                assertThat(rs.getString(2), is(nullValue()));
+                assertThat(rs.next(), is(false));
+            }
+        }
+    }
+
+    /**
+     * 実行後にSQL ARRAYが解放されることの確認
+     */
+    @Test
+    public void testReleaseArray() throws Exception {
+        Class.forName("org.h2.Driver");
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:binderarray")) {
+            AtomicInteger freed = new AtomicInteger();
+            try (DBConnectionUtil util = new DBConnectionUtil(freeCounting(conn, freed))) {
+                util.prepare("select x from system_range(1, 10) where x = any(?)");
+                assertThat(util.executeQuery(ArrayParam.of(new long[]{2, 4})).size(), is(2));
+                assertThat(freed.get(), is(1));
+                assertThat(util.executeQuery(ArrayParam.of(new long[]{3})).size(), is(1));
+                assertThat(freed.get(), is(2));
+
+                // the parameter falls back to setObject before the ArrayParam is bound
+                util.prepare("select x from system_range(1, 10) where x = any(?)");
+                assertThat(util.executeQuery((Object) new Object[]{5L, 6L}).size(), is(2));
+                assertThat(freed.get(), is(2));
+                assertThat(util.executeQuery(ArrayParam.of(new long[]{7})).size(), is(1));
+                assertThat(freed.get(), is(3));
+            }
+        }
+    }
+
+    private static Connection freeCounting(Connection conn, AtomicInteger freed) {
+        Connection[] proxy = new Connection[1];
+        proxy[0] = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, (p, method, args) -> {
+            Object result = invoke(conn, method, args);
+            if (result instanceof PreparedStatement) {
+                PreparedStatement stmt = (PreparedStatement) result;
+                return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, (q, m, a) ->
+                        m.getName().equals("getConnection") ? proxy[0] : invoke(stmt, m, a));
+            }
+            if (result instanceof Array) {
+                Array array = (Array) result;
+                return Proxy.newProxyInstance(Array.class.getClassLoader(), new Class<?>[]{Array.class}, (q, m, a) -> {
+                    if (m.getName().equals("free")) {
+                        freed.incrementAndGet();
+                    }
+                    return invoke(array, m, a);
+                });
+            }
+            return result;
+        });
+        return proxy[0];
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+}
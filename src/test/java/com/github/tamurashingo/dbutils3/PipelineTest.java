@@ -0,0 +1,334 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PipelineTest {
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+    }
+
+    private Connection connect() throws Exception {
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:pipeline");
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table item (id int primary key, name varchar, price int)");
+            st.execute("insert into item values (1, 'apple', 100), (2, 'banana', 200), (3, 'cherry', 300)");
+        }
+        return conn;
+    }
+
+    /**
+     * execute の試験
+     */
+    @Test
+    public void testExecute() throws Exception {
+        try (DBConnectionUtil conn = new DBConnectionUtil(connect())) {
+            Pipeline pipeline = conn.pipeline();
+            Pipeline.Result<List<ItemBean>> items = pipeline.queryWithParam(ItemBean.class,
+                    "select * from item where id in (:ids) order by id", new Param().put("ids", Arrays.asList(1, 3)));
+            Pipeline.Result<Integer> updated = pipeline.update("update item set price = price + ? where id = ?", 5, 2);
+            Pipeline.Result<List<Map<String, String>>> total = pipeline.query("select sum(price) as total from item");
+            assertThat(pipeline.size(), is(3));
+
+            try {
+                items.get();
+                fail("not reached");
+            }
+            catch (IllegalStateException ex) {
+                // not executed
+            }
+
+            pipeline.execute();
+            assertThat(pipeline.size(), is(0));
+
+            assertThat(items.get().size(), is(2));
+            assertThat(items.get().get(1).getName(), is("cherry"));
+            assertThat(updated.get(), is(1));
+            assertThat(total.get().get(0).get("TOTAL"), is("605"));
+        }
+    }
+
+    /**
+     * 逐次実行での文の再利用と更新のバッチ化の試験
+     */
+    @Test
+    public void testSequential() throws Exception {
+        try (Connection c = connect()) {
+            RecordingConnection recorder = new RecordingConnection(c);
+            Pipeline pipeline = new Pipeline(recorder.proxy());
+            Pipeline.Result<Integer> first = pipeline.update("update item set price = price + ? where id = ?", 1, 1);
+            Pipeline.Result<Integer> second = pipeline.update("update item set price = price + ? where id = ?", 2, 2);
+            Pipeline.Result<Integer> missing = pipeline.update("update item set price = price + ? where id = ?", 3, 99);
+            Pipeline.Result<List<ItemBean>> items = pipeline.query(ItemBean.class, "select * from item where id <= ? order by id", 2);
+            Pipeline.Result<Integer> third = pipeline.update("update item set price = price + ? where id = ?", 4, 3);
+            pipeline.execute();
+
+            assertThat(first.get(), is(1));
+            assertThat(second.get(), is(1));
+            assertThat(missing.get(), is(0));
+            assertThat(items.get().size(), is(2));
+            assertThat(third.get(), is(1));
+            // the update statement is prepared once
+            assertThat(recorder.prepared.size(), is(2));
+
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("select sum(price) from item")) {
+                rs.next();
+                assertThat(rs.getInt(1), is(607));
+            }
+        }
+    }
+
+    /**
+     * 逐次実行の各文に期限が設定される試験
+     */
+    @Test
+    public void testDeadline() throws Exception {
+        try (Connection c = connect()) {
+            RecordingConnection recorder = new RecordingConnection(c);
+            Pipeline pipeline = new Pipeline(recorder.proxy());
+            pipeline.update("update item set price = price + ? where id = ?", 1, 1);
+            pipeline.query("select * from item where id = ?", 1);
+            pipeline.update("update item set price = price + ? where id = ?", 2, 2);
+
+            Deadline.Scope scope = Deadline.after(1, TimeUnit.MINUTES).bind();
+            try {
+                pipeline.execute();
+            }
+            finally {
+                scope.close();
+            }
+            // the reused statement gets the remaining time again
+            assertThat(recorder.prepared.size(), is(2));
+            assertThat(recorder.timeouts.size(), is(3));
+            for (int timeout: recorder.timeouts) {
+                assertThat(timeout > 0 && timeout <= 60, is(true));
+            }
+        }
+    }
+
+    /**
+     * in-list の上限を超えるコレクションを拒否する試験
+     */
+    @Test
+    public void testInListLimit() throws Exception {
+        try (Connection c = connect()) {
+            Pipeline pipeline = new Pipeline(c);
+            pipeline.setInListLimit(2);
+            Pipeline.Result<List<ItemBean>> items = pipeline.queryWithParam(ItemBean.class,
+                    "select * from item where id in (:ids) order by id", new Param().put("ids", Arrays.asList(1, 2)));
+            try {
+                pipeline.queryWithParam(ItemBean.class,
+                        "select * from item where id in (:ids) order by id", new Param().put("ids", Arrays.asList(1, 2, 3)));
+                fail("not reached");
+            }
+            catch (IllegalArgumentException ex) {
+                assertThat(ex.getMessage(), containsString("in-list limit"));
+            }
+            assertThat(pipeline.size(), is(1));
+            pipeline.execute();
+            assertThat(items.get().size(), is(2));
+        }
+    }
+
+    /**
+     * 複数文を一度に送信する試験
+     */
+    @Test
+    public void testMultiStatement() throws Exception {
+        try (Connection c = connect()) {
+            RecordingConnection recorder = new RecordingConnection(c);
+            Pipeline pipeline = new Pipeline(recorder.proxy());
+            pipeline.setMultiStatement(true);
+            Pipeline.Result<List<ItemBean>> items = pipeline.queryWithParam(ItemBean.class,
+                    "select * from item where id in (:ids) order by id", new Param().put("ids", Arrays.asList(1, 3)));
+            Pipeline.Result<Integer> updated = pipeline.update("update item set price = price + ? where id = ?", 5, 2);
+            Pipeline.Result<List<Map<String, String>>> total = pipeline.query("select sum(price) as total from item where id >= ?", 2);
+            Pipeline.Result<Integer> deleted = pipeline.update("delete from item where id = ?", 3);
+            pipeline.execute();
+
+            assertThat(recorder.prepared.size(), is(1));
+            assertThat(recorder.prepared.get(0), containsString(";"));
+            assertThat(items.get().size(), is(2));
+            assertThat(items.get().get(1).getName(), is("cherry"));
+            assertThat(updated.get(), is(1));
+            assertThat(total.get().get(0).get("TOTAL"), is("505"));
+            assertThat(deleted.get(), is(1));
+        }
+    }
+
+    /**
+     * connection which records the prepared sql, and executes multi-statement sql
+     * by splitting it, to reproduce the results read by {@link Statement#getMoreResults()}.
+     */
+    private static class RecordingConnection implements InvocationHandler {
+        final Connection target;
+        final List<String> prepared = new ArrayList<>();
+        final List<Integer> timeouts = new ArrayList<>();
+
+        RecordingConnection(Connection target) {
+            this.target = target;
+        }
+
+        Connection proxy() {
+            return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {Connection.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getName().equals("prepareStatement") && args.length == 1) {
+                String sql = (String) args[0];
+                prepared.add(sql);
+                if (sql.contains(";")) {
+                    return new MultiStatement(target, sql.split(";")).proxy();
+                }
+                final PreparedStatement st = target.prepareStatement(sql);
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class}, new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        if (method.getName().equals("setQueryTimeout")) {
+                            timeouts.add((Integer) args[0]);
+                        }
+                        return call(method, st, args);
+                    }
+                });
+            }
+            return call(method, target, args);
+        }
+    }
+
+    private static class MultiStatement implements InvocationHandler {
+        final Connection target;
+        final String[] parts;
+        final List<Object[]> bound = new ArrayList<>();
+        final List<PreparedStatement> statements = new ArrayList<>();
+        final List<Object> results = new ArrayList<>();
+        int current;
+
+        MultiStatement(Connection target, String[] parts) {
+            this.target = target;
+            this.parts = parts;
+        }
+
+        PreparedStatement proxy() {
+            return (PreparedStatement) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                bound.add(new Object[] {method, args});
+                return null;
+            }
+            switch (name) {
+            case "setQueryTimeout":
+                return null;
+            case "execute":
+                int offset = 0;
+                for (String part: parts) {
+                    PreparedStatement st = target.prepareStatement(part);
+                    statements.add(st);
+                    int count = part.length() - part.replace("?", "").length();
+                    for (Object[] call: bound) {
+                        Object[] a = ((Object[]) call[1]).clone();
+                        int ix = (Integer) a[0] - offset;
+                        if (1 <= ix && ix <= count) {
+                            a[0] = ix;
+                            call((Method) call[0], st, a);
+                        }
+                    }
+                    offset += count;
+                    results.add(st.execute() ? st.getResultSet() : (Object) st.getUpdateCount());
+                }
+                current = 0;
+                return results.get(0) instanceof ResultSet;
+            case "getResultSet":
+                return results.get(current) instanceof ResultSet ? results.get(current) : null;
+            case "getUpdateCount":
+                return current < results.size() && results.get(current) instanceof Integer ? results.get(current) : -1;
+            case "getMoreResults":
+                current++;
+                return current < results.size() && results.get(current) instanceof ResultSet;
+            case "close":
+                for (PreparedStatement st: statements) {
+                    st.close();
+                }
+                return null;
+            default:
+                throw new UnsupportedOperationException(name);
+            }
+        }
+    }
+
+    private static Object call(Method method, Object target, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    public static class ItemBean {
+        @Column("id")
+        private int id;
+        @Column("name")
+        private String name;
+
+        public int getId() {
+            return id;
+        }
+        public void setId(int id) {
+            this.id = id;
+        }
+        public String getName() {
+            return name;
+        }
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ProjectionTest {
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+    }
+
+    /**
+     * columns の試験
+     */
+    @Test
+    public void testColumns() {
+        assertThat(Projection.columns(ItemBean.class), is("id, name, price"));
+        assertThat(Projection.columns(ItemBean.class, "i"), is("i.id, i.name, i.price"));
+    }
+
+    /**
+     * expand の試験
+     */
+    @Test
+    public void testExpand() {
+        assertThat(Projection.expand("select :columns(ItemBean) from item where id = :id", ItemBean.class),
+                is("select id, name, price from item where id = :id"));
+        assertThat(Projection.expand("select :columns( ItemBean , i ), 'a :columns(X)' from item i", ItemBean.class),
+                is("select i.id, i.name, i.price, 'a :columns(X)' from item i"));
+        assertThat(Projection.expand("select :columns(" + ItemBean.class.getName() + ") from item"),
+                is("select id, name, price from item"));
+        assertThat(Projection.expand("select * from item"), is("select * from item"));
+
+        try {
+            Projection.expand("select :columns(UnknownBean) from item");
+            fail("not reached");
+        }
+        catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage(), is("bean is not found:UnknownBean"));
+        }
+    }
+
+    /**
+     * prepareWithParam での展開の試験
+     */
+    @Test
+    public void testPrepareWithParam() throws Exception {
+        Connection c = DriverManager.getConnection("jdbc:h2:mem:projection");
+        try (Statement st = c.createStatement()) {
+            st.execute("create table item (id int primary key, name varchar, price int, description clob)");
+            st.execute("insert into item values (1, 'apple', 100, 'long text'), (2, 'banana', 200, 'long text')");
+        }
+        try (DBConnectionUtil conn = new DBConnectionUtil(c)) {
+            conn.prepareWithParam("select :columns(" + ItemBean.class.getName() + ") from item where id = :id");
+            List<Map<String, String>> rows = conn.executeQueryWithParam(new Param().put("id", 2));
+            assertThat(rows.size(), is(1));
+            assertThat(rows.get(0).size(), is(3));
+            assertThat(rows.get(0).containsKey("DESCRIPTION"), is(false));
+
+            List<ItemBean> beans = conn.executeQueryWithParam(ItemBean.class, new Param().put("id", 1));
+            assertThat(beans.get(0).getName(), is("apple"));
+            assertThat(beans.get(0).getPrice(), is(100));
+        }
+    }
+
+    public static class ItemBean {
+        @Column("id")
+        private int id;
+        @Column("name")
+        private String name;
+        @Column("price")
+        private int price;
+
+        public int getId() {
+            return id;
+        }
+        public void setId(int id) {
+            this.id = id;
+        }
+        public String getName() {
+            return name;
+        }
+        public void setName(String name) {
+            this.name = name;
+        }
+        public int getPrice() {
+            return price;
+        }
+        public void setPrice(int price) {
+            this.price = price;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadAheadTest {
+
+    private Connection conn;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        this.conn = DriverManager.getConnection("jdbc:h2:mem:readahead");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    /**
+     * 先読みスレッドが割り込まれた場合に呼び出し側へ例外が伝わる試験
+     */
+    @Test(timeout = 10000)
+    public void testInterrupt() throws Exception {
+        BlockingQueue<Thread> producers = new LinkedBlockingQueue<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("select x from system_range(1, 1000)")) {
+            MappingPlan plan = new BeanBuilder(RowBean.class).createPlan(rs);
+            try (ReadAhead reader = new ReadAhead(rs, plan, 1, command -> {
+                Thread thread = new Thread(command);
+                producers.add(thread);
+                thread.start();
+            })) {
+                Thread producer = producers.take();
+                // wait until the producer blocks on the full buffer
+                while (producer.getState() != Thread.State.TIMED_WAITING) {
+                    Thread.sleep(1);
+                }
+                producer.interrupt();
+
+                try {
+                    while (reader.next() != null) {
+                        // rows read before the interruption
+                    }
+                    fail();
+                }
+                catch (SQLException ex) {
+                    assertThat(ex.getCause(), is(instanceOf(InterruptedException.class)));
+                }
+            }
+        }
+    }
+
+    /**
+     * 値の読み込みでErrorが発生した場合に呼び出し側で再送出される試験
+     */
+    @Test(timeout = 10000)
+    public void testError() throws Exception {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("select x from system_range(1, 10)")) {
+            ResultSet broken = (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class}, (p, method, args) -> {
+                if (method.getName().startsWith("get") && !method.getName().equals("getMetaData")) {
+                    throw new AssertionError("broken");
+                }
+                try {
+                    return method.invoke(rs, args);
+                }
+                catch (InvocationTargetException ex) {
+                    throw ex.getCause();
+                }
+            });
+            MappingPlan plan = new BeanBuilder(RowBean.class).createPlan(broken);
+            try (ReadAhead reader = new ReadAhead(broken, plan, 4, null)) {
+                try {
+                    reader.next();
+                    fail();
+                }
+                catch (AssertionError ex) {
+                    assertThat(ex.getMessage(), is("broken"));
+                }
+            }
+        }
+    }
+
+    public static class RowBean {
+        @Column("x")
+        private long x;
+        public long getX() {
+            return x;
+        }
+        public void setX(long x) {
+            this.x = x;
+        }
+    }
+}
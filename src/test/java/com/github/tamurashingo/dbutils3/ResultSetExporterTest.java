@@ -0,0 +1,136 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultSetExporterTest {
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+    }
+
+    private Connection connect() throws Exception {
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:test");
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table export (id int primary key, name varchar, price decimal(10, 2), valid boolean)");
+            st.execute("insert into export values (1, 'plain', 12.50, true)");
+            st.execute("insert into export values (2, 'comma, \"quote\"', null, false)");
+            st.execute("insert into export values (3, 'line' || char(10) || 'break 日本語 🍣', 0.5, null)");
+            st.execute("insert into export values (4, null, 1, true)");
+        }
+        return conn;
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                conn.prepare("select id, name, price from export order by id");
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                long rows = conn.export(new ResultSetExporter(ResultSetExporter.Format.CSV), Channels.newChannel(out));
+
+                assertThat(rows, is(4L));
+                assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), is(
+                        "ID,NAME,PRICE\n"
+                      + "1,plain,12.50\n"
+                      + "2,\"comma, \"\"quote\"\"\",\n"
+                      + "3,\"line\nbreak 日本語 🍣\",0.50\n"
+                      + "4,,1.00\n"));
+            }
+        }
+    }
+
+    @Test
+    public void testNdjson() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                conn.prepareWithParam("select id, name, price, valid from export where id <= :id order by id");
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ResultSetExporter exporter = new ResultSetExporter(ResultSetExporter.Format.NDJSON);
+                exporter.setBufferSize(16);
+                long rows = conn.exportWithParam(exporter, Channels.newChannel(out), new Param().put("id", 3));
+
+                assertThat(rows, is(3L));
+                assertThat(new String(out.toByteArray(), StandardCharsets.UTF_8), is(
+                        "{\"ID\":1,\"NAME\":\"plain\",\"PRICE\":12.50,\"VALID\":true}\n"
+                      + "{\"ID\":2,\"NAME\":\"comma, \\\"quote\\\"\",\"PRICE\":null,\"VALID\":false}\n"
+                      + "{\"ID\":3,\"NAME\":\"line\\nbreak 日本語 🍣\",\"PRICE\":0.50,\"VALID\":null}\n"));
+            }
+        }
+    }
+
+    @Test
+    public void testIsJsonNumber() {
+        for (String value: new String[] {"0", "-0", "12", "12.50", "-0.5", "1e10", "1E+2", "2.5e-3"}) {
+            assertThat(value, ResultSetExporter.isJsonNumber(value), is(true));
+        }
+        for (String value: new String[] {"", "-", "1e", "1e+", "01", ".5", "5.", "+1", "1.2.3", "NaN", "Infinity", "-Infinity", "0x10"}) {
+            assertThat(value, ResultSetExporter.isJsonNumber(value), is(false));
+        }
+    }
+
+    @Test
+    public void testGzip() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                conn.prepare("select id from export order by id");
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                ResultSetExporter exporter = new ResultSetExporter(ResultSetExporter.Format.CSV);
+                exporter.setGzip(true);
+                exporter.setHeader(false);
+                WritableByteChannel channel = Channels.newChannel(out);
+                conn.export(exporter, channel);
+                // the channel is not closed with the deflater
+                assertThat(channel.isOpen(), is(true));
+
+                ByteArrayOutputStream unzipped = new ByteArrayOutputStream();
+                try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+                    byte[] buf = new byte[256];
+                    int len;
+                    while ((len = in.read(buf)) > 0) {
+                        unzipped.write(buf, 0, len);
+                    }
+                }
+                assertThat(new String(unzipped.toByteArray(), StandardCharsets.UTF_8), is("1\n2\n3\n4\n"));
+            }
+        }
+    }
+}
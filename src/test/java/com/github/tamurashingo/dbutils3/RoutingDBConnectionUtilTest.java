@@ -0,0 +1,202 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RoutingDBConnectionUtilTest {
+
+    private Connection keepReplica;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        keepReplica = createDatabase("jdbc:h2:mem:replica1;DB_CLOSE_DELAY=-1", "replica");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Statement st = keepReplica.createStatement()) {
+            st.execute("drop all objects");
+        }
+        keepReplica.close();
+    }
+
+    private Connection createDatabase(String url, String name) throws Exception {
+        Connection conn = DriverManager.getConnection(url);
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table node (id int primary key, name varchar)");
+            st.execute("insert into node values (1, '" + name + "')");
+        }
+        return conn;
+    }
+
+    private static DataSource dataSource(String url) {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL(url);
+        return ds;
+    }
+
+    /**
+     * executeQuery, executeUpdate の振り分けの試験
+     */
+    @Test
+    public void testRouting() throws Exception {
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(dataSource("jdbc:h2:mem:replica1")));
+        router.setStickiness(1, TimeUnit.HOURS);
+
+        try (RoutingDBConnectionUtil conn = new RoutingDBConnectionUtil(createDatabase("jdbc:h2:mem:primary", "primary"), router)) {
+            conn.prepareWithParam("select name from node where id = :id");
+            assertThat(conn.executeQueryWithParam(new Param().put("id", 1)).get(0).get("NAME"), is("replica"));
+            assertThat(router.getOutstanding(0), is(0));
+
+            // read your writes
+            conn.prepareWithParam("update node set name = :name where id = 1");
+            assertThat(conn.executeUpdateWithParam(new Param().put("name", "updated")), is(1));
+            assertThat(conn.isSticky(), is(true));
+
+            conn.prepare("select name from node where id = ?");
+            assertThat(conn.executeQuery(1).get(0).get("NAME"), is("updated"));
+        }
+
+        router.setStickiness(0, TimeUnit.SECONDS);
+        try (RoutingDBConnectionUtil conn = new RoutingDBConnectionUtil(createDatabase("jdbc:h2:mem:primary", "primary"), router)) {
+            conn.prepare("update node set name = 'updated' where id = 1");
+            conn.executeUpdate();
+            assertThat(conn.isSticky(), is(false));
+
+            conn.prepare("select name from node where id = ?");
+            assertThat(conn.executeQuery(1).get(0).get("NAME"), is("replica"));
+
+            // in transaction
+            conn.getConnection().setAutoCommit(false);
+            assertThat(conn.executeQuery(1).get(0).get("NAME"), is("updated"));
+            conn.rollback();
+        }
+    }
+
+    /**
+     * レプリカで実行中の問い合わせの cancel の試験
+     */
+    @Test
+    public void testCancel() throws Exception {
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(dataSource("jdbc:h2:mem:replica1")));
+
+        try (RoutingDBConnectionUtil conn = new RoutingDBConnectionUtil(createDatabase("jdbc:h2:mem:primary", "primary"), router)) {
+            conn.addInterceptor(new StatementInterceptor() {
+                @Override
+                public void beforeMap(StatementContext ctx) {
+                    try {
+                        conn.cancel();
+                    }
+                    catch (SQLException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            });
+            conn.prepare("select name from node");
+            try {
+                conn.executeQuery();
+                fail("not reached");
+            }
+            catch (SQLException ex) {
+                assertThat(ex.getSQLState(), is("HY008"));
+            }
+            assertThat(router.getOutstanding(0), is(0));
+        }
+    }
+
+    /**
+     * レプリカを使用した後に追加したインターセプタの試験
+     */
+    @Test
+    public void testAddInterceptorAfterRouting() throws Exception {
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(dataSource("jdbc:h2:mem:replica1")));
+        final List<String> executed = new ArrayList<>();
+        StatementInterceptor interceptor = new StatementInterceptor() {
+            @Override
+            public Object beforeExecute(StatementContext ctx) {
+                executed.add(ctx.getSQL());
+                return null;
+            }
+        };
+
+        try (RoutingDBConnectionUtil conn = new RoutingDBConnectionUtil(createDatabase("jdbc:h2:mem:primary", "primary"), router)) {
+            conn.prepare("select name from node where id = ?");
+            assertThat(conn.executeQuery(1).get(0).get("NAME"), is("replica"));
+            assertThat(executed.size(), is(0));
+
+            conn.addInterceptor(interceptor);
+            assertThat(conn.executeQuery(1).get(0).get("NAME"), is("replica"));
+            assertThat(executed, is(Arrays.asList("select name from node where id = ?")));
+
+            assertThat(conn.removeInterceptor(interceptor), is(true));
+            assertThat(conn.executeQuery(1).get(0).get("NAME"), is("replica"));
+            assertThat(executed.size(), is(1));
+        }
+    }
+
+    /**
+     * ReplicaRouter の試験
+     */
+    @Test
+    public void testReplicaRouter() throws Exception {
+        ReplicaRouter router = new ReplicaRouter(Arrays.asList(dataSource("jdbc:h2:mem:a"), dataSource("jdbc:h2:mem:b"), dataSource("jdbc:h2:mem:c")));
+        assertThat(router.acquire(), is(0));
+        assertThat(router.acquire(), is(1));
+        assertThat(router.acquire(), is(2));
+        assertThat(router.acquire(), is(0));
+        router.release(0);
+        router.release(0);
+        router.release(1);
+        router.release(2);
+
+        router.setStrategy(ReplicaRouter.Strategy.LEAST_OUTSTANDING);
+        int first = router.acquire();
+        int second = router.acquire();
+        int third = router.acquire();
+        assertThat(first != second && second != third && first != third, is(true));
+        router.release(second);
+        assertThat(router.acquire(), is(second));
+
+        assertThat(new ReplicaRouter(Arrays.<DataSource>asList()).acquire(), is(-1));
+    }
+}
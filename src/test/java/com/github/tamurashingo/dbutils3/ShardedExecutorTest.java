@@ -0,0 +1,134 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.sql.DataSource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedExecutorTest {
+
+    private static final int SHARDS = 3;
+
+    private List<Connection> keep = new ArrayList<>();
+    private List<DataSource> shards = new ArrayList<>();
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        for (int ix = 0; ix < SHARDS; ix++) {
+            String url = "jdbc:h2:mem:shard" + ix + ";DB_CLOSE_DELAY=-1";
+            Connection conn = DriverManager.getConnection(url);
+            try (Statement st = conn.createStatement()) {
+                st.execute("create table orders (customer_id int, amount int)");
+            }
+            keep.add(conn);
+
+            JdbcDataSource ds = new JdbcDataSource();
+            ds.setURL(url);
+            shards.add(ds);
+        }
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdown();
+        for (Connection conn: keep) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("drop all objects");
+            }
+            conn.close();
+        }
+    }
+
+    /**
+     * シャードキーによる振り分けと全シャードへの検索の試験
+     */
+    @Test
+    public void testExecute() throws Exception {
+        ShardedExecutor sharded = new ShardedExecutor(shards, "customerId", executor);
+        for (int customer = 1; customer <= 10; customer++) {
+            int count = sharded.executeUpdateWithParam("insert into orders values (:customerId, :amount)",
+                    new Param().put("customerId", customer).put("amount", customer * 100));
+            assertThat(count, is(1));
+        }
+
+        // each row is stored in the shard of its key
+        for (int ix = 0; ix < SHARDS; ix++) {
+            try (Statement st = keep.get(ix).createStatement()) {
+                try (java.sql.ResultSet rs = st.executeQuery("select customer_id from orders")) {
+                    while (rs.next()) {
+                        assertThat(sharded.shardOf(rs.getInt(1)), is(ix));
+                    }
+                }
+            }
+        }
+
+        List<Map<String, String>> result = sharded.executeQueryWithParam(
+                "select amount from orders where customer_id = :customerId", new Param().put("customerId", 7));
+        assertThat(result.size(), is(1));
+        assertThat(result.get(0).get("AMOUNT"), is("700"));
+
+        // scatter-gather
+        result = sharded.executeQueryWithParam("select amount from orders where amount >= :min", new Param().put("min", 500));
+        assertThat(result.size(), is(6));
+
+        result = sharded.executeQueryWithParam("select amount from orders where customer_id in (:customerId)",
+                new Param().put("customerId", Arrays.asList(1, 2, 3)));
+        assertThat(result.size(), is(3));
+
+        assertThat(sharded.executeUpdateWithParam("delete from orders where amount < :max", new Param().put("max", 300)), is(2));
+    }
+
+    /**
+     * shardsOf の試験
+     */
+    @Test
+    public void testShardsOf() throws Exception {
+        ShardedExecutor sharded = new ShardedExecutor(shards, "customerId", executor);
+        String sql = "select * from orders where customer_id = :customerId";
+        assertThat(sharded.shardsOf(sql, new Param().put("customerId", 5)).size(), is(1));
+        assertThat(sharded.shardsOf(sql, new Param()).size(), is(SHARDS));
+        assertThat(sharded.shardsOf("select * from orders", new Param().put("customerId", 5)).size(), is(SHARDS));
+        assertThat(sharded.shardOf(5), is(sharded.shardOf(5L)));
+    }
+}
@@ -0,0 +1,150 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.Test;
+
+public class SlowQueryLogTest {
+
+    private JdbcDataSource dataSource(String name) throws Exception {
+        JdbcDataSource ds = new JdbcDataSource();
+        ds.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        try (Connection conn = ds.getConnection(); Statement st = conn.createStatement()) {
+            st.execute("create table item (id int primary key, name varchar)");
+            st.execute("insert into item values (1, 'apple'), (2, 'banana'), (3, 'cherry')");
+        }
+        return ds;
+    }
+
+    /**
+     * 実行計画の取得の試験
+     */
+    @Test
+    public void testExplain() throws Exception {
+        JdbcDataSource ds = dataSource("slowquery1");
+        SlowQueryLog log = new SlowQueryLog(ds);
+        log.setThreshold(0, TimeUnit.NANOSECONDS);
+        // capture the plan on the caller thread
+        log.setExplainExecutor(Runnable::run);
+        List<SlowQuery> received = new ArrayList<>();
+        log.setListener(received::add);
+
+        try (DBConnectionUtil conn = new DBConnectionUtil(ds.getConnection())) {
+            conn.addInterceptor(log);
+            conn.prepareWithParam("select * from item where id = :id");
+            assertThat(conn.executeQueryWithParam(new Param().put("id", 2)).size(), is(1));
+            assertThat(conn.executeQueryWithParam(new Param().put("id", 3)).size(), is(1));
+
+            conn.prepare("update item set name = ? where id = ?");
+            assertThat(conn.executeUpdate("melon", 3), is(1));
+        }
+
+        List<SlowQuery> records = log.getRecords();
+        assertThat(records.size(), is(3));
+        assertThat(received.size(), is(3));
+
+        SlowQuery first = records.get(0);
+        assertThat(first.getOperation(), is(StatementContext.Operation.QUERY));
+        assertThat(first.getSQL(), is("select * from item where id = ?"));
+        assertThat(first.getParameters()[0], is((Object) 2));
+        assertThat(first.getElapsed(TimeUnit.NANOSECONDS) > 0, is(true));
+        assertThat(first.getPlan(), containsString("PRIMARY_KEY"));
+        // cached for the same fingerprint
+        assertThat(records.get(1).getPlan(), is(sameInstance(first.getPlan())));
+
+        assertThat(records.get(2).getOperation(), is(StatementContext.Operation.UPDATE));
+        assertThat(records.get(2).getPlan(), containsString("UPDATE"));
+    }
+
+    /**
+     * 実行計画を別スレッドで取得する試験
+     */
+    @Test
+    public void testExplainAsync() throws Exception {
+        JdbcDataSource ds = dataSource("slowquery3");
+        SlowQueryLog log = new SlowQueryLog(ds);
+        log.setThreshold(0, TimeUnit.NANOSECONDS);
+        BlockingQueue<SlowQuery> received = new LinkedBlockingQueue<>();
+        List<Thread> threads = new CopyOnWriteArrayList<>();
+        log.setListener(query -> {
+            threads.add(Thread.currentThread());
+            received.add(query);
+        });
+
+        try (DBConnectionUtil conn = new DBConnectionUtil(ds.getConnection())) {
+            conn.addInterceptor(log);
+            conn.prepareWithParam("select * from item where id = :id");
+            assertThat(conn.executeQueryWithParam(new Param().put("id", 2)).size(), is(1));
+
+            SlowQuery first = received.poll(10, TimeUnit.SECONDS);
+            assertThat(first.getPlan(), containsString("PRIMARY_KEY"));
+            assertThat(threads.get(0), is(not(Thread.currentThread())));
+
+            // the cached plan is recorded on the caller thread
+            assertThat(conn.executeQueryWithParam(new Param().put("id", 3)).size(), is(1));
+            SlowQuery second = received.poll(10, TimeUnit.SECONDS);
+            assertThat(second.getPlan(), is(sameInstance(first.getPlan())));
+            assertThat(threads.get(1), is(Thread.currentThread()));
+        }
+    }
+
+    /**
+     * 閾値未満の文を記録しない試験
+     */
+    @Test
+    public void testThreshold() throws Exception {
+        JdbcDataSource ds = dataSource("slowquery2");
+        SlowQueryLog log = new SlowQueryLog(null);
+        log.setThreshold(1, TimeUnit.HOURS);
+
+        try (DBConnectionUtil conn = new DBConnectionUtil(ds.getConnection())) {
+            conn.addInterceptor(log);
+            conn.prepare("select * from item");
+            assertThat(conn.executeQuery().size(), is(3));
+        }
+        assertThat(log.getRecords().isEmpty(), is(true));
+
+        log.setThreshold(0, TimeUnit.NANOSECONDS);
+        try (DBConnectionUtil conn = new DBConnectionUtil(ds.getConnection())) {
+            conn.addInterceptor(log);
+            conn.prepare("select * from item");
+            assertThat(conn.executeQuery().size(), is(3));
+        }
+        assertThat(log.getRecords().size(), is(1));
+        assertThat(log.getRecords().get(0).getPlan(), is(nullValue()));
+    }
+}
@@ -0,0 +1,215 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class StatementInterceptorTest {
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+    }
+
+    private Connection connect(String name) throws Exception {
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:" + name);
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table item (id int primary key, name varchar)");
+            st.execute("insert into item values (1, 'apple'), (2, 'banana'), (3, 'cherry')");
+        }
+        return conn;
+    }
+
+    /**
+     * フックの呼び出し順の試験
+     */
+    @Test
+    public void testOrder() throws Exception {
+        List<String> calls = new ArrayList<>();
+        try (DBConnectionUtil conn = new DBConnectionUtil(connect("interceptor1"))) {
+            conn.addInterceptor(new Recorder("a", calls));
+            conn.addInterceptor(new Recorder("b", calls));
+            assertThat(conn.getInterceptors().size(), is(2));
+
+            conn.prepareWithParam("select * from item where id >= :id order by id");
+            List<Map<String, String>> result = conn.executeQueryWithParam(new Param().put("id", 2));
+            assertThat(result.size(), is(2));
+
+            assertThat(calls, is(Arrays.asList(
+                    "a:beforePrepare:PREPARE", "b:beforePrepare:PREPARE", "b:afterPrepare", "a:afterPrepare",
+                    "a:beforeBind:[2]", "b:beforeBind:[2]", "b:afterBind", "a:afterBind",
+                    "a:beforeExecute:QUERY", "b:beforeExecute:QUERY", "b:afterExecute", "a:afterExecute",
+                    "a:beforeMap", "b:beforeMap", "b:afterMap:2", "a:afterMap:2")));
+
+            calls.clear();
+            conn.prepare("update item set name = ? where id = ?");
+            assertThat(conn.executeUpdate("melon", 3), is(1));
+            assertThat(calls.subList(4, 10), is(Arrays.asList(
+                    "a:beforeBind:[melon, 3]", "b:beforeBind:[melon, 3]", "b:afterBind", "a:afterBind",
+                    "a:beforeExecute:UPDATE", "b:beforeExecute:UPDATE")));
+            assertThat(calls.get(calls.size() - 1), is("a:afterExecute"));
+        }
+    }
+
+    /**
+     * 短絡（キャッシュ）の試験
+     */
+    @Test
+    public void testShortCircuit() throws Exception {
+        List<String> calls = new ArrayList<>();
+        try (DBConnectionUtil conn = new DBConnectionUtil(connect("interceptor2"))) {
+            Map<String, String> cached = Collections.singletonMap("NAME", "cached");
+            conn.addInterceptor(new StatementInterceptor() {
+                @Override
+                public Object beforeExecute(StatementContext ctx) {
+                    if (ctx.getOperation() == StatementContext.Operation.QUERY
+                            && ctx.getFingerprint().equals("select name from item where id = ?")) {
+                        return Collections.singletonList(cached);
+                    }
+                    if (ctx.getOperation() == StatementContext.Operation.UPDATE) {
+                        return 0;
+                    }
+                    return null;
+                }
+            });
+            conn.addInterceptor(new Recorder("b", calls));
+
+            conn.prepare("select name from item where id = 1");
+            List<Map<String, String>> result = conn.executeQuery();
+            assertThat(result.size(), is(1));
+            assertThat(result.get(0), is(cached));
+            assertThat(calls.contains("b:beforeExecute:QUERY"), is(false));
+            assertThat(calls.contains("b:beforeMap"), is(false));
+
+            conn.prepare("delete from item");
+            assertThat(conn.executeUpdate(), is(0));
+
+            conn.prepare("select count(*) as cnt from item");
+            assertThat(conn.executeQuery().get(0).get("CNT"), is("3"));
+        }
+    }
+
+    /**
+     * エラー通知と経過時間の試験
+     */
+    @Test
+    public void testErrorAndTiming() throws Exception {
+        List<String> errors = new ArrayList<>();
+        long[] elapsed = new long[1];
+        try (DBConnectionUtil conn = new DBConnectionUtil(connect("interceptor3"))) {
+            StatementInterceptor interceptor = new StatementInterceptor() {
+                @Override
+                public void beforeBind(StatementContext ctx) {
+                    ctx.setAttribute("bound", Boolean.TRUE);
+                }
+                @Override
+                public void afterExecute(StatementContext ctx, long startNanos, long endNanos) {
+                    assertThat(ctx.getAttribute("bound"), is((Object) Boolean.TRUE));
+                    elapsed[0] = endNanos - startNanos;
+                }
+                @Override
+                public void onError(StatementContext ctx, SQLException ex) {
+                    errors.add(ctx.getOperation() + ":" + ex.getSQLState());
+                }
+            };
+            conn.addInterceptor(interceptor);
+
+            conn.prepare("insert into item values (?, ?)");
+            try {
+                conn.executeUpdate(1, "duplicate");
+                fail("not reached");
+            }
+            catch (SQLException ex) {
+                // duplicate key
+            }
+            assertThat(errors.size(), is(1));
+            assertThat(errors.get(0), is("UPDATE:23505"));
+
+            conn.executeUpdate(4, "durian");
+            assertThat(elapsed[0] >= 0, is(true));
+
+            assertThat(conn.removeInterceptor(interceptor), is(true));
+            assertThat(conn.getInterceptors().isEmpty(), is(true));
+        }
+    }
+
+    private static class Recorder implements StatementInterceptor {
+        private final String name;
+        private final List<String> calls;
+
+        Recorder(String name, List<String> calls) {
+            this.name = name;
+            this.calls = calls;
+        }
+
+        @Override
+        public void beforePrepare(StatementContext ctx) {
+            calls.add(name + ":beforePrepare:" + ctx.getOperation());
+        }
+        @Override
+        public void afterPrepare(StatementContext ctx, long startNanos, long endNanos) {
+            assertTrue(startNanos <= endNanos);
+            calls.add(name + ":afterPrepare");
+        }
+        @Override
+        public void beforeBind(StatementContext ctx) {
+            calls.add(name + ":beforeBind:" + Arrays.toString(ctx.getParameters()));
+        }
+        @Override
+        public void afterBind(StatementContext ctx, long startNanos, long endNanos) {
+            calls.add(name + ":afterBind");
+        }
+        @Override
+        public Object beforeExecute(StatementContext ctx) {
+            calls.add(name + ":beforeExecute:" + ctx.getOperation());
+            return null;
+        }
+        @Override
+        public void afterExecute(StatementContext ctx, long startNanos, long endNanos) {
+            calls.add(name + ":afterExecute");
+        }
+        @Override
+        public void beforeMap(StatementContext ctx) {
+            calls.add(name + ":beforeMap");
+        }
+        @Override
+        public void afterMap(StatementContext ctx, Object result, long startNanos, long endNanos) {
+            calls.add(name + ":afterMap:" + ctx.getRowCount());
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TransactionTemplateTest {
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+    }
+
+    private Connection connect() throws Exception {
+        Connection conn = DriverManager.getConnection("jdbc:h2:mem:tx");
+        try (Statement st = conn.createStatement()) {
+            st.execute("create table account (id int primary key, balance int)");
+            st.execute("insert into account values (1, 100)");
+        }
+        return conn;
+    }
+
+    /**
+     * classify の試験
+     */
+    @Test
+    public void testClassify() {
+        assertThat(TransactionTemplate.classify(new SQLException("deadlock", "40P01")), is(TransactionTemplate.RetryReason.DEADLOCK));
+        assertThat(TransactionTemplate.classify(new SQLException("deadlock", "40001", 1213)), is(TransactionTemplate.RetryReason.DEADLOCK));
+        assertThat(TransactionTemplate.classify(new SQLException("serialize", "40001")), is(TransactionTemplate.RetryReason.SERIALIZATION_FAILURE));
+        assertThat(TransactionTemplate.classify(new SQLException("lock", "HY000", 1205)), is(TransactionTemplate.RetryReason.LOCK_TIMEOUT));
+        assertThat(TransactionTemplate.classify(new SQLException("lock", "55P03")), is(TransactionTemplate.RetryReason.LOCK_TIMEOUT));
+        assertThat(TransactionTemplate.classify(new SQLException("syntax", "42000")), is(nullValue()));
+
+        SQLException batch = new SQLException("batch", "HY000");
+        batch.setNextException(new SQLException("deadlock", "40P01"));
+        assertThat(TransactionTemplate.classify(batch), is(TransactionTemplate.RetryReason.DEADLOCK));
+    }
+
+    /**
+     * classify の試験（ベンダーによって意味の異なるエラーコード）
+     */
+    @Test
+    public void testClassifyVendor() {
+        // SQL Server deadlock victim, MySQL Connector/J lock wait timeout
+        SQLException ex1205 = new SQLException("1205", "40001", 1205);
+        assertThat(TransactionTemplate.classify(ex1205, "Microsoft SQL Server"), is(TransactionTemplate.RetryReason.DEADLOCK));
+        assertThat(TransactionTemplate.classify(ex1205, "MySQL"), is(TransactionTemplate.RetryReason.LOCK_TIMEOUT));
+        assertThat(TransactionTemplate.classify(ex1205, "MariaDB"), is(TransactionTemplate.RetryReason.LOCK_TIMEOUT));
+        assertThat(TransactionTemplate.classify(ex1205), is(TransactionTemplate.RetryReason.SERIALIZATION_FAILURE));
+        assertThat(TransactionTemplate.classify(new SQLException("lock", "HY000", 1205), "MySQL"), is(TransactionTemplate.RetryReason.LOCK_TIMEOUT));
+
+        // Oracle ORA-08177, ORA-00060
+        assertThat(TransactionTemplate.classify(new SQLException("ORA-08177", "72000", 8177), "Oracle"), is(TransactionTemplate.RetryReason.SERIALIZATION_FAILURE));
+        assertThat(TransactionTemplate.classify(new SQLException("8177", "42000", 8177)), is(nullValue()));
+        assertThat(TransactionTemplate.classify(new SQLException("ORA-00060", "61000", 60), "Oracle"), is(TransactionTemplate.RetryReason.DEADLOCK));
+        assertThat(TransactionTemplate.classify(new SQLException("60", "42000", 60)), is(nullValue()));
+
+        // H2 lock timeout
+        assertThat(TransactionTemplate.classify(new SQLException("timeout", "HYT00", 50200), "H2"), is(TransactionTemplate.RetryReason.LOCK_TIMEOUT));
+        assertThat(TransactionTemplate.classify(new SQLException("no code", null, 1205)), is(nullValue()));
+    }
+
+    /**
+     * execute の試験（リトライ）
+     */
+    @Test
+    public void testExecuteRetry() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                TransactionTemplate tx = new TransactionTemplate(conn);
+                tx.setBackoff(0, 0);
+                final int[] attempts = {0};
+
+                int count = tx.execute(new TransactionCallback<Integer>() {
+                    @Override
+                    public Integer doInTransaction(DBConnectionUtil conn) throws SQLException {
+                        conn.prepare("update account set balance = balance - 10 where id = 1");
+                        int count = conn.executeUpdate();
+                        if (++attempts[0] < 3) {
+                            throw new SQLException("serialization failure", "40001");
+                        }
+                        return count;
+                    }
+                });
+                assertThat(count, is(1));
+                assertThat(attempts[0], is(3));
+                assertThat(connection.getAutoCommit(), is(true));
+
+                // failed attempts are rolled back
+                conn.prepare("select balance from account where id = 1");
+                assertThat(conn.executeQuery().get(0).get("BALANCE"), is("90"));
+
+                TransactionMetrics metrics = tx.getMetrics();
+                assertThat(metrics.getCommits(), is(1L));
+                assertThat(metrics.getRetries(TransactionTemplate.RetryReason.SERIALIZATION_FAILURE), is(2L));
+                assertThat(metrics.getRetries(), is(2L));
+                assertThat(metrics.getFailures(), is(0L));
+            }
+        }
+    }
+
+    /**
+     * execute の試験（リトライしない、リトライ回数超過）
+     */
+    @Test
+    public void testExecuteFailure() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                TransactionTemplate tx = new TransactionTemplate(conn);
+                tx.setBackoff(0, 0);
+                tx.setMaxRetries(2);
+                final int[] attempts = {0};
+
+                try {
+                    tx.execute(new TransactionCallback<Void>() {
+                        @Override
+                        public Void doInTransaction(DBConnectionUtil conn) throws SQLException {
+                            attempts[0]++;
+                            throw new SQLException("syntax error", "42000");
+                        }
+                    });
+                    fail("not reached");
+                }
+                catch (SQLException ex) {
+                    assertThat(ex.getSQLState(), is("42000"));
+                }
+                assertThat(attempts[0], is(1));
+
+                attempts[0] = 0;
+                try {
+                    tx.execute(new TransactionCallback<Void>() {
+                        @Override
+                        public Void doInTransaction(DBConnectionUtil conn) throws SQLException {
+                            attempts[0]++;
+                            throw new SQLException("deadlock", "40P01");
+                        }
+                    });
+                    fail("not reached");
+                }
+                catch (SQLException ex) {
+                    assertThat(ex.getSQLState(), is("40P01"));
+                }
+                assertThat(attempts[0], is(3));
+
+                TransactionMetrics metrics = tx.getMetrics();
+                assertThat(metrics.getFailures(), is(2L));
+                assertThat(metrics.getExhausted(), is(1L));
+                assertThat(metrics.getRetries(TransactionTemplate.RetryReason.DEADLOCK), is(2L));
+            }
+        }
+    }
+
+    /**
+     * execute の試験（auto-commit の復元の失敗で元の例外が失われないこと）
+     */
+    @Test
+    public void testExecuteRestoreFailure() throws Exception {
+        try (Connection connection = connect()) {
+            Connection broken = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, new InvocationHandler() {
+                @Override
+                public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                    if (method.getName().equals("setAutoCommit") && Boolean.TRUE.equals(args[0])) {
+                        throw new SQLException("connection is broken", "08003");
+                    }
+                    try {
+                        return method.invoke(connection, args);
+                    }
+                    catch (InvocationTargetException ex) {
+                        throw ex.getCause();
+                    }
+                }
+            });
+            DBConnectionUtil conn = new DBConnectionUtil(broken);
+            TransactionTemplate tx = new TransactionTemplate(conn);
+            try {
+                tx.execute(new TransactionCallback<Void>() {
+                    @Override
+                    public Void doInTransaction(DBConnectionUtil conn) throws SQLException {
+                        throw new SQLException("syntax error", "42000");
+                    }
+                });
+                fail("not reached");
+            }
+            catch (SQLException ex) {
+                assertThat(ex.getSQLState(), is("42000"));
+                assertThat(ex.getSuppressed().length, is(1));
+                assertThat(((SQLException) ex.getSuppressed()[0]).getSQLState(), is("08003"));
+            }
+
+            // thrown as is when the transaction succeeded
+            connection.setAutoCommit(true);
+            try {
+                tx.execute(new TransactionCallback<Void>() {
+                    @Override
+                    public Void doInTransaction(DBConnectionUtil conn) throws SQLException {
+                        return null;
+                    }
+                });
+                fail("not reached");
+            }
+            catch (SQLException ex) {
+                assertThat(ex.getSQLState(), is("08003"));
+            }
+        }
+    }
+
+    /**
+     * 待ち時間の上限の試験
+     */
+    @Test
+    public void testBackoffLimit() {
+        assertThat(TransactionTemplate.backoffLimit(10, 1000, 0), is(10L));
+        assertThat(TransactionTemplate.backoffLimit(10, 1000, 3), is(80L));
+        assertThat(TransactionTemplate.backoffLimit(10, 1000, 7), is(1000L));
+        // no overflow
+        assertThat(TransactionTemplate.backoffLimit(3, 1000, 40), is(1000L));
+        assertThat(TransactionTemplate.backoffLimit(1000, Long.MAX_VALUE, 100), is(Long.MAX_VALUE));
+        assertThat(TransactionTemplate.backoffLimit(0, 1000, 100), is(0L));
+    }
+
+    /**
+     * execute の試験（呼び出し元のトランザクションへの参加）
+     */
+    @Test
+    public void testExecuteJoin() throws Exception {
+        try (Connection connection = connect()) {
+            try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                connection.setAutoCommit(false);
+                TransactionTemplate tx = new TransactionTemplate(conn);
+                tx.setBackoff(0, 0);
+                final int[] attempts = {0};
+
+                int count = tx.execute(new TransactionCallback<Integer>() {
+                    @Override
+                    public Integer doInTransaction(DBConnectionUtil conn) throws SQLException {
+                        conn.prepare("update account set balance = balance - 10 where id = 1");
+                        return conn.executeUpdate();
+                    }
+                });
+                assertThat(count, is(1));
+                assertThat(connection.getAutoCommit(), is(false));
+
+                try {
+                    tx.execute(new TransactionCallback<Void>() {
+                        @Override
+                        public Void doInTransaction(DBConnectionUtil conn) throws SQLException {
+                            attempts[0]++;
+                            throw new SQLException("serialization failure", "40001");
+                        }
+                    });
+                    fail("not reached");
+                }
+                catch (SQLException ex) {
+                    assertThat(ex.getSQLState(), is("40001"));
+                }
+                // not retried nor rolled back
+                assertThat(attempts[0], is(1));
+                conn.prepare("select balance from account where id = 1");
+                assertThat(conn.executeQuery().get(0).get("BALANCE"), is("90"));
+
+                // not committed
+                conn.rollback();
+                assertThat(conn.executeQuery().get(0).get("BALANCE"), is("100"));
+                assertThat(tx.getMetrics().getCommits(), is(0L));
+            }
+        }
+    }
+}
@@ -0,0 +1,378 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * compare the JMH result with the baseline and fail when a benchmark regresses.
+ *
+ * <p>
+ * both files are JSON written by JMH ({@code -rf json}).
+ * a benchmark regresses when its score (time per operation) exceeds the baseline by
+ * {@code benchmark.tolerance} (default 0.20), or its allocated bytes per operation
+ * ({@code gc.alloc.rate.norm} of {@code -prof gc}) exceed the baseline by
+ * {@code benchmark.allocTolerance} (default 0.05) and 16 bytes.
+ * benchmarks which are not in the baseline are reported and ignored,
+ * and benchmarks in the baseline which are missing from the result (e.g. failed or removed) regress.
+ * </p>
+ * <p>
+ * run with {@code -Dbenchmark.updateBaseline=true} to replace the baseline with the result.
+ * the path of the JVM is not copied to the baseline because it differs by the machine.
+ * </p>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class BenchmarkGate {
+
+    private static final double ALLOC_SLACK = 16.0;
+
+    /** {@code "jvm" : "/path/to/java",} line of the JMH result */
+    private static final Pattern JVM_PATH = Pattern.compile("(?m)^[ \\t]*\"jvm\" : \".*\",\\R");
+
+    /**
+     * @param args result file and baseline file
+     * @throws Exception a benchmark regresses or failed to read the files
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 2) {
+            throw new IllegalArgumentException("usage: BenchmarkGate <result.json> <baseline.json>");
+        }
+        Path result = Paths.get(args[0]);
+        Path baseline = Paths.get(args[1]);
+
+        if (Boolean.getBoolean("benchmark.updateBaseline")) {
+            String json = new String(Files.readAllBytes(result), StandardCharsets.UTF_8);
+            Files.write(baseline, toBaseline(json).getBytes(StandardCharsets.UTF_8));
+            System.out.println("baseline is updated: " + baseline);
+            return;
+        }
+
+        double tolerance = Double.parseDouble(System.getProperty("benchmark.tolerance", "0.20"));
+        double allocTolerance = Double.parseDouble(System.getProperty("benchmark.allocTolerance", "0.05"));
+        List<String> regressions = compare(read(result), read(baseline), tolerance, allocTolerance);
+        if (!regressions.isEmpty()) {
+            throw new IllegalStateException(regressions.size() + " benchmark(s) regressed:\n  " + String.join("\n  ", regressions));
+        }
+        System.out.println("no benchmark regressed");
+    }
+
+    /**
+     * @param results scores of the result
+     * @param baselines scores of the baseline
+     * @param tolerance allowed ratio of the time
+     * @param allocTolerance allowed ratio of the allocated bytes
+     * @return regressions
+     */
+    static List<String> compare(Map<String, Score> results, Map<String, Score> baselines, double tolerance, double allocTolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Score> entry: results.entrySet()) {
+            String name = entry.getKey();
+            Score current = entry.getValue();
+            Score base = baselines.get(name);
+            if (base == null) {
+                System.out.println("not in baseline: " + name);
+                continue;
+            }
+
+            System.out.printf("%s: %.1f %s (baseline %.1f), %.1f B/op (baseline %.1f)%n",
+                    name, current.time, current.unit, base.time, current.alloc, base.alloc);
+            if (current.time > base.time * (1 + tolerance)) {
+                regressions.add(String.format("%s: time %.1f > %.1f %s", name, current.time, base.time, current.unit));
+            }
+            if (current.alloc >= 0 && base.alloc >= 0
+                    && current.alloc > base.alloc * (1 + allocTolerance) + ALLOC_SLACK) {
+                regressions.add(String.format("%s: allocation %.1f > %.1f B/op", name, current.alloc, base.alloc));
+            }
+        }
+        for (String name: baselines.keySet()) {
+            if (!results.containsKey(name)) {
+                regressions.add(name + ": missing from the result");
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * @param json JMH result
+     * @return baseline without the path of the JVM
+     */
+    static String toBaseline(String json) {
+        return JVM_PATH.matcher(json).replaceAll("");
+    }
+
+    /**
+     * read JMH result.
+     *
+     * @param path JSON file
+     * @return score of each benchmark (key: benchmark name and parameters)
+     * @throws IOException failed to read
+     */
+    static Map<String, Score> read(Path path) throws IOException {
+        return parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * parse JMH result.
+     *
+     * @param text JSON
+     * @return score of each benchmark (key: benchmark name and parameters)
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Score> parse(String text) {
+        Object json = new JsonReader(text).read();
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (Object element: (List<Object>) json) {
+            Map<String, Object> run = (Map<String, Object>) element;
+            String name = (String) run.get("benchmark");
+            Object params = run.get("params");
+            if (params != null) {
+                name += params;
+            }
+
+            Map<String, Object> primary = (Map<String, Object>) run.get("primaryMetric");
+            double alloc = -1;
+            Map<String, Object> secondary = (Map<String, Object>) run.get("secondaryMetrics");
+            if (secondary != null) {
+                for (Map.Entry<String, Object> metric: secondary.entrySet()) {
+                    // "·gc.alloc.rate.norm" before JMH 1.34
+                    if (metric.getKey().endsWith("gc.alloc.rate.norm")) {
+                        alloc = ((Number) ((Map<String, Object>) metric.getValue()).get("score")).doubleValue();
+                    }
+                }
+            }
+            scores.put(name, new Score(((Number) primary.get("score")).doubleValue(), (String) primary.get("scoreUnit"), alloc));
+        }
+        return scores;
+    }
+
+    /**
+     * score of a benchmark.
+     */
+    static class Score {
+        final double time;
+        final String unit;
+        final double alloc;
+
+        Score(double time, String unit, double alloc) {
+            this.time = time;
+            this.unit = unit;
+            this.alloc = alloc;
+        }
+    }
+
+    /**
+     * minimal JSON reader for the JMH result.
+     * objects are {@link Map}, arrays are {@link List} and numbers are {@link Double}.
+     */
+    static class JsonReader {
+        private final String text;
+        private int pos = 0;
+
+        JsonReader(String text) {
+            this.text = text;
+        }
+
+        Object read() {
+            Object value = value();
+            skipSpace();
+            if (pos != text.length()) {
+                throw error("unexpected data");
+            }
+            return value;
+        }
+
+        private Object value() {
+            skipSpace();
+            if (pos >= text.length()) {
+                throw error("unexpected end");
+            }
+            char ch = text.charAt(pos);
+            switch (ch) {
+            case '{':
+                return object();
+            case '[':
+                return array();
+            case '"':
+                return string();
+            case 't':
+                return literal("true", Boolean.TRUE);
+            case 'f':
+                return literal("false", Boolean.FALSE);
+            case 'n':
+                return literal("null", null);
+            default:
+                return number();
+            }
+        }
+
+        private Map<String, Object> object() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            pos++;
+            skipSpace();
+            if (peek() == '}') {
+                pos++;
+                return map;
+            }
+            while (true) {
+                skipSpace();
+                String key = string();
+                skipSpace();
+                expect(':');
+                map.put(key, value());
+                skipSpace();
+                if (peek() == ',') {
+                    pos++;
+                }
+                else {
+                    expect('}');
+                    return map;
+                }
+            }
+        }
+
+        private List<Object> array() {
+            List<Object> list = new ArrayList<>();
+            pos++;
+            skipSpace();
+            if (peek() == ']') {
+                pos++;
+                return list;
+            }
+            while (true) {
+                list.add(value());
+                skipSpace();
+                if (peek() == ',') {
+                    pos++;
+                }
+                else {
+                    expect(']');
+                    return list;
+                }
+            }
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder buf = new StringBuilder();
+            while (true) {
+                char ch = next();
+                if (ch == '"') {
+                    return buf.toString();
+                }
+                if (ch != '\\') {
+                    buf.append(ch);
+                    continue;
+                }
+                ch = next();
+                switch (ch) {
+                case 'n':
+                    buf.append('\n');
+                    break;
+                case 't':
+                    buf.append('\t');
+                    break;
+                case 'r':
+                    buf.append('\r');
+                    break;
+                case 'b':
+                    buf.append('\b');
+                    break;
+                case 'f':
+                    buf.append('\f');
+                    break;
+                case 'u':
+                    if (pos + 4 > text.length()) {
+                        throw error("unexpected end");
+                    }
+                    buf.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                    pos += 4;
+                    break;
+                default:
+                    buf.append(ch);
+                    break;
+                }
+            }
+        }
+
+        private Object number() {
+            int start = pos;
+            while (pos < text.length() && "+-0123456789.eE".indexOf(text.charAt(pos)) >= 0) {
+                pos++;
+            }
+            if (start == pos) {
+                throw error("unexpected character");
+            }
+            return Double.valueOf(text.substring(start, pos));
+        }
+
+        private Object literal(String word, Object value) {
+            if (!text.startsWith(word, pos)) {
+                throw error("unexpected character");
+            }
+            pos += word.length();
+            return value;
+        }
+
+        private void expect(char ch) {
+            if (pos >= text.length() || text.charAt(pos) != ch) {
+                throw error("'" + ch + "' is expected");
+            }
+            pos++;
+        }
+
+        private char peek() {
+            if (pos >= text.length()) {
+                throw error("unexpected end");
+            }
+            return text.charAt(pos);
+        }
+
+        private char next() {
+            char ch = peek();
+            pos++;
+            return ch;
+        }
+
+        private void skipSpace() {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at " + pos);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.benchmark;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class BenchmarkGateTest {
+
+    private static final String RESULT = "[\n"
+            + "    {\n"
+            + "        \"benchmark\" : \"a.B.build\",\n"
+            + "        \"jvm\" : \"/opt/java/bin/java\",\n"
+            + "        \"jvmArgs\" : [\n"
+            + "        ],\n"
+            + "        \"params\" : {\n"
+            + "            \"rows\" : \"100\"\n"
+            + "        },\n"
+            + "        \"primaryMetric\" : {\n"
+            + "            \"score\" : 1.5E2,\n"
+            + "            \"scoreUnit\" : \"ns/op\",\n"
+            + "            \"rawData\" : [[148.0, -1, 152.25]]\n"
+            + "        },\n"
+            + "        \"secondaryMetrics\" : {\n"
+            + "            \"gc.alloc.rate.norm\" : {\n"
+            + "                \"score\" : 48.0,\n"
+            + "                \"scoreUnit\" : \"B/op\"\n"
+            + "            }\n"
+            + "        }\n"
+            + "    },\n"
+            + "    {\n"
+            + "        \"benchmark\" : \"a.B.\\\"escaped\\\"\\u0041\",\n"
+            + "        \"primaryMetric\" : {\n"
+            + "            \"score\" : 10,\n"
+            + "            \"scoreUnit\" : \"us/op\",\n"
+            + "            \"flag\" : true,\n"
+            + "            \"none\" : null\n"
+            + "        },\n"
+            + "        \"secondaryMetrics\" : {}\n"
+            + "    }\n"
+            + "]\n";
+
+    /**
+     * JsonReader の試験
+     */
+    @Test
+    public void testJsonReader() {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> object = (Map<String, Object>) new BenchmarkGate.JsonReader("{\"a\" : [1, -2.5e1, \"x\\ny\"], \"b\" : {}, \"c\" : false}").read();
+        assertThat(object.get("a"), is((Object) Arrays.asList(1.0, -25.0, "x\ny")));
+        assertThat(object.get("b"), is((Object) new LinkedHashMap<String, Object>()));
+        assertThat(object.get("c"), is((Object) Boolean.FALSE));
+
+        try {
+            new BenchmarkGate.JsonReader("[1, 2").read();
+            fail("not reached");
+        }
+        catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage(), containsString("unexpected end"));
+        }
+        try {
+            new BenchmarkGate.JsonReader("{} x").read();
+            fail("not reached");
+        }
+        catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage(), containsString("unexpected data"));
+        }
+    }
+
+    /**
+     * parse の試験
+     */
+    @Test
+    public void testParse() {
+        Map<String, BenchmarkGate.Score> scores = BenchmarkGate.parse(RESULT);
+        assertThat(scores.size(), is(2));
+
+        BenchmarkGate.Score build = scores.get("a.B.build{rows=100}");
+        assertThat(build.time, is(150.0));
+        assertThat(build.unit, is("ns/op"));
+        assertThat(build.alloc, is(48.0));
+
+        BenchmarkGate.Score escaped = scores.get("a.B.\"escaped\"A");
+        assertThat(escaped.time, is(10.0));
+        assertThat(escaped.alloc, is(-1.0));
+    }
+
+    /**
+     * compare の試験
+     */
+    @Test
+    public void testCompare() {
+        Map<String, BenchmarkGate.Score> baselines = new LinkedHashMap<>();
+        baselines.put("time", new BenchmarkGate.Score(100, "ns/op", 100));
+        baselines.put("alloc", new BenchmarkGate.Score(100, "ns/op", 100));
+        baselines.put("ok", new BenchmarkGate.Score(100, "ns/op", 100));
+        baselines.put("missing", new BenchmarkGate.Score(100, "ns/op", 100));
+
+        Map<String, BenchmarkGate.Score> results = new LinkedHashMap<>();
+        results.put("time", new BenchmarkGate.Score(121, "ns/op", 100));
+        results.put("alloc", new BenchmarkGate.Score(100, "ns/op", 122));
+        results.put("ok", new BenchmarkGate.Score(119, "ns/op", 120));
+        results.put("new", new BenchmarkGate.Score(1000, "ns/op", 1000));
+
+        List<String> regressions = BenchmarkGate.compare(results, baselines, 0.20, 0.05);
+        assertThat(regressions.size(), is(3));
+        assertThat(regressions.get(0), startsWith("time: time"));
+        assertThat(regressions.get(1), startsWith("alloc: allocation"));
+        assertThat(regressions.get(2), is("missing: missing from the result"));
+
+        // allocation is not compared without -prof gc
+        results.put("alloc", new BenchmarkGate.Score(100, "ns/op", -1));
+        results.put("time", new BenchmarkGate.Score(100, "ns/op", 100));
+        results.put("missing", new BenchmarkGate.Score(100, "ns/op", 100));
+        assertThat(BenchmarkGate.compare(results, baselines, 0.20, 0.05).isEmpty(), is(true));
+    }
+
+    /**
+     * toBaseline の試験
+     */
+    @Test
+    public void testToBaseline() {
+        String baseline = BenchmarkGate.toBaseline(RESULT);
+        assertThat(baseline, not(containsString("\"jvm\"")));
+        assertThat(baseline, containsString("\"jvmArgs\""));
+        assertThat(BenchmarkGate.parse(baseline).size(), is(2));
+    }
+}
@@ -0,0 +1,467 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.load;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.github.tamurashingo.dbutils3.AutoBinding;
+import com.github.tamurashingo.dbutils3.DBConnectionUtil;
+import com.github.tamurashingo.dbutils3.Param;
+import com.github.tamurashingo.dbutils3.parser.ParamSlots;
+
+/**
+ * multi-threaded load test of {@link DBConnectionUtil} against the embedded H2 database.
+ *
+ * <p>
+ * each thread has its own connection and runs a mix of reads by id, range reads and updates,
+ * then throughput, latency percentiles and allocated bytes of each operation are reported.
+ * this is not a unit test, run it explicitly:
+ * </p>
+ * <pre><code>
+ * mvn -P loadtest test-compile exec:java -Dthreads=64 -Drows=10000 -Dwidth=16
+ * </code></pre>
+ * <ul>
+ *   <li>threads: concurrent threads (default 64)</li>
+ *   <li>rows: rows in the table (default 10000)</li>
+ *   <li>width: varchar columns of the bean, 1 to 16 (default 8)</li>
+ *   <li>ops: measured operations per thread (default 2000)</li>
+ *   <li>warmup: operations per thread before measuring (default 500)</li>
+ *   <li>writeRatio: ratio of updates (default 0.1)</li>
+ *   <li>rangeRatio: ratio of range reads of 100 rows (default 0.1)</li>
+ *   <li>timeout: seconds to wait for the workers (default 600)</li>
+ * </ul>
+ *
+ * @author tamura shingo (tamura.shingo at gmail.com)
+ * @since 0.3.0
+ */
+public class LoadRunner {
+
+    private static final String URL = "jdbc:h2:mem:loadrunner;DB_CLOSE_DELAY=-1";
+
+    private static final int READ = 0;
+    private static final int RANGE = 1;
+    private static final int WRITE = 2;
+    private static final String[] NAMES = {"read", "range", "write"};
+
+    private final int threads;
+    private final int rows;
+    private final int width;
+    private final int ops;
+    private final int warmup;
+    private final double writeRatio;
+    private final double rangeRatio;
+    private long timeoutSeconds = 600;
+
+    public LoadRunner(int threads, int rows, int width, int ops, int warmup, double writeRatio, double rangeRatio) {
+        if (width < 1 || width > 16) {
+            throw new IllegalArgumentException("width must be 1 to 16:" + width);
+        }
+        this.threads = threads;
+        this.rows = rows;
+        this.width = width;
+        this.ops = ops;
+        this.warmup = warmup;
+        this.writeRatio = writeRatio;
+        this.rangeRatio = rangeRatio;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadRunner runner = new LoadRunner(
+                Integer.getInteger("threads", 64),
+                Integer.getInteger("rows", 10000),
+                Integer.getInteger("width", 8),
+                Integer.getInteger("ops", 2000),
+                Integer.getInteger("warmup", 500),
+                Double.parseDouble(System.getProperty("writeRatio", "0.1")),
+                Double.parseDouble(System.getProperty("rangeRatio", "0.1")));
+        runner.setTimeout(Long.getLong("timeout", 600));
+        runner.setUp();
+        runner.run();
+    }
+
+    /**
+     * @param seconds time to wait for the workers to warm up and to finish
+     */
+    public void setTimeout(long seconds) {
+        this.timeoutSeconds = seconds;
+    }
+
+    /**
+     * create and fill the table.
+     *
+     * @throws Exception database error has occurred
+     */
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+        StringBuilder ddl = new StringBuilder("create table load_item (id int primary key");
+        StringBuilder insert = new StringBuilder("insert into load_item values (:id");
+        for (int ix = 1; ix <= width; ix++) {
+            ddl.append(", ").append(column(ix)).append(" varchar(64)");
+            insert.append(", :").append(column(ix));
+        }
+        ddl.append(")");
+        insert.append(")");
+
+        try (DBConnectionUtil conn = new DBConnectionUtil(DriverManager.getConnection(URL))) {
+            try (Statement st = conn.getConnection().createStatement()) {
+                st.execute("drop table if exists load_item");
+                st.execute(ddl.toString());
+            }
+            conn.getConnection().setAutoCommit(false);
+            conn.setInsertRewriteWidth(100);
+            conn.prepareWithParam(insert.toString());
+            List<Param> batch = new ArrayList<>();
+            for (int id = 1; id <= rows; id++) {
+                Param p = new Param().put("id", id);
+                for (int ix = 1; ix <= width; ix++) {
+                    p.put(column(ix), "value-" + id + "-" + ix);
+                }
+                batch.add(p);
+                if (batch.size() == 1000 || id == rows) {
+                    conn.executeBatchWithParam(batch);
+                    batch.clear();
+                }
+            }
+            conn.commit();
+        }
+    }
+
+    /**
+     * run the workload and print the result.
+     *
+     * @throws TimeoutException the workers do not finish within the timeout
+     * @throws Exception database error has occurred
+     */
+    public void run() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Worker> workers = new ArrayList<>();
+        long elapsed;
+        try {
+            List<Future<Worker>> futures = new ArrayList<>();
+            for (int ix = 0; ix < threads; ix++) {
+                Worker worker = new Worker(ix, ready, start);
+                futures.add(executor.submit(worker, worker));
+            }
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            if (!ready.await(timeoutSeconds, TimeUnit.SECONDS)) {
+                throw new TimeoutException("workers are not ready in " + timeoutSeconds + "s");
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+
+            for (Future<Worker> future: futures) {
+                workers.add(future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+            elapsed = System.nanoTime() - begin;
+        }
+        finally {
+            // interrupt the workers left by a failure or the timeout
+            executor.shutdownNow();
+        }
+
+        report(workers, elapsed);
+    }
+
+    private void report(List<Worker> workers, long elapsedNanos) {
+        long total = (long) threads * ops;
+        System.out.printf("threads=%d rows=%d width=%d ops/thread=%d writeRatio=%.2f rangeRatio=%.2f%n",
+                threads, rows, width, ops, writeRatio, rangeRatio);
+        System.out.printf("throughput: %.1f ops/s (%d ops in %.2f s)%n",
+                total * 1e9 / elapsedNanos, total, elapsedNanos / 1e9);
+        System.out.printf("%-6s %8s %10s %10s %10s %10s %12s%n", "op", "count", "p50(us)", "p99(us)", "p99.9(us)", "max(us)", "bytes/op");
+        for (int kind = 0; kind < NAMES.length; kind++) {
+            int count = 0;
+            long bytes = 0;
+            for (Worker w: workers) {
+                count += w.counts[kind];
+                bytes += w.bytes[kind];
+            }
+            if (count == 0) {
+                continue;
+            }
+            long[] latencies = new long[count];
+            int pos = 0;
+            for (Worker w: workers) {
+                System.arraycopy(w.latencies[kind], 0, latencies, pos, w.counts[kind]);
+                pos += w.counts[kind];
+            }
+            Arrays.sort(latencies);
+            System.out.printf("%-6s %8d %10.1f %10.1f %10.1f %10.1f %12d%n", NAMES[kind], count,
+                    percentile(latencies, 0.50) / 1e3, percentile(latencies, 0.99) / 1e3,
+                    percentile(latencies, 0.999) / 1e3, latencies[count - 1] / 1e3,
+                    bytes < 0 ? -1 : bytes / count);
+        }
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        int ix = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(ix, sorted.length - 1))];
+    }
+
+    private static String column(int ix) {
+        return String.format("c%02d", ix);
+    }
+
+    /**
+     * @return allocated bytes of the current thread, or -1 when it is not supported
+     */
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    /**
+     * runs the operations on its own connection.
+     */
+    private class Worker implements Runnable {
+        private final Random random;
+        private final CountDownLatch ready;
+        private final CountDownLatch start;
+        private final long[][] latencies = new long[NAMES.length][ops];
+        private final int[] counts = new int[NAMES.length];
+        private final long[] bytes = new long[NAMES.length];
+
+        Worker(int seed, CountDownLatch ready, CountDownLatch start) {
+            this.random = new Random(seed);
+            this.ready = ready;
+            this.start = start;
+        }
+
+        @Override
+        public void run() {
+            boolean warmedUp = false;
+            try (DBConnectionUtil read = new DBConnectionUtil(DriverManager.getConnection(URL));
+                 DBConnectionUtil range = new DBConnectionUtil(DriverManager.getConnection(URL));
+                 DBConnectionUtil write = new DBConnectionUtil(DriverManager.getConnection(URL))) {
+                read.prepareWithParam("select * from load_item where id = :id");
+                ParamSlots readSlots = read.newParamSlots();
+                range.prepareWithParam("select * from load_item where id between :from and :to");
+                ParamSlots rangeSlots = range.newParamSlots();
+                write.prepareWithParam("update load_item set c01 = :value where id = :id");
+                ParamSlots writeSlots = write.newParamSlots();
+
+                for (int ix = 0; ix < warmup; ix++) {
+                    execute(next(), read, readSlots, range, rangeSlots, write, writeSlots);
+                }
+                warmedUp = true;
+                ready.countDown();
+                start.await();
+
+                for (int ix = 0; ix < ops; ix++) {
+                    int kind = next();
+                    long allocated = allocatedBytes();
+                    long begin = System.nanoTime();
+                    execute(kind, read, readSlots, range, rangeSlots, write, writeSlots);
+                    long end = System.nanoTime();
+                    latencies[kind][counts[kind]++] = end - begin;
+                    bytes[kind] = allocated < 0 ? -1 : bytes[kind] + allocatedBytes() - allocated;
+                }
+            }
+            catch (Exception ex) {
+                throw new IllegalStateException(ex);
+            }
+            finally {
+                if (!warmedUp) {
+                    // run() waits for all the workers even if the setup or the warmup fails
+                    ready.countDown();
+                }
+            }
+        }
+
+        private int next() {
+            double r = random.nextDouble();
+            if (r < writeRatio) {
+                return WRITE;
+            }
+            else if (r < writeRatio + rangeRatio) {
+                return RANGE;
+            }
+            return READ;
+        }
+
+        private void execute(int kind,
+                DBConnectionUtil read, ParamSlots readSlots,
+                DBConnectionUtil range, ParamSlots rangeSlots,
+                DBConnectionUtil write, ParamSlots writeSlots) throws Exception {
+            int id = random.nextInt(rows) + 1;
+            switch (kind) {
+            case READ:
+                readSlots.set(0, id);
+                read.executeQueryWithParam(WideBean.class, readSlots);
+                break;
+            case RANGE:
+                rangeSlots.set("from", id).set("to", id + 99);
+                range.executeQueryWithParam(WideBean.class, rangeSlots);
+                break;
+            default:
+                writeSlots.set("value", "updated-" + id).set("id", id);
+                write.executeUpdateWithParam(writeSlots);
+                break;
+            }
+        }
+    }
+
+    @AutoBinding
+    public static class WideBean {
+        private int id;
+        private String c01;
+        private String c02;
+        private String c03;
+        private String c04;
+        private String c05;
+        private String c06;
+        private String c07;
+        private String c08;
+        private String c09;
+        private String c10;
+        private String c11;
+        private String c12;
+        private String c13;
+        private String c14;
+        private String c15;
+        private String c16;
+
+        public int getId() {
+            return id;
+        }
+        public void setId(int id) {
+            this.id = id;
+        }
+        public String getC01() {
+            return c01;
+        }
+        public void setC01(String c01) {
+            this.c01 = c01;
+        }
+        public String getC02() {
+            return c02;
+        }
+        public void setC02(String c02) {
+            this.c02 = c02;
+        }
+        public String getC03() {
+            return c03;
+        }
+        public void setC03(String c03) {
+            this.c03 = c03;
+        }
+        public String getC04() {
+            return c04;
+        }
+        public void setC04(String c04) {
+            this.c04 = c04;
+        }
+        public String getC05() {
+            return c05;
+        }
+        public void setC05(String c05) {
+            this.c05 = c05;
+        }
+        public String getC06() {
+            return c06;
+        }
+        public void setC06(String c06) {
+            this.c06 = c06;
+        }
+        public String getC07() {
+            return c07;
+        }
+        public void setC07(String c07) {
+            this.c07 = c07;
+        }
+        public String getC08() {
+            return c08;
+        }
+        public void setC08(String c08) {
+            this.c08 = c08;
+        }
+        public String getC09() {
+            return c09;
+        }
+        public void setC09(String c09) {
+            this.c09 = c09;
+        }
+        public String getC10() {
+            return c10;
+        }
+        public void setC10(String c10) {
+            this.c10 = c10;
+        }
+        public String getC11() {
+            return c11;
+        }
+        public void setC11(String c11) {
+            this.c11 = c11;
+        }
+        public String getC12() {
+            return c12;
+        }
+        public void setC12(String c12) {
+            this.c12 = c12;
+        }
+        public String getC13() {
+            return c13;
+        }
+        public void setC13(String c13) {
+            this.c13 = c13;
+        }
+        public String getC14() {
+            return c14;
+        }
+        public void setC14(String c14) {
+            this.c14 = c14;
+        }
+        public String getC15() {
+            return c15;
+        }
+        public void setC15(String c15) {
+            this.c15 = c15;
+        }
+        public String getC16() {
+            return c16;
+        }
+        public void setC16(String c16) {
+            this.c16 = c16;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.parser;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import org.junit.Test;
+
+public class SQLFingerprintTest {
+
+    /**
+     * リテラルとパラメータの正規化の試験
+     */
+    @Test
+    public void testOf() {
+        assertThat(SQLFingerprint.of("SELECT *\n  FROM user\tWHERE id = 3 and name = 'foo'"),
+                is("select * from user where id = ? and name = ?"));
+        assertThat(SQLFingerprint.of("select * from user where id = :id and price > 1.25"),
+                is("select * from user where id = ? and price > ?"));
+        assertThat(SQLFingerprint.of("select col1, t2.col2 from t2 where x in (?, ?, ?)"),
+                is("select col1, t2.col2 from t2 where x in (?)"));
+        assertThat(SQLFingerprint.of("insert into t (a, b) values (?, ?), (?, ?)"),
+                is("insert into t (a, b) values (?)"));
+    }
+}
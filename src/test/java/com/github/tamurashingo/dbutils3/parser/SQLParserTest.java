@@ -214,4 +214,161 @@ public class SQLParserTest {
         assertThat(analyzedSQL, is(testSQL));
     }
 
+    @Test
+    public void testParamSlots() throws Exception {
+        String sql =
+                  " select "
+                + "   * "
+                + " from "
+                + "   table "
+                + " where "
+                + "   start_ymd <= :now and :now <= end_ymd "
+                + " and "
+                + "   id = :id "
+                ;
+
+        SQLParser parser = new SQLParser();
+        parser.analyzeSQL(sql);
+        ParamSlots slots = parser.newParamSlots();
+
+        assertThat(slots.size(), is(3));
+        assertThat(slots.slotCount(), is(2));
+        assertThat(slots.slotIndex("now"), is(0));
+        assertThat(slots.slotIndex("id"), is(1));
+        assertThat(slots.slotIndex("unknown"), is(-1));
+        assertThat(parser.getSlotNames(), is(java.util.Arrays.asList("now", "id")));
+
+        slots.set("now", "2015-08-31").set(1, 123);
+        assertThat(slots.getParameter(1), is((Object)"2015-08-31"));
+        assertThat(slots.getParameter(2), is((Object)"2015-08-31"));
+        assertThat(slots.getParameter(3), is((Object)123));
+
+        slots.set(new Param().put("now", "2015-09-01"));
+        assertThat(slots.getParameter(1), is((Object)"2015-09-01"));
+        assertThat(slots.getParameter(3), is(nullValue()));
+
+        slots.set(1, 456).clear();
+        assertThat(slots.get(0), is(nullValue()));
+        assertThat(slots.get(1), is(nullValue()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testParamSlotsUnknownName() throws Exception {
+        SQLParser parser = new SQLParser();
+        parser.analyzeSQL("select * from table where id = :id");
+        parser.newParamSlots().set("unknown", 1);
+    }
+
+    @Test
+    public void testMultiRowInsert() throws Exception {
+        String sql =
+                  " insert into "
+                + "   table "
+                + " ( "
+                + "   id, "
+                + "   name, "
+                + "   created "
+                + " ) "
+                + " values ( "
+                + "   :id, "
+                + "   :name, "
+                + "   now() "
+                + " ) "
+                ;
+
+        SQLParser parser = new SQLParser();
+        parser.analyzeSQL(sql);
+
+        assertThat(parser.isRewritableInsert(), is(true));
+        assertThat(parser.createMultiRowSQL(1), is(parser.getAnalyzedSQL()));
+        assertThat(parser.createMultiRowSQL(3),
+                is("insert into table ( id, name, created ) values ( ?, ?, now() ), ( ?, ?, now() ), ( ?, ?, now() ) "));
+
+        Object[] params = parser.createMultiRowParams(java.util.Arrays.asList(
+                new Param().put("id", 1).put("name", "one"),
+                new Param().put("id", 2).put("name", "two")));
+        assertThat(params, is(new Object[]{1, "one", 2, "two"}));
+    }
+
+    @Test
+    public void testNotRewritableInsert() throws Exception {
+        SQLParser parser = new SQLParser();
+
+        parser.analyzeSQL("select * from table where id = :id");
+        assertThat(parser.isRewritableInsert(), is(false));
+
+        parser.analyzeSQL("insert into table (id) values (:id), (:id2)");
+        assertThat(parser.isRewritableInsert(), is(false));
+
+        parser.analyzeSQL("insert into table (id, name) values (:id, :name) on duplicate key update name = :name");
+        assertThat(parser.isRewritableInsert(), is(false));
+
+        parser.analyzeSQL("insert into table (id, name) select id, name from other where id = :id");
+        assertThat(parser.isRewritableInsert(), is(false));
+
+        parser.analyzeSQL("INSERT INTO table (id, name) VALUES (:id, lower(:name));");
+        assertThat(parser.isRewritableInsert(), is(true));
+        assertThat(parser.createMultiRowSQL(2), is("INSERT INTO table (id, name) VALUES (?, lower(?)), (?, lower(?));"));
+    }
+
+    @Test
+    public void testCollectionParam() throws Exception {
+        SQLParser parser = new SQLParser();
+        parser.analyzeSQL("select * from table where id in (:ids) and type = :type");
+
+        Param param = new Param().put("ids", java.util.Arrays.asList(1, 2, 3)).put("type", "A");
+        assertThat(parser.hasCollectionParam(param), is(true));
+        assertThat(parser.expandSQL(param), is("select * from table where id in (?, ?, ?, ?) and type = ?"));
+        assertThat(parser.createParams(param), is(new Object[]{1, 2, 3, 3, "A"}));
+
+        param.put("ids", java.util.Collections.emptyList());
+        assertThat(parser.expandSQL(param), is("select * from table where id in (?) and type = ?"));
+        assertThat(parser.createParams(param), is(new Object[]{null, "A"}));
+
+        param.put("ids", 1);
+        assertThat(parser.hasCollectionParam(param), is(false));
+        assertThat(parser.expandSQL(param), is(parser.getAnalyzedSQL()));
+    }
+
+    @Test
+    public void testBucketSize() throws Exception {
+        SQLParser parser = new SQLParser();
+        assertThat(parser.bucketSize(0), is(1));
+        assertThat(parser.bucketSize(1), is(1));
+        assertThat(parser.bucketSize(2), is(2));
+        assertThat(parser.bucketSize(3), is(4));
+        assertThat(parser.bucketSize(4), is(4));
+        assertThat(parser.bucketSize(5), is(8));
+        assertThat(parser.bucketSize(513), is(1000));
+        assertThat(parser.bucketSize(1000), is(1000));
+
+        parser.setInListLimit(10);
+        assertThat(parser.bucketSize(8), is(8));
+        assertThat(parser.bucketSize(9), is(10));
+    }
+
+    @Test
+    public void testSplitParams() throws Exception {
+        SQLParser parser = new SQLParser();
+        parser.analyzeSQL("select * from table where id in (:ids) and type in (:types)");
+        parser.setInListLimit(2);
+
+        Param param = new Param().put("ids", java.util.Arrays.asList(1, 2, 3, 4, 5)).put("types", java.util.Arrays.asList("A", "B"));
+        java.util.List<Param> chunks = parser.splitParams(param);
+        assertThat(chunks.size(), is(3));
+        assertThat(chunks.get(0).get("ids"), is((Object)java.util.Arrays.asList(1, 2)));
+        assertThat(chunks.get(1).get("ids"), is((Object)java.util.Arrays.asList(3, 4)));
+        assertThat(chunks.get(2).get("ids"), is((Object)java.util.Arrays.asList(5)));
+        assertThat(chunks.get(2).get("types"), is((Object)java.util.Arrays.asList("A", "B")));
+
+        param.put("types", java.util.Arrays.asList("A", "B", "C"));
+        try {
+            parser.splitParams(param);
+            fail("not reached");
+        }
+        catch (IllegalArgumentException ex) {
+            // both collections are too large
+        }
+    }
+
 }
@@ -0,0 +1,140 @@
+/*-
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2014 tamura shingo
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package com.github.tamurashingo.dbutils3.jfr;
+
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.github.tamurashingo.dbutils3.Column;
+import com.github.tamurashingo.dbutils3.DBConnectionUtil;
+import com.github.tamurashingo.dbutils3.Param;
+import com.github.tamurashingo.dbutils3.StatementOptions;
+
+public class EventsTest {
+
+    @Before
+    public void setUp() throws Exception {
+        Class.forName("org.h2.Driver");
+    }
+
+    /**
+     * 記録中のイベント出力の試験
+     */
+    @Test
+    public void testRecording() throws Exception {
+        Path file = Files.createTempFile("dbutils3", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String name: new String[]{"dbutils3.Prepare", "dbutils3.Execute", "dbutils3.Fetch", "dbutils3.Mapping"}) {
+                recording.enable(name).withThreshold(Duration.ZERO);
+            }
+            recording.start();
+
+            try (Connection connection = DriverManager.getConnection("jdbc:h2:mem:jfr")) {
+                try (Statement st = connection.createStatement()) {
+                    st.execute("create table event (id int primary key, name varchar)");
+                    st.execute("insert into event values (1, 'a'), (2, 'b')");
+                }
+                try (DBConnectionUtil conn = new DBConnectionUtil(connection)) {
+                    conn.prepareWithParam("select * from event where id >= :id");
+                    conn.executeQueryWithParam(new Param().put("id", 1));
+
+                    // mapped one by one
+                    conn.executeQueryWithParam(EventBean.class, new Param().put("id", 1));
+
+                    StatementOptions options = new StatementOptions();
+                    options.setReadAheadRows(1);
+                    conn.prepareWithParam("select * from event where id >= :id", options);
+                    conn.executeQueryWithParam(EventBean.class, new Param().put("id", 2));
+                }
+            }
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        Map<String, RecordedEvent> events = new HashMap<>();
+        List<RecordedEvent> mappings = new ArrayList<>();
+        List<RecordedEvent> recorded = RecordingFile.readAllEvents(file);
+        for (RecordedEvent event: recorded) {
+            if (event.getEventType().getName().equals("dbutils3.Mapping")) {
+                mappings.add(event);
+            }
+            else {
+                events.putIfAbsent(event.getEventType().getName(), event);
+            }
+        }
+        Files.delete(file);
+
+        assertThat(events.get("dbutils3.Prepare").getString("sql"), is("select * from event where id >= ?"));
+        assertThat(events.get("dbutils3.Execute").getString("operation"), is("query"));
+        assertThat(events.get("dbutils3.Fetch").getLong("rows"), is(2L));
+
+        assertThat(mappings.size(), is(2));
+        assertThat(mappings.get(0).getClass("beanClass").getName(), is(EventBean.class.getName()));
+        assertThat(mappings.get(0).getLong("rows"), is(2L));
+        assertThat(mappings.get(1).getLong("rows"), is(1L));
+        for (RecordedEvent mapping: mappings) {
+            assertThat(mapping.getDuration("mappingTime").compareTo(mapping.getDuration()) <= 0, is(true));
+        }
+    }
+
+    public static class EventBean {
+        @Column("id")
+        private int id;
+
+        @Column("name")
+        private String name;
+
+        public int getId() {
+            return id;
+        }
+        public void setId(int id) {
+            this.id = id;
+        }
+        public String getName() {
+            return name;
+        }
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+}